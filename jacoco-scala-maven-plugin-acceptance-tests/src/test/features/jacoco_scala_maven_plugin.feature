@@ -29,6 +29,22 @@ Feature: Showcase the jacoco-scala-maven-plugin integration
     When I verify it
     Then mixed-in methods should not be in the coverage report
     And case methods should not be in the coverage report
+
+  Scenario: Checks Coverage Rules
+    Given a scala project '${project.build.testOutputDirectory}/it-check-rules' with coverage rules and mixins filtered
+    When I verify it
+    Then the coverage check should fail
+    And no coverage report should be written
+
+  Scenario Outline: Reports On Large Projects
+    Given a generated scala project '${project.build.testOutputDirectory}/it-scale' with <classes> classes from '${project.build.testOutputDirectory}${path.separator}${scale.classpath}'
+    When I run the report on the generated project
+    Then the report should not regress past the baseline '${project.basedir}/src/test/projects/it-scale/baseline.yml' or record it in '${project.build.directory}/it-scale-baseline.yml'
+
+    Examples:
+      | classes |
+      | 1000    |
+      | 10000   |
     
 # ##############################################################################
 # Copyright (c) 2013 timezra
@@ -2,6 +2,8 @@
 
 require 'cucumber/api/jruby/en'
 require 'rspec/expectations'
+require 'fileutils'
+require 'yaml'
 World(RSpec::Matchers)
 
 Given /^a local repository '(.*)'$/ do |repo|
@@ -12,9 +14,31 @@ Given /^a scala project '(.*)'(?: with.*filter.*)?$/ do |project|
   @project = project
 end
 
+Given /^a generated scala project '(.*)' with (\d+) classes from '(.*)'$/ do |template, classes, classpath|
+  @classes = classes.to_i
+  @project = "#{template}-#{classes}"
+  FileUtils.rm_rf @project
+  FileUtils.cp_r template, @project
+  system("java -cp \"#{classpath}\" timezra.maven.jacoco.scala.ScaleProjectGenerator \"#{@project}\" #{classes}").should == true
+end
+
+When /^I run the report on the generated project$/ do
+  maven_opts, ENV['MAVEN_OPTS'] = ENV['MAVEN_OPTS'], '-Xmx1g'
+  begin
+    Dir.chdir(@project) do
+      started = Time.now
+      @output = mvn 'timezra.maven:jacoco-scala-maven-plugin:report'
+      @wall_millis = ((Time.now - started) * 1000).round
+    end
+  ensure
+    ENV['MAVEN_OPTS'] = maven_opts
+  end
+  @output.should match(/BUILD SUCCESS/)
+end
+
 When /^I (.*) it$/ do |goal|
   Dir.chdir(@project) do
-    mvn goal
+    @output = mvn goal
   end
 end
 
@@ -30,6 +54,40 @@ Then /^case methods (should|should not) be in the coverage report$/ do |should_o
   report.send _(should_or_should_not), match(/class\="el_method">(?:\w|\$)+\$default\$\d+\(\)/)
 end
 
+Then /^the coverage check should fail$/ do
+  @output.should match(/Rule violated for class ExampleTrait\.class: lines covered ratio/)
+  @output.should match(/Coverage checks have not been met/)
+end
+
+Then /^no coverage report should be written$/ do
+  File.exist?("#{@project}/target/site/jacoco").should == false
+end
+
+Then /^the report should not regress past the baseline '(.*)' or record it in '(.*)'$/ do |baseline_file, record_file|
+  report = "#{@project}/target/site/jacoco"
+  # the report runs in a Maven JVM of its own without -T, so the peak heap of that JVM is the peak heap of the report
+  measured = {
+    'wallMillis' => @wall_millis,
+    'peakHeapBytes' => IO.read("#{report}/jacoco-metrics.json")[/"jvmPeakHeapBytes": (\d+)/, 1].to_i,
+    'outputFiles' => Dir.glob("#{report}/**/*").count {|f| File.file?(f) }
+  }
+  baselines = YAML.load_file(baseline_file)
+  if ENV['JACOCO_SCALE_BASELINE'] == 'record'
+    # the recording is copied over the baseline by hand, so a test run never changes the versioned file
+    recorded = File.exist?(record_file) ? YAML.load_file(record_file) : baselines
+    recorded[@classes] = measured
+    File.open(record_file, 'w') {|f| f.write(recorded.to_yaml) }
+    puts "Recorded the baseline of #{@classes} classes in #{record_file}"
+  else
+    baseline = baselines[@classes]
+    fail "No baseline of #{@classes} classes in #{baseline_file}, record one with JACOCO_SCALE_BASELINE=record" if baseline.nil?
+    tolerance = baselines['tolerance']
+    measured['wallMillis'].should <= baseline['wallMillis'] * (1 + tolerance['wallMillis'])
+    measured['peakHeapBytes'].should <= baseline['peakHeapBytes'] * (1 + tolerance['peakHeapBytes'])
+    measured['outputFiles'].should == baseline['outputFiles']
+  end
+end
+
 def mvn (goal, params = {})
   params['maven.repo.local'] = @repo
   command = params.reduce("mvn -N -B #{goal}") {|s, (k, v)|
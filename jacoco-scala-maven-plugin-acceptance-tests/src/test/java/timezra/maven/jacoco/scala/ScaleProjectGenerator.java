@@ -0,0 +1,298 @@
+/*******************************************************************************
+ * Copyright (c) 2013 timezra
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *******************************************************************************/
+package timezra.maven.jacoco.scala;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Random;
+
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataWriter;
+import org.jacoco.core.data.SessionInfo;
+import org.jacoco.core.internal.data.CRC64;
+import org.jacoco.core.internal.flow.ClassProbesAdapter;
+import org.jacoco.core.internal.flow.ClassProbesVisitor;
+import org.jacoco.core.internal.flow.MethodProbesVisitor;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+/**
+ * Fills a project with the output of a large scala build, so that the report goal can be run on it without compiling
+ * or testing anything. Every source file in src/main/scala is written with the class files that scalac would emit for
+ * it to target/classes: a case class and its companion object, a trait with its implementation class, a class that
+ * mixes in the trait and an $anonfun closure. target/jacoco.exec holds execution data with about 60% of the probes of
+ * every class hit. The same seed always yields the same project.
+ */
+public final class ScaleProjectGenerator {
+
+    /**
+     * The number of class files written for every source file.
+     */
+    public static final int CLASSES_PER_SOURCE = 6;
+
+    private static final int PACKAGES = 50;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final File sourceDirectory;
+    private final File classesDirectory;
+    private final ExecutionDataWriter executionData;
+    private final Random random = new Random(42L);
+
+    private ScaleProjectGenerator(final File project, final ExecutionDataWriter executionData) {
+        this.sourceDirectory = new File(project, "src/main/scala");
+        this.classesDirectory = new File(project, "target/classes");
+        this.executionData = executionData;
+    }
+
+    /**
+     * @param args
+     *            the project directory and the number of classes to generate
+     * @throws IOException
+     *             if a file can't be written
+     */
+    public static void main(final String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: ScaleProjectGenerator <project directory> <number of classes>");
+            System.exit(1);
+        }
+        generate(new File(args[0]), Integer.parseInt(args[1]));
+    }
+
+    /**
+     * @param project
+     *            the project directory
+     * @param classes
+     *            the number of classes to generate, rounded up to a multiple of {@link #CLASSES_PER_SOURCE}
+     * @throws IOException
+     *             if a file can't be written
+     */
+    public static void generate(final File project, final int classes) throws IOException {
+        final File execFile = new File(project, "target/jacoco.exec");
+        execFile.getParentFile().mkdirs();
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(execFile))) {
+            final ExecutionDataWriter writer = new ExecutionDataWriter(out);
+            writer.visitSessionInfo(new SessionInfo("scale", 0L, 1L));
+            final ScaleProjectGenerator generator = new ScaleProjectGenerator(project, writer);
+            for (int i = 0; i * CLASSES_PER_SOURCE < classes; i++) {
+                generator.generateSource("scale/p" + i % PACKAGES + "/", i);
+            }
+        }
+    }
+
+    private void generateSource(final String pkg, final int i) throws IOException {
+        final String source = "Unit" + i + ".scala";
+        final String point = pkg + "Point" + i;
+        final String shape = pkg + "Shape" + i;
+        final String square = pkg + "Square" + i;
+        final String closure = square + "$$anonfun$scale$1";
+        writeSource(pkg, source, i);
+
+        ClassWriter cw = newClass(Opcodes.ACC_PUBLIC, point, new String[] { "scala/Product", "scala/Serializable" },
+                source);
+        method(cw, Opcodes.ACC_PUBLIC, "<init>", "(II)V", 3, 0, 6);
+        method(cw, Opcodes.ACC_PUBLIC, "x", "()I", 3, 0, 2);
+        method(cw, Opcodes.ACC_PUBLIC, "y", "()I", 3, 0, 2);
+        method(cw, Opcodes.ACC_PUBLIC, "copy", "(II)L" + point + ";", 3, 0, 4);
+        method(cw, Opcodes.ACC_PUBLIC, "copy$default$1", "()I", 3, 0, 2);
+        method(cw, Opcodes.ACC_PUBLIC, "copy$default$2", "()I", 3, 0, 2);
+        method(cw, Opcodes.ACC_PUBLIC, "productPrefix", "()Ljava/lang/String;", 3, 0, 1);
+        method(cw, Opcodes.ACC_PUBLIC, "productArity", "()I", 3, 0, 1);
+        method(cw, Opcodes.ACC_PUBLIC, "productElement", "(I)Ljava/lang/Object;", 3, 2, 2);
+        method(cw, Opcodes.ACC_PUBLIC, "canEqual", "(Ljava/lang/Object;)Z", 3, 1, 2);
+        method(cw, Opcodes.ACC_PUBLIC, "hashCode", "()I", 3, 0, 8);
+        method(cw, Opcodes.ACC_PUBLIC, "toString", "()Ljava/lang/String;", 3, 0, 3);
+        method(cw, Opcodes.ACC_PUBLIC, "equals", "(Ljava/lang/Object;)Z", 3, 4, 4);
+        method(cw, Opcodes.ACC_PUBLIC, "distance", "(L" + point + ";)I", 4, 2, 5);
+        write(point, cw);
+
+        cw = newClass(Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL, point + "$", new String[] { "scala/Serializable" }, source);
+        method(cw, Opcodes.ACC_STATIC, "<clinit>", "()V", 3, 0, 2);
+        method(cw, Opcodes.ACC_PRIVATE, "<init>", "()V", 3, 0, 3);
+        method(cw, Opcodes.ACC_PUBLIC, "apply", "(II)L" + point + ";", 3, 0, 4);
+        method(cw, Opcodes.ACC_PUBLIC, "unapply", "(L" + point + ";)Lscala/Option;", 3, 1, 5);
+        method(cw, Opcodes.ACC_PUBLIC, "curried", "()Lscala/Function1;", 3, 0, 2);
+        method(cw, Opcodes.ACC_PUBLIC, "tupled", "()Lscala/Function1;", 3, 0, 2);
+        method(cw, Opcodes.ACC_PUBLIC, "apply$default$1", "()I", 3, 0, 1);
+        method(cw, Opcodes.ACC_PRIVATE, "readResolve", "()Ljava/lang/Object;", 3, 0, 1);
+        write(point + "$", cw);
+
+        cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(Opcodes.V1_6, Opcodes.ACC_PUBLIC | Opcodes.ACC_ABSTRACT | Opcodes.ACC_INTERFACE, shape, null,
+                "java/lang/Object", new String[] { "scala/ScalaObject" });
+        cw.visitSource(source, null);
+        cw.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_ABSTRACT, "area", "()I", null, null).visitEnd();
+        cw.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_ABSTRACT, "describe", "()Ljava/lang/String;", null, null)
+                .visitEnd();
+        write(shape, cw);
+
+        cw = newClass(Opcodes.ACC_PUBLIC | Opcodes.ACC_ABSTRACT, shape + "$class", new String[0], source);
+        method(cw, Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "describe", "(L" + shape + ";)Ljava/lang/String;", 10, 1, 6);
+        method(cw, Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "$init$", "(L" + shape + ";)V", 9, 0, 1);
+        write(shape + "$class", cw);
+
+        cw = newClass(Opcodes.ACC_PUBLIC, square, new String[] { shape }, source);
+        method(cw, Opcodes.ACC_PUBLIC, "<init>", "(I)V", 14, 0, 5);
+        method(cw, Opcodes.ACC_PUBLIC, "describe", "()Ljava/lang/String;", 14, 0, 2);
+        method(cw, Opcodes.ACC_PUBLIC, "side", "()I", 14, 0, 2);
+        method(cw, Opcodes.ACC_PUBLIC, "area", "()I", 15, 1, 4);
+        method(cw, Opcodes.ACC_PUBLIC, "scale", "(I)L" + square + ";", 17, 2, 6);
+        write(square, cw);
+
+        cw = newClass(Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL, closure, new String[] { "scala/Serializable" }, source);
+        cw.visitField(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC | Opcodes.ACC_FINAL, "serialVersionUID", "J", null,
+                Long.valueOf(0L)).visitEnd();
+        method(cw, Opcodes.ACC_PUBLIC, "<init>", "(L" + square + ";)V", 17, 0, 3);
+        method(cw, Opcodes.ACC_PUBLIC, "apply", "(I)I", 17, 0, 2);
+        method(cw, Opcodes.ACC_PUBLIC, "apply$mcII$sp", "(I)I", 17, 1, 3);
+        method(cw, Opcodes.ACC_PUBLIC | Opcodes.ACC_BRIDGE | Opcodes.ACC_SYNTHETIC, "apply",
+                "(Ljava/lang/Object;)Ljava/lang/Object;", 17, 0, 3);
+        write(closure, cw);
+    }
+
+    /**
+     * Writes the source file that the classes of a unit claim to be compiled from, with the statements on the lines
+     * that their line numbers point to.
+     */
+    private void writeSource(final String pkg, final String source, final int i) throws IOException {
+        final File file = new File(sourceDirectory, pkg + source);
+        file.getParentFile().mkdirs();
+        try (Writer out = new OutputStreamWriter(new FileOutputStream(file), UTF_8)) {
+            out.write("package " + pkg.substring(0, pkg.length() - 1).replace('/', '.') + "\n\n");
+            out.write("case class Point" + i + "(x: Int, y: Int) {\n");
+            out.write("  def distance(that: Point" + i + "): Int =\n");
+            out.write("    if (that.x > x) that.x - x\n");
+            out.write("    else x - that.x\n");
+            out.write("}\n\n");
+            out.write("trait Shape" + i + " {\n");
+            out.write("  def describe: String =\n");
+            out.write("    if (area > 0) \"a shape of \" + area\n");
+            out.write("    else \"an empty shape\"\n");
+            out.write("  def area: Int\n");
+            out.write("}\n\n");
+            out.write("class Square" + i + "(val side: Int) extends Shape" + i + " {\n");
+            out.write("  def area: Int = if (side > 0) side * side\n");
+            out.write("    else 0\n");
+            out.write("  def scale(factor: Int): Square" + i + " = new Square" + i
+                    + "(List(side).map(_ * factor).head)\n");
+            out.write("}\n");
+        }
+    }
+
+    private static ClassWriter newClass(final int access, final String name, final String[] interfaces,
+            final String source) {
+        final ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(Opcodes.V1_6, access | Opcodes.ACC_SUPER, name, null, "java/lang/Object", interfaces);
+        cw.visitSource(source, null);
+        return cw;
+    }
+
+    /**
+     * Writes a method that starts on the given line, followed by one line per branch. Each line holds
+     * instructionsPerLine instructions.
+     */
+    private static void method(final ClassWriter cw, final int access, final String name, final String desc,
+            final int line, final int branches, final int instructionsPerLine) {
+        final MethodVisitor mv = cw.visitMethod(access, name, desc, null, null);
+        mv.visitCode();
+        lineOfCode(mv, line, instructionsPerLine);
+        for (int b = 0; b < branches; b++) {
+            final Label skip = new Label();
+            mv.visitInsn(Opcodes.ICONST_0);
+            mv.visitJumpInsn(Opcodes.IFEQ, skip);
+            lineOfCode(mv, line + b + 1, instructionsPerLine);
+            mv.visitLabel(skip);
+        }
+        returnDefault(mv, desc);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    private static void lineOfCode(final MethodVisitor mv, final int line, final int instructions) {
+        final Label start = new Label();
+        mv.visitLabel(start);
+        mv.visitLineNumber(line, start);
+        for (int i = 0; i < instructions; i++) {
+            mv.visitInsn(i % 2 == 0 ? Opcodes.ICONST_1 : Opcodes.POP);
+        }
+        if (instructions % 2 == 1) {
+            mv.visitInsn(Opcodes.POP);
+        }
+    }
+
+    private static void returnDefault(final MethodVisitor mv, final String desc) {
+        switch (Type.getReturnType(desc).getSort()) {
+        case Type.VOID:
+            mv.visitInsn(Opcodes.RETURN);
+            break;
+        case Type.OBJECT:
+        case Type.ARRAY:
+            mv.visitInsn(Opcodes.ACONST_NULL);
+            mv.visitInsn(Opcodes.ARETURN);
+            break;
+        default:
+            mv.visitInsn(Opcodes.ICONST_0);
+            mv.visitInsn(Opcodes.IRETURN);
+        }
+    }
+
+    private void write(final String name, final ClassWriter cw) throws IOException {
+        cw.visitEnd();
+        final byte[] bytes = cw.toByteArray();
+        final File file = new File(classesDirectory, name + ".class");
+        file.getParentFile().mkdirs();
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(bytes);
+        }
+        final boolean[] probes = new boolean[countProbes(bytes)];
+        for (int p = 0; p < probes.length; p++) {
+            probes[p] = random.nextInt(10) < 6;
+        }
+        executionData.visitClassExecution(new ExecutionData(CRC64.checksum(bytes), name, probes));
+    }
+
+    private static int countProbes(final byte[] bytes) {
+        final int[] count = new int[1];
+        new ClassReader(bytes).accept(new ClassProbesAdapter(new ClassProbesVisitor() {
+            @Override
+            public MethodProbesVisitor visitMethod(final int access, final String name, final String desc,
+                    final String signature, final String[] exceptions) {
+                return null;
+            }
+
+            @Override
+            public void visitTotalProbeCount(final int total) {
+                count[0] = total;
+            }
+        }), 0);
+        return count[0];
+    }
+}
@@ -0,0 +1,18 @@
+#encoding: utf-8
+
+Feature: Showcase the jacoco-scala-maven-plugin on very large projects
+  In order to verify that the jacoco-scala-maven-plugin scales
+  As someone who wants to generate scala test coverage reports for large projects through maven
+  I should be able to run this scenario and see that the steps pass
+
+  Background:
+    Given a local repository '${local-repository}'
+
+  Scenario Outline: Reports On Very Large Projects
+    Given a generated scala project '${project.build.testOutputDirectory}/it-scale' with <classes> classes from '${project.build.testOutputDirectory}${path.separator}${scale.classpath}'
+    When I run the report on the generated project
+    Then the report should not regress past the baseline '${project.basedir}/src/test/projects/it-scale/baseline.yml' or record it in '${project.build.directory}/it-scale-baseline.yml'
+
+    Examples:
+      | classes |
+      | 50000   |
@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2013 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Evgeny Mandrikov - initial API and implementation
+ *    Kyle Lieber - implementation of CheckMojo
+ * 
+ *******************************************************************************/
+package timezra.maven.jacoco.scala;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.util.FileUtils;
+import org.jacoco.core.analysis.IBundleCoverage;
+import org.jacoco.maven.FileFilter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the analysis of a project: the plain BundleCreator, the SanitizingBundleCreator with the SCALAC filters, and
+ * the SanitizingBundleCreator reading the structure of every class from a warm analysis cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class BundleCreatorBenchmark {
+
+    private static final String FILTER_KEY = "SCALAC.CASE,SCALAC.MIXIN";
+
+    @Param({ "100", "1000", "4000" })
+    public int units;
+
+    @Param({ "1", "4" })
+    public int threadCount;
+
+    private File directory;
+    private ScalacCorpus corpus;
+    private MavenProject project;
+    private FileFilter fileFilter;
+    private Filters filters;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = File.createTempFile("jacoco-scala-bench", "");
+        directory.delete();
+        corpus = ScalacCorpus.generate(directory, units);
+        project = corpus.createProject();
+        fileFilter = new FileFilter(null, null);
+        filters = new Filters(Arrays.<MethodSignatureFilter> asList(new CaseFilter()),
+                Arrays.<MethodCoverageFilter> asList(new MixinFilter()));
+        cached();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Benchmark
+    public IBundleCoverage plain() throws IOException {
+        return new BundleCreator(project, fileFilter, threadCount).createBundle(corpus.getExecutionData());
+    }
+
+    @Benchmark
+    public IBundleCoverage sanitizing() throws IOException {
+        return new AbstractAnalysisMojo.SanitizingBundleCreator(project, fileFilter, threadCount, filters, null)
+                .createBundle(corpus.getExecutionData());
+    }
+
+    @Benchmark
+    public IBundleCoverage cached() throws IOException {
+        final AnalysisCache cache = new AnalysisCache(new File(directory, "cache"), FILTER_KEY,
+                AnalysisCache.getOrigin(BundleCreator.class));
+        return new AbstractAnalysisMojo.SanitizingBundleCreator(project, fileFilter, threadCount, filters, cache)
+                .createBundle(corpus.getExecutionData());
+    }
+}
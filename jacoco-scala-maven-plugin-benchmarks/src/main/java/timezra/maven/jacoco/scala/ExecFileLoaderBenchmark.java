@@ -0,0 +1,94 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2013 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Evgeny Mandrikov - initial API and implementation
+ *    Kyle Lieber - implementation of CheckMojo
+ * 
+ *******************************************************************************/
+package timezra.maven.jacoco.scala;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.jacoco.core.data.ExecFileLoader;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the loading of execution data split across several files, with the ExecFileLoader of JaCoCo and with the
+ * MergingExecFileLoader of the plugin, which packs the probes into long words.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ExecFileLoaderBenchmark {
+
+    @Param({ "100", "1000", "4000" })
+    public int units;
+
+    @Param({ "1", "8" })
+    public int parts;
+
+    private File directory;
+    private List<File> dataFiles;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = File.createTempFile("jacoco-scala-bench", "");
+        directory.delete();
+        dataFiles = ScalacCorpus.generate(directory, units).writeExecFiles(parts);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Benchmark
+    public ExecutionDataStore execFileLoader() throws IOException {
+        final ExecFileLoader loader = new ExecFileLoader();
+        for (final File dataFile : dataFiles) {
+            loader.load(dataFile);
+        }
+        return loader.getExecutionDataStore();
+    }
+
+    @Benchmark
+    public ProbeStore mergingExecFileLoader() throws IOException {
+        return load(1);
+    }
+
+    @Benchmark
+    public ProbeStore mergingExecFileLoaderConcurrently() throws IOException {
+        return load(4);
+    }
+
+    private ProbeStore load(final int threadCount) throws IOException {
+        final MergingExecFileLoader loader = new MergingExecFileLoader(threadCount);
+        loader.load(dataFiles);
+        return loader.getProbeStore();
+    }
+}
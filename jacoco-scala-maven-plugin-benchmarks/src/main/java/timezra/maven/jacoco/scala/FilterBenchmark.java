@@ -0,0 +1,135 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2013 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Evgeny Mandrikov - initial API and implementation
+ *    Kyle Lieber - implementation of CheckMojo
+ * 
+ *******************************************************************************/
+package timezra.maven.jacoco.scala;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.jacoco.core.analysis.IClassCoverage;
+import org.jacoco.core.analysis.IMethodCoverage;
+import org.jacoco.core.analysis.IPackageCoverage;
+import org.jacoco.maven.FileFilter;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures each filter on its own, over the method signatures and the analyzed method coverages of the corpus.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class FilterBenchmark {
+
+    @Param({ "100", "1000", "4000" })
+    public int units;
+
+    private File directory;
+    private final List<Signature> signatures = new ArrayList<Signature>();
+    private final List<Collection<IMethodCoverage>> classMethods = new ArrayList<Collection<IMethodCoverage>>();
+    private final MixinFilter mixinFilter = new MixinFilter();
+    private final CaseFilter caseFilter = new CaseFilter();
+    private final Filters filters = new Filters(Arrays.<MethodSignatureFilter> asList(caseFilter),
+            Arrays.<MethodCoverageFilter> asList(mixinFilter));
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = File.createTempFile("jacoco-scala-bench", "");
+        directory.delete();
+        final ScalacCorpus corpus = ScalacCorpus.generate(directory, units);
+        final BundleCreator creator = new BundleCreator(corpus.createProject(), new FileFilter(null, null));
+        for (final File file : creator.getClassFiles()) {
+            new ClassReader(Files.readAllBytes(file.toPath())).accept(new ClassVisitor(Opcodes.ASM4) {
+                @Override
+                public MethodVisitor visitMethod(final int access, final String name, final String desc,
+                        final String signature, final String[] exceptions) {
+                    signatures.add(new Signature(access, name, desc, signature));
+                    return null;
+                }
+            }, ClassReader.SKIP_CODE);
+        }
+        for (final IPackageCoverage packageCoverage : creator.createBundle(corpus.getExecutionData()).getPackages()) {
+            for (final IClassCoverage classCoverage : packageCoverage.getClasses()) {
+                classMethods.add(classCoverage.getMethods());
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Benchmark
+    public void mixinFilter(final Blackhole blackhole) {
+        for (final Collection<IMethodCoverage> methods : classMethods) {
+            blackhole.consume(mixinFilter.filter(methods));
+        }
+    }
+
+    @Benchmark
+    public void caseFilter(final Blackhole blackhole) {
+        for (final Signature method : signatures) {
+            blackhole.consume(caseFilter.excludes(method.access, method.name, method.desc, method.signature));
+        }
+    }
+
+    @Benchmark
+    public void filters(final Blackhole blackhole) {
+        for (final Signature method : signatures) {
+            blackhole.consume(filters.excludes(method.access, method.name, method.desc, method.signature));
+        }
+        for (final Collection<IMethodCoverage> methods : classMethods) {
+            blackhole.consume(filters.filter(methods));
+        }
+    }
+
+    private static final class Signature {
+        final int access;
+        final String name;
+        final String desc;
+        final String signature;
+
+        Signature(final int access, final String name, final String desc, final String signature) {
+            this.access = access;
+            this.name = name;
+            this.desc = desc;
+            this.signature = signature;
+        }
+    }
+}
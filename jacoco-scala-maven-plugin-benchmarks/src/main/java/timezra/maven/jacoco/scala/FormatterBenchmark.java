@@ -0,0 +1,168 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2013 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Evgeny Mandrikov - initial API and implementation
+ *    Kyle Lieber - implementation of CheckMojo
+ * 
+ *******************************************************************************/
+package timezra.maven.jacoco.scala;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.jacoco.core.analysis.IBundleCoverage;
+import org.jacoco.core.data.SessionInfo;
+import org.jacoco.maven.FileFilter;
+import org.jacoco.report.FileMultiReportOutput;
+import org.jacoco.report.IReportVisitor;
+import org.jacoco.report.ISourceFileLocator;
+import org.jacoco.report.csv.CSVFormatter;
+import org.jacoco.report.html.HTMLFormatter;
+import org.jacoco.report.xml.XMLFormatter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the writing of an analyzed bundle in each report format on its own and in all formats at once through the
+ * ConcurrentReportVisitor. Every source file of the corpus is served from memory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FormatterBenchmark {
+
+    private static final String ENCODING = "UTF-8";
+
+    @Param({ "100", "1000", "4000" })
+    public int units;
+
+    private File directory;
+    private File outputDirectory;
+    private IBundleCoverage bundle;
+    private List<SessionInfo> sessionInfos;
+    private ScalacCorpus corpus;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = File.createTempFile("jacoco-scala-bench", "");
+        directory.delete();
+        corpus = ScalacCorpus.generate(directory, units);
+        bundle = new BundleCreator(corpus.createProject(), new FileFilter(null, null)).createBundle(corpus
+                .getExecutionData());
+        sessionInfos = new ArrayList<SessionInfo>();
+        sessionInfos.add(new SessionInfo("bench", 0, 1));
+        outputDirectory = new File(directory, "report");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Benchmark
+    public void xml() throws IOException {
+        write(createXmlVisitor());
+    }
+
+    @Benchmark
+    public void csv() throws IOException {
+        write(createCsvVisitor());
+    }
+
+    @Benchmark
+    public void html() throws IOException {
+        write(createHtmlVisitor());
+    }
+
+    @Benchmark
+    public void allFormats() throws IOException {
+        final List<IReportVisitor> visitors = new ArrayList<IReportVisitor>();
+        visitors.add(createXmlVisitor());
+        visitors.add(createCsvVisitor());
+        visitors.add(createHtmlVisitor());
+        write(new ConcurrentReportVisitor(visitors));
+    }
+
+    private void write(final IReportVisitor visitor) throws IOException {
+        visitor.visitInfo(sessionInfos, corpus.getExecutionData().getContents());
+        visitor.visitBundle(bundle, new GeneratedSources());
+        visitor.visitEnd();
+    }
+
+    private IReportVisitor createXmlVisitor() throws IOException {
+        final XMLFormatter formatter = new XMLFormatter();
+        formatter.setOutputEncoding(ENCODING);
+        return formatter.createVisitor(createOutputStream("jacoco.xml"));
+    }
+
+    private IReportVisitor createCsvVisitor() throws IOException {
+        final CSVFormatter formatter = new CSVFormatter();
+        formatter.setOutputEncoding(ENCODING);
+        return formatter.createVisitor(createOutputStream("jacoco.csv"));
+    }
+
+    private IReportVisitor createHtmlVisitor() throws IOException {
+        final HTMLFormatter formatter = new HTMLFormatter();
+        formatter.setOutputEncoding(ENCODING);
+        formatter.setLocale(Locale.ENGLISH);
+        return formatter.createVisitor(new BufferedMultiReportOutput(new FileMultiReportOutput(outputDirectory)));
+    }
+
+    private OutputStream createOutputStream(final String fileName) throws IOException {
+        outputDirectory.mkdirs();
+        return new BufferedOutputStream(new FileOutputStream(new File(outputDirectory, fileName)));
+    }
+
+    /**
+     * Serves the same twenty lines of Scala for every source file, enough to cover the lines of the generated classes.
+     */
+    private static final class GeneratedSources implements ISourceFileLocator {
+        private static final String SOURCE;
+        static {
+            final StringBuilder source = new StringBuilder();
+            for (int line = 1; line <= 20; line++) {
+                source.append("  val line").append(line).append(" = ").append(line).append('\n');
+            }
+            SOURCE = source.toString();
+        }
+
+        @Override
+        public Reader getSourceFile(final String packageName, final String fileName) {
+            return new StringReader(SOURCE);
+        }
+
+        @Override
+        public int getTabWidth() {
+            return 4;
+        }
+    }
+}
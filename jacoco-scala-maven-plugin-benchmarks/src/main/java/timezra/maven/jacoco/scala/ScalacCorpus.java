@@ -0,0 +1,335 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2013 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Evgeny Mandrikov - initial API and implementation
+ *    Kyle Lieber - implementation of CheckMojo
+ * 
+ *******************************************************************************/
+package timezra.maven.jacoco.scala;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.maven.model.Build;
+import org.apache.maven.project.MavenProject;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.data.ExecutionDataWriter;
+import org.jacoco.core.data.SessionInfo;
+import org.jacoco.core.internal.data.CRC64;
+import org.jacoco.core.internal.flow.ClassProbesAdapter;
+import org.jacoco.core.internal.flow.ClassProbesVisitor;
+import org.jacoco.core.internal.flow.MethodProbesVisitor;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+/**
+ * Generates class files shaped like scalac output, together with random execution data for them. Every unit is one
+ * source file with a case class and its companion object, a trait with its implementation class, a class that mixes in
+ * the trait and an $anonfun closure, so the corpus exercises the SCALAC.MIXIN and SCALAC.CASE filters.
+ */
+final class ScalacCorpus {
+
+    private static final int PACKAGES = 20;
+
+    private final File directory;
+    private final File classesDirectory;
+    private final ExecutionDataStore executionData = new ExecutionDataStore();
+    private final List<String> sourceFiles = new ArrayList<String>();
+    private final Random random;
+
+    private ScalacCorpus(final File directory, final long seed) {
+        this.directory = directory;
+        this.classesDirectory = new File(directory, "classes");
+        this.random = new Random(seed);
+    }
+
+    /**
+     * @param directory
+     *            the directory to write the corpus to
+     * @param units
+     *            the number of source files, each compiled to five classes
+     * @return the generated corpus
+     * @throws IOException
+     *             if a class file can't be written
+     */
+    static ScalacCorpus generate(final File directory, final int units) throws IOException {
+        final ScalacCorpus corpus = new ScalacCorpus(directory, 42L);
+        for (int i = 0; i < units; i++) {
+            corpus.generateUnit("bench/p" + (i % PACKAGES) + "/", i);
+        }
+        return corpus;
+    }
+
+    File getClassesDirectory() {
+        return classesDirectory;
+    }
+
+    /**
+     * @return the package-qualified names of the generated source files
+     */
+    List<String> getSourceFiles() {
+        return sourceFiles;
+    }
+
+    ExecutionDataStore getExecutionData() {
+        return executionData;
+    }
+
+    /**
+     * @return a project whose output directory holds the corpus
+     */
+    MavenProject createProject() {
+        final MavenProject project = new MavenProject();
+        final Build build = new Build();
+        build.setDirectory(directory.getAbsolutePath());
+        build.setOutputDirectory(classesDirectory.getAbsolutePath());
+        project.getModel().setBuild(build);
+        project.getModel().setName("corpus");
+        return project;
+    }
+
+    /**
+     * Writes the execution data split across several files, as forked or sharded test runs would.
+     * 
+     * @param parts
+     *            the number of files
+     * @return the execution data files
+     * @throws IOException
+     *             if a file can't be written
+     */
+    List<File> writeExecFiles(final int parts) throws IOException {
+        final List<File> files = new ArrayList<File>(parts);
+        final List<ExecutionDataWriter> writers = new ArrayList<ExecutionDataWriter>(parts);
+        final List<OutputStream> streams = new ArrayList<OutputStream>(parts);
+        try {
+            for (int i = 0; i < parts; i++) {
+                final File file = new File(directory, "jacoco-" + parts + "-" + i + ".exec");
+                final OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+                streams.add(out);
+                final ExecutionDataWriter writer = new ExecutionDataWriter(out);
+                writer.visitSessionInfo(new SessionInfo("part" + i, i, i + 1));
+                writers.add(writer);
+                files.add(file);
+            }
+            int next = 0;
+            for (final ExecutionData data : executionData.getContents()) {
+                writers.get(next++ % parts).visitClassExecution(data);
+            }
+        } finally {
+            for (final OutputStream out : streams) {
+                out.close();
+            }
+        }
+        return files;
+    }
+
+    private void generateUnit(final String pkg, final int i) throws IOException {
+        final String source = "Unit" + i + ".scala";
+        sourceFiles.add(pkg + source);
+        final String point = pkg + "Point" + i;
+        final String shape = pkg + "Shape" + i;
+        final String square = pkg + "Square" + i;
+        final String closure = square + "$$anonfun$scale$1";
+
+        ClassWriter cw = newClass(Opcodes.ACC_PUBLIC, point, new String[] { "scala/Product", "scala/Serializable" },
+                source);
+        method(cw, Opcodes.ACC_PUBLIC, "<init>", "(II)V", 3, 0, 6);
+        method(cw, Opcodes.ACC_PUBLIC, "x", "()I", 3, 0, 2);
+        method(cw, Opcodes.ACC_PUBLIC, "y", "()I", 3, 0, 2);
+        method(cw, Opcodes.ACC_PUBLIC, "copy", "(II)L" + point + ";", 3, 0, 4);
+        method(cw, Opcodes.ACC_PUBLIC, "copy$default$1", "()I", 3, 0, 2);
+        method(cw, Opcodes.ACC_PUBLIC, "copy$default$2", "()I", 3, 0, 2);
+        method(cw, Opcodes.ACC_PUBLIC, "productPrefix", "()Ljava/lang/String;", 3, 0, 1);
+        method(cw, Opcodes.ACC_PUBLIC, "productArity", "()I", 3, 0, 1);
+        switchMethod(cw, Opcodes.ACC_PUBLIC, "productElement", "(I)Ljava/lang/Object;", 3, 3);
+        method(cw, Opcodes.ACC_PUBLIC, "canEqual", "(Ljava/lang/Object;)Z", 3, 1, 2);
+        method(cw, Opcodes.ACC_PUBLIC, "hashCode", "()I", 3, 0, 8);
+        method(cw, Opcodes.ACC_PUBLIC, "toString", "()Ljava/lang/String;", 3, 0, 3);
+        method(cw, Opcodes.ACC_PUBLIC, "equals", "(Ljava/lang/Object;)Z", 3, 4, 4);
+        method(cw, Opcodes.ACC_PUBLIC, "distance", "(L" + point + ";)I", 4, 2, 5);
+        write(point, cw);
+
+        cw = newClass(Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL, point + "$", new String[] { "scala/Serializable" }, source);
+        method(cw, Opcodes.ACC_STATIC, "<clinit>", "()V", 3, 0, 2);
+        method(cw, Opcodes.ACC_PRIVATE, "<init>", "()V", 3, 0, 3);
+        method(cw, Opcodes.ACC_PUBLIC, "apply", "(II)L" + point + ";", 3, 0, 4);
+        method(cw, Opcodes.ACC_PUBLIC, "unapply", "(L" + point + ";)Lscala/Option;", 3, 1, 5);
+        method(cw, Opcodes.ACC_PUBLIC, "curried", "()Lscala/Function1;", 3, 0, 2);
+        method(cw, Opcodes.ACC_PUBLIC, "tupled", "()Lscala/Function1;", 3, 0, 2);
+        method(cw, Opcodes.ACC_PUBLIC, "apply$default$1", "()I", 3, 0, 1);
+        method(cw, Opcodes.ACC_PRIVATE, "readResolve", "()Ljava/lang/Object;", 3, 0, 1);
+        write(point + "$", cw);
+
+        cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(Opcodes.V1_6, Opcodes.ACC_PUBLIC | Opcodes.ACC_ABSTRACT | Opcodes.ACC_INTERFACE, shape, null,
+                "java/lang/Object", new String[] { "scala/ScalaObject" });
+        cw.visitSource(source, null);
+        cw.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_ABSTRACT, "area", "()I", null, null).visitEnd();
+        cw.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_ABSTRACT, "describe", "()Ljava/lang/String;", null, null)
+                .visitEnd();
+        write(shape, cw);
+
+        cw = newClass(Opcodes.ACC_PUBLIC | Opcodes.ACC_ABSTRACT, shape + "$class", new String[0], source);
+        method(cw, Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "describe", "(L" + shape + ";)Ljava/lang/String;", 10, 1, 6);
+        method(cw, Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "$init$", "(L" + shape + ";)V", 9, 0, 1);
+        write(shape + "$class", cw);
+
+        cw = newClass(Opcodes.ACC_PUBLIC, square, new String[] { shape }, source);
+        method(cw, Opcodes.ACC_PUBLIC, "<init>", "(I)V", 14, 0, 5);
+        method(cw, Opcodes.ACC_PUBLIC, "describe", "()Ljava/lang/String;", 14, 0, 2);
+        method(cw, Opcodes.ACC_PUBLIC, "side", "()I", 14, 0, 2);
+        method(cw, Opcodes.ACC_PUBLIC, "area", "()I", 15, 1, 4);
+        method(cw, Opcodes.ACC_PUBLIC, "scale", "(I)L" + square + ";", 17, 2, 6);
+        write(square, cw);
+
+        cw = newClass(Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL, closure, new String[] { "scala/Serializable" }, source);
+        cw.visitField(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC | Opcodes.ACC_FINAL, "serialVersionUID", "J", null,
+                Long.valueOf(0L)).visitEnd();
+        method(cw, Opcodes.ACC_PUBLIC, "<init>", "(L" + square + ";)V", 17, 0, 3);
+        method(cw, Opcodes.ACC_PUBLIC, "apply", "(I)I", 17, 0, 2);
+        method(cw, Opcodes.ACC_PUBLIC, "apply$mcII$sp", "(I)I", 17, 1, 3);
+        method(cw, Opcodes.ACC_PUBLIC | Opcodes.ACC_BRIDGE | Opcodes.ACC_SYNTHETIC, "apply",
+                "(Ljava/lang/Object;)Ljava/lang/Object;", 17, 0, 3);
+        write(closure, cw);
+    }
+
+    private static ClassWriter newClass(final int access, final String name, final String[] interfaces,
+            final String source) {
+        final ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(Opcodes.V1_6, access | Opcodes.ACC_SUPER, name, null, "java/lang/Object", interfaces);
+        cw.visitSource(source, null);
+        return cw;
+    }
+
+    /**
+     * Writes a method that starts on the given line, followed by one line per branch. Each line holds
+     * instructionsPerLine instructions.
+     */
+    private static void method(final ClassWriter cw, final int access, final String name, final String desc,
+            final int line, final int branches, final int instructionsPerLine) {
+        final MethodVisitor mv = cw.visitMethod(access, name, desc, null, null);
+        mv.visitCode();
+        lineOfCode(mv, line, instructionsPerLine);
+        for (int b = 0; b < branches; b++) {
+            final Label skip = new Label();
+            mv.visitInsn(Opcodes.ICONST_0);
+            mv.visitJumpInsn(Opcodes.IFEQ, skip);
+            lineOfCode(mv, line + b + 1, instructionsPerLine);
+            mv.visitLabel(skip);
+        }
+        returnDefault(mv, desc);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    private static void switchMethod(final ClassWriter cw, final int access, final String name, final String desc,
+            final int line, final int cases) {
+        final MethodVisitor mv = cw.visitMethod(access, name, desc, null, null);
+        mv.visitCode();
+        lineOfCode(mv, line, 1);
+        final Label dflt = new Label();
+        final Label[] labels = new Label[cases];
+        for (int c = 0; c < cases; c++) {
+            labels[c] = new Label();
+        }
+        mv.visitVarInsn(Opcodes.ILOAD, 1);
+        mv.visitTableSwitchInsn(0, cases - 1, dflt, labels);
+        for (int c = 0; c < cases; c++) {
+            mv.visitLabel(labels[c]);
+            returnDefault(mv, desc);
+        }
+        mv.visitLabel(dflt);
+        mv.visitInsn(Opcodes.ACONST_NULL);
+        mv.visitInsn(Opcodes.ATHROW);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    private static void lineOfCode(final MethodVisitor mv, final int line, final int instructions) {
+        final Label start = new Label();
+        mv.visitLabel(start);
+        mv.visitLineNumber(line, start);
+        for (int i = 0; i < instructions; i++) {
+            mv.visitInsn(i % 2 == 0 ? Opcodes.ICONST_1 : Opcodes.POP);
+        }
+        if (instructions % 2 == 1) {
+            mv.visitInsn(Opcodes.POP);
+        }
+    }
+
+    private static void returnDefault(final MethodVisitor mv, final String desc) {
+        switch (Type.getReturnType(desc).getSort()) {
+        case Type.VOID:
+            mv.visitInsn(Opcodes.RETURN);
+            break;
+        case Type.LONG:
+            mv.visitInsn(Opcodes.LCONST_0);
+            mv.visitInsn(Opcodes.LRETURN);
+            break;
+        case Type.FLOAT:
+            mv.visitInsn(Opcodes.FCONST_0);
+            mv.visitInsn(Opcodes.FRETURN);
+            break;
+        case Type.DOUBLE:
+            mv.visitInsn(Opcodes.DCONST_0);
+            mv.visitInsn(Opcodes.DRETURN);
+            break;
+        case Type.OBJECT:
+        case Type.ARRAY:
+            mv.visitInsn(Opcodes.ACONST_NULL);
+            mv.visitInsn(Opcodes.ARETURN);
+            break;
+        default:
+            mv.visitInsn(Opcodes.ICONST_0);
+            mv.visitInsn(Opcodes.IRETURN);
+        }
+    }
+
+    private void write(final String name, final ClassWriter cw) throws IOException {
+        cw.visitEnd();
+        final byte[] bytes = cw.toByteArray();
+        final File file = new File(classesDirectory, name + ".class");
+        file.getParentFile().mkdirs();
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(bytes);
+        }
+        final boolean[] probes = new boolean[countProbes(bytes)];
+        for (int p = 0; p < probes.length; p++) {
+            probes[p] = random.nextInt(10) < 6;
+        }
+        executionData.put(new ExecutionData(CRC64.checksum(bytes), name, probes));
+    }
+
+    private static int countProbes(final byte[] bytes) {
+        final int[] count = new int[1];
+        new ClassReader(bytes).accept(new ClassProbesAdapter(new ClassProbesVisitor() {
+            @Override
+            public MethodProbesVisitor visitMethod(final int access, final String name, final String desc,
+                    final String signature, final String[] exceptions) {
+                return null;
+            }
+
+            @Override
+            public void visitTotalProbeCount(final int total) {
+                count[0] = total;
+            }
+        }), 0);
+        return count[0];
+    }
+}
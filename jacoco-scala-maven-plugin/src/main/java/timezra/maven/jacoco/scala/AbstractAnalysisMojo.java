@@ -0,0 +1,989 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2013 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Evgeny Mandrikov - initial API and implementation
+ *    Kyle Lieber - implementation of CheckMojo
+ * 
+ *******************************************************************************/
+package timezra.maven.jacoco.scala;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.reporting.MavenReportException;
+import org.codehaus.plexus.util.DirectoryScanner;
+import org.codehaus.plexus.util.StringUtils;
+import org.jacoco.core.analysis.Analyzer;
+import org.jacoco.core.analysis.IBundleCoverage;
+import org.jacoco.core.analysis.ICoverageNode;
+import org.jacoco.core.analysis.ICoverageVisitor;
+import org.jacoco.core.analysis.IMethodCoverage;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.internal.data.CRC64;
+import org.jacoco.core.internal.flow.ClassProbesAdapter;
+import org.jacoco.core.internal.flow.ClassProbesVisitor;
+import org.jacoco.core.internal.flow.MethodProbesVisitor;
+import org.jacoco.core.internal.instr.InstrSupport;
+import org.jacoco.maven.FileFilter;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Base class for goals that analyze the class files of one or more projects against their execution data, with the
+ * filters, caches and threads that the goals share.
+ */
+public abstract class AbstractAnalysisMojo extends AbstractMojo {
+
+    private static final String FILTER_SCALAC_MIXIN = "SCALAC.MIXIN";
+    private static final String FILTER_SCALAC_CASE = "SCALAC.CASE";
+    private static final String FILTER_SCALAC_ANONFUN = "SCALAC.ANONFUN";
+    private static final String FILTER_SCALAC_SPECIALIZED = "SCALAC.SPECIALIZED";
+    private static final String FILTER_SCALAC_PACKAGE = "SCALAC.PACKAGE";
+    static final String FILTER_SCALAC_PREFIX = "SCALAC.";
+
+    /**
+     * A list of additional execution data files to merge into the report, relative to the build directory of the
+     * project (of every module for report-aggregate). May use wildcard characters (* and ?), e.g.
+     * <code>**&#47;*.exec</code>. The files are loaded concurrently and merged in memory, so no intermediate merged
+     * file is written.
+     * 
+     * @parameter
+     */
+    private List<String> dataFileIncludes;
+
+    /**
+     * A list of class files to include in the report. May use wildcard characters (* and ?). When not specified everything
+     * will be included.
+     * 
+     * @parameter
+     */
+    private List<String> includes;
+
+    /**
+     * A list of class files to exclude from the report. May use wildcard characters (* and ?). When not specified nothing
+     * will be excluded.
+     * 
+     * @parameter
+     */
+    private List<String> excludes;
+
+    /**
+     * Flag used to suppress execution.
+     * 
+     * @parameter expression="${jacoco.skip}" default-value="false"
+     */
+    private boolean skip;
+
+    /**
+     * A list of filters to exclude from the report. SCALAC.MIXIN and SCALAC.CASE exclude methods; SCALAC.ANONFUN,
+     * SCALAC.SPECIALIZED and SCALAC.PACKAGE exclude whole classes by name, before their class files are read. Any other
+     * entry that does not start with SCALAC. is the fully qualified name of a class that implements ClassFilter,
+     * MethodSignatureFilter or MethodCoverageFilter, which can be added to the plugin dependencies. When not specified
+     * nothing will be excluded.
+     * 
+     * @parameter
+     */
+    private List<String> filters;
+
+    /**
+     * The number of threads used to load execution data files and to analyze class files. When greater than one, the
+     * class files are split across that many workers, each with its own analyzer, and the results are merged into a
+     * single bundle. The report-aggregate goal analyzes up to that many modules concurrently and shares the threads
+     * among them; with the default of 1, the modules are analyzed one after the other.
+     * 
+     * @parameter expression="${jacoco.threadCount}" default-value="1"
+     */
+    private int threadCount;
+
+    /**
+     * Flag used to cache the analyzed structure of class files between builds. A class whose checksum and filters are
+     * unchanged is not parsed again; only its execution data is applied to the cached structure.
+     * 
+     * @parameter expression="${jacoco.analysisCache}" default-value="true"
+     */
+    private boolean analysisCache;
+
+    /**
+     * Flag used to load only the execution data of the analyzed classes. The class files are checksummed before the
+     * execution data files are read, and the records of all other classes, such as the libraries loaded by an
+     * integration test, are skipped without being decoded. This lowers the heap and load time for large execution data
+     * files, but the sessions page of the HTML report then lists only the analyzed classes.
+     * 
+     * @parameter expression="${jacoco.filterExecutionData}" default-value="false"
+     */
+    private boolean filterExecutionData;
+
+    /**
+     * The maximum size in MiB of the execution data and analyzed class structures that are kept in memory for the other
+     * executions of the plugin in the same build, e.g. the report of the integration tests, the aggregate report or the
+     * site. A later execution reuses them when the execution data files, the class files and the filters are the same.
+     * Set to 0 to disable sharing.
+     * 
+     * @parameter expression="${jacoco.sessionCacheSize}" default-value="256"
+     */
+    private int sessionCacheSize;
+
+    /**
+     * The start time of the Maven session, which identifies the build that the session cache belongs to.
+     * 
+     * @parameter expression="${session.startTime}"
+     * @readonly
+     */
+    private Date sessionStartTime;
+
+    /**
+     * The directory that Maven was started in.
+     * 
+     * @parameter expression="${session.executionRootDirectory}"
+     * @readonly
+     */
+    private String executionRootDirectory;
+
+    /**
+     * The version of this plugin. Structures in the analysis cache of another version are analyzed again.
+     * 
+     * @parameter expression="${plugin.version}"
+     * @readonly
+     */
+    private String pluginVersion;
+
+    /**
+     * A coverage snapshot of a previous build, such as the jacoco.snapshot of the target branch of a pull request. When
+     * set, only the classes whose class files changed since the baseline are analyzed, reported and checked, and
+     * jacoco-delta.csv lists the lines and branches that each of them gained or lost.
+     * 
+     * @parameter expression="${jacoco.baseline}"
+     */
+    private File baseline;
+
+    /**
+     * Maven project.
+     * 
+     * @parameter expression="${project}"
+     * @readonly
+     */
+    private MavenProject project;
+
+    private ReportMetrics metrics;
+
+    private CoverageSnapshot baselineSnapshot;
+
+    private final Map<File, AnalysisCache> retainedAnalysisCaches = new HashMap<File, AnalysisCache>();
+
+    /**
+     * @return the Maven project
+     */
+    protected MavenProject getProject() {
+        return project;
+    }
+
+    /**
+     * Returns the list of class files to include in the report.
+     * 
+     * @return class files to include, may contain wildcard characters
+     */
+    protected List<String> getIncludes() {
+        return includes;
+    }
+
+    /**
+     * Returns the list of class files to exclude from the report.
+     * 
+     * @return class files to exclude, may contain wildcard characters
+     */
+    protected List<String> getExcludes() {
+        return excludes;
+    }
+
+    /**
+     * Returns the projects whose class files are analyzed for the report.
+     * 
+     * @return the projects, in the order they appear in the report
+     */
+    protected abstract List<MavenProject> getReportProjects();
+
+    /**
+     * Returns the execution data files to merge into the report.
+     * 
+     * @return the existing execution data files
+     */
+    protected abstract List<File> getDataFiles();
+
+    /**
+     * Returns the directory that holds the cached structure of the class files of a project.
+     * 
+     * @param reportProject
+     *            one of the report projects
+     * @return the cache directory
+     */
+    protected abstract File getAnalysisCacheDirectory(MavenProject reportProject);
+
+    /**
+     * Returns whether the analyzed structure of the class files is kept in memory between the reports of this mojo, so
+     * that only the class files that changed are analyzed again. The analysis cache file is still written if the
+     * analysis cache is enabled.
+     * 
+     * @return <code>true</code> if the structures are kept in memory
+     */
+    protected boolean isAnalysisRetained() {
+        return false;
+    }
+
+    /**
+     * Returns whether the analyzed structure of the class files may be cached, in memory or in the analysis cache file.
+     * A cache holds the structures of all classes of a project until its analysis ends.
+     * 
+     * @return <code>true</code> if the analysis cache, the retained analysis and the session cache are used as
+     *         configured
+     */
+    protected boolean isAnalysisCacheUsed() {
+        return true;
+    }
+
+    /**
+     * @return whether the execution of the plugin is skipped
+     */
+    protected boolean isSkip() {
+        return skip;
+    }
+
+    /**
+     * Returns the directories, jars and zips with the class files of a project. By default this is the output directory
+     * of the project.
+     * 
+     * @param reportProject
+     *            one of the report projects
+     * @return the class locations
+     */
+    protected List<File> getClassLocations(final MavenProject reportProject) {
+        return Collections.singletonList(resolvePath(reportProject, reportProject.getBuild().getOutputDirectory()));
+    }
+
+    /**
+     * @return the filters to apply, may be <code>null</code>
+     */
+    protected List<String> getFilters() {
+        return filters;
+    }
+
+    /**
+     * @return whether only the execution data of the analyzed classes is loaded
+     */
+    protected boolean isFilterExecutionData() {
+        return filterExecutionData;
+    }
+
+    /**
+     * @return the coverage snapshot that only changed classes are analyzed against, may be <code>null</code>
+     */
+    protected File getBaseline() {
+        return baseline;
+    }
+
+    /**
+     * Returns whether the goal has anything to analyze, and logs why not otherwise.
+     * 
+     * @return <code>false</code> if the execution is skipped or no execution data file exists
+     */
+    protected boolean canAnalyze() {
+        if (skip) {
+            getLog().info("Skipping JaCoCo execution");
+            return false;
+        }
+        if (getAllDataFiles().isEmpty()) {
+            getLog().info("Skipping JaCoCo execution due to missing execution data file");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the execution data files that are loaded for the analysis.
+     * 
+     * @return the existing execution data files
+     */
+    protected List<File> getAllDataFiles() {
+        return getDataFiles();
+    }
+
+    /**
+     * Starts the metrics of a new run, which the analysis records its phases and counters in.
+     * 
+     * @return the new metrics
+     */
+    ReportMetrics startMetrics() {
+        metrics = new ReportMetrics();
+        return metrics;
+    }
+
+    /**
+     * @return the metrics of the current run
+     */
+    ReportMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return the baseline snapshot loaded by the last call to createBundleCreators, or <code>null</code>
+     */
+    CoverageSnapshot getBaselineSnapshot() {
+        return baselineSnapshot;
+    }
+
+    /**
+     * Loads the execution data and analyzes the class files of the given projects. All execution data files are
+     * merged.
+     * 
+     * @param reportProjects
+     *            the projects to analyze
+     * @return one bundle per project
+     * @throws IOException
+     *             if a class file can't be read
+     * @throws MavenReportException
+     *             if the execution data can't be loaded or a filter can't be created
+     */
+    protected List<IBundleCoverage> analyze(final List<MavenProject> reportProjects) throws IOException,
+            MavenReportException {
+        startMetrics();
+        final List<BundleCreator> creators = createBundleCreators(reportProjects);
+        long start = System.nanoTime();
+        final ProbeStore executionData;
+        try {
+            executionData = loadExecutionData(getAllDataFiles(), getExecutionDataClassIds(creators), false)
+                    .getProbeStore();
+        } catch (final IOException e) {
+            throw new MavenReportException(e.getMessage(), e);
+        }
+        metrics.addTime("loadExecutionData", System.nanoTime() - start);
+        start = System.nanoTime();
+        final List<List<IBundleCoverage>> projectBundles = createProjectBundles(creators,
+                Collections.singletonList(executionData));
+        final List<IBundleCoverage> bundles = new ArrayList<IBundleCoverage>(projectBundles.size());
+        for (final List<IBundleCoverage> bundlesOfProject : projectBundles) {
+            bundles.add(bundlesOfProject.get(0));
+        }
+        metrics.addTime("createBundle", System.nanoTime() - start);
+        return bundles;
+    }
+
+    /**
+     * Loads execution data files, or takes them from the session cache if another execution of the build has loaded
+     * the same, unmodified files for the same classes.
+     */
+    MergingExecFileLoader loadExecutionData(final List<File> dataFiles, final Set<Long> classIds,
+            final boolean splitBySession) throws IOException {
+        final SessionCache.Loader<MergingExecFileLoader> loader = new SessionCache.Loader<MergingExecFileLoader>() {
+            @Override
+            public MergingExecFileLoader call() throws IOException {
+                final MergingExecFileLoader execFileLoader = new MergingExecFileLoader(threadCount, classIds,
+                        splitBySession);
+                execFileLoader.load(dataFiles);
+                metrics.add("executionDataSkipped", execFileLoader.getSkippedCount());
+                metrics.add("executionDataFilesRead", dataFiles.size());
+                return execFileLoader;
+            }
+
+            @Override
+            long estimateSize(final MergingExecFileLoader value) {
+                return value.estimateSize();
+            }
+        };
+        final SessionCache sessionCache = getSessionCache();
+        if (sessionCache == null) {
+            return loader.call();
+        }
+        final List<Object> key = new ArrayList<Object>();
+        key.add("executionData");
+        key.add(Boolean.valueOf(splitBySession));
+        key.add(classIds);
+        for (final File dataFile : dataFiles) {
+            key.add(dataFile.getAbsolutePath());
+            key.add(Long.valueOf(dataFile.length()));
+            key.add(Long.valueOf(dataFile.lastModified()));
+        }
+        return sessionCache.get(key, loader);
+    }
+
+    private SessionCache getSessionCache() {
+        if (sessionCacheSize <= 0 || sessionStartTime == null) {
+            return null;
+        }
+        return SessionCache.forSession(Arrays.asList(sessionStartTime, executionRootDirectory),
+                sessionCacheSize * 1024L * 1024L);
+    }
+
+    /**
+     * @return the ids of the classes whose execution data is loaded, or <code>null</code> to load all execution data
+     */
+    Set<Long> getExecutionDataClassIds(final List<BundleCreator> creators) throws IOException {
+        if (!filterExecutionData) {
+            return null;
+        }
+        final long start = System.nanoTime();
+        final Set<Long> classIds = new HashSet<Long>();
+        for (final BundleCreator creator : creators) {
+            final Set<Long> creatorClassIds = creator.getClassIds();
+            if (creatorClassIds == null) {
+                getLog().info("Loading all execution data, the class locations hold nested archives");
+                return null;
+            }
+            classIds.addAll(creatorClassIds);
+        }
+        metrics.addTime("loadExecutionData.classIds", System.nanoTime() - start);
+        return classIds;
+    }
+
+    /**
+     * Returns the given execution data file, if it exists, and the files that match dataFileIncludes in the build
+     * directory.
+     * 
+     * @param dataFile
+     *            the execution data file of the project
+     * @param buildDirectory
+     *            the build directory of the project
+     * @return the existing execution data files
+     */
+    protected List<File> getDataFiles(final File dataFile, final File buildDirectory) {
+        final Collection<File> dataFiles = new LinkedHashSet<File>();
+        if (dataFile.isFile()) {
+            dataFiles.add(dataFile.getAbsoluteFile());
+        }
+        if (dataFileIncludes != null && !dataFileIncludes.isEmpty() && buildDirectory.isDirectory()) {
+            final DirectoryScanner scanner = new DirectoryScanner();
+            scanner.setBasedir(buildDirectory);
+            scanner.setIncludes(dataFileIncludes.toArray(new String[dataFileIncludes.size()]));
+            scanner.scan();
+            for (final String includedFile : scanner.getIncludedFiles()) {
+                dataFiles.add(new File(buildDirectory, includedFile).getAbsoluteFile());
+            }
+        }
+        return new ArrayList<File>(dataFiles);
+    }
+
+    /**
+     * Several projects are analyzed concurrently, so the threads are shared among them.
+     */
+    List<BundleCreator> createBundleCreators(final List<MavenProject> reportProjects)
+            throws MavenReportException {
+        final FileFilter fileFilter = new FileFilter(getIncludes(), getExcludes());
+        final boolean sanitizing = (filters != null && !filters.isEmpty())
+                || (isAnalysisCacheUsed() && (analysisCache || isAnalysisRetained() || getSessionCache() != null));
+        final Filters filter = sanitizing ? createFilters() : null;
+        final int projectThreadCount = Math.max(1, threadCount / Math.max(1, reportProjects.size()));
+        final Set<Long> unchangedClassIds = loadBaseline();
+        final List<BundleCreator> creators = new ArrayList<BundleCreator>(reportProjects.size());
+        for (final MavenProject reportProject : reportProjects) {
+            final List<File> classLocations = getClassLocations(reportProject);
+            final BundleCreator creator;
+            if (sanitizing) {
+                final AnalysisCache cache = createAnalysisCache(getAnalysisCacheDirectory(reportProject),
+                        unchangedClassIds.isEmpty());
+                creator = new SanitizingBundleCreator(reportProject, classLocations, fileFilter, projectThreadCount,
+                        filter, cache);
+            } else {
+                creator = new BundleCreator(reportProject, classLocations, fileFilter, projectThreadCount);
+            }
+            creator.setMetrics(metrics);
+            creator.setUnchangedClassIds(unchangedClassIds);
+            if (filter != null && filter.filtersClasses()) {
+                creator.setClassFilter(filter);
+            }
+            creators.add(creator);
+        }
+        return creators;
+    }
+
+    /**
+     * Maps the baseline snapshot, if any, and collects the ids of its classes: a class file with one of these CRC64 ids
+     * is unchanged since the baseline.
+     */
+    private Set<Long> loadBaseline() throws MavenReportException {
+        baselineSnapshot = null;
+        if (baseline == null) {
+            return Collections.emptySet();
+        }
+        try {
+            baselineSnapshot = CoverageSnapshot.open(baseline);
+        } catch (final IOException e) {
+            throw new MavenReportException("Unable to read the baseline " + baseline + ": " + e.getMessage(), e);
+        }
+        final Set<Long> classIds = new HashSet<Long>();
+        for (final CoverageSnapshot.Node baselineClass : baselineSnapshot.getClasses()) {
+            classIds.add(Long.valueOf(baselineClass.getId()));
+        }
+        return classIds;
+    }
+
+    List<List<IBundleCoverage>> createProjectBundles(final List<BundleCreator> creators,
+            final List<ProbeStore> stores) throws IOException {
+        if (creators.size() == 1) {
+            return Collections.singletonList(creators.get(0).analyze(stores));
+        }
+        final List<List<IBundleCoverage>> bundles = new ArrayList<List<IBundleCoverage>>(
+                Collections.<List<IBundleCoverage>> nCopies(creators.size(), null));
+        final List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(creators.size());
+        for (int i = 0; i < creators.size(); i++) {
+            final int index = i;
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() throws IOException {
+                    bundles.set(index, creators.get(index).analyze(stores));
+                    return null;
+                }
+            });
+        }
+        ConcurrentTasks.invokeAll(threadCount, tasks);
+        return bundles;
+    }
+
+    private Filters createFilters() throws MavenReportException {
+        final Collection<ClassFilter> classFilters = new ArrayList<>();
+        final Collection<MethodSignatureFilter> signatureFilters = new ArrayList<>();
+        final Collection<MethodCoverageFilter> coverageFilters = new ArrayList<>();
+        if (filters != null) {
+            if (filters.contains(FILTER_SCALAC_ANONFUN)) {
+                classFilters.add(new AnonfunFilter());
+            }
+            if (filters.contains(FILTER_SCALAC_SPECIALIZED)) {
+                classFilters.add(new SpecializedFilter());
+            }
+            if (filters.contains(FILTER_SCALAC_PACKAGE)) {
+                classFilters.add(new PackageObjectFilter());
+            }
+            if (filters.contains(FILTER_SCALAC_MIXIN)) {
+                coverageFilters.add(metrics.countRemovedMethods(FILTER_SCALAC_MIXIN, new MixinFilter()));
+            }
+            if (filters.contains(FILTER_SCALAC_CASE)) {
+                signatureFilters.add(metrics.countRemovedMethods(FILTER_SCALAC_CASE, new CaseFilter()));
+            }
+            for (final String filter : filters) {
+                if (!filter.startsWith(FILTER_SCALAC_PREFIX)) {
+                    addCustomFilter(filter, classFilters, signatureFilters, coverageFilters);
+                }
+            }
+        }
+        return new Filters(classFilters, signatureFilters, coverageFilters);
+    }
+
+    private void addCustomFilter(final String className, final Collection<ClassFilter> classFilters,
+            final Collection<MethodSignatureFilter> signatureFilters,
+            final Collection<MethodCoverageFilter> coverageFilters) throws MavenReportException {
+        final Object filter;
+        try {
+            filter = Class.forName(className, true, getClass().getClassLoader()).getConstructor().newInstance();
+        } catch (final ClassNotFoundException | NoSuchMethodException | InstantiationException
+                | IllegalAccessException | InvocationTargetException e) {
+            throw new MavenReportException("Unable to create filter " + className + ": " + e.getMessage(), e);
+        }
+        if (!(filter instanceof ClassFilter) && !(filter instanceof MethodSignatureFilter)
+                && !(filter instanceof MethodCoverageFilter)) {
+            throw new MavenReportException("Filter " + className + " implements none of " + ClassFilter.class.getName()
+                    + ", " + MethodSignatureFilter.class.getName() + " and " + MethodCoverageFilter.class.getName());
+        }
+        if (filter instanceof ClassFilter) {
+            classFilters.add((ClassFilter) filter);
+        }
+        if (filter instanceof MethodSignatureFilter) {
+            signatureFilters.add(metrics.countRemovedMethods(className, (MethodSignatureFilter) filter));
+        }
+        if (filter instanceof MethodCoverageFilter) {
+            coverageFilters.add(metrics.countRemovedMethods(className, (MethodCoverageFilter) filter));
+        }
+    }
+
+    /**
+     * @param pruned
+     *            whether the structures of the classes that the analysis does not look up are dropped, see
+     *            {@link AnalysisCache#setPruned(boolean)}
+     */
+    private AnalysisCache createAnalysisCache(final File analysisCacheDirectory, final boolean pruned) {
+        if (!isAnalysisCacheUsed()) {
+            return null;
+        }
+        final SessionCache sessionCache = getSessionCache();
+        AnalysisCache cache;
+        if (isAnalysisRetained()) {
+            cache = retainedAnalysisCaches.get(analysisCacheDirectory);
+            if (cache == null) {
+                cache = newAnalysisCache(analysisCacheDirectory);
+                cache.retain();
+                retainedAnalysisCaches.put(analysisCacheDirectory, cache);
+            }
+        } else if (analysisCache || sessionCache != null) {
+            cache = newAnalysisCache(analysisCacheDirectory);
+        } else {
+            return null;
+        }
+        cache.setPersistent(analysisCache);
+        cache.setPruned(pruned);
+        if (sessionCache != null) {
+            cache.share(sessionCache);
+        }
+        return cache;
+    }
+
+    private AnalysisCache newAnalysisCache(final File analysisCacheDirectory) {
+        final Collection<String> filterKey = new TreeSet<String>();
+        if (filters != null) {
+            filterKey.addAll(filters);
+        }
+        return new AnalysisCache(analysisCacheDirectory, StringUtils.join(filterKey.iterator(), ","),
+                getImplementationKey());
+    }
+
+    /**
+     * A custom filter can change its behavior while its class name stays the same, so the cache is also keyed by the
+     * version of the plugin and the origin of every custom filter class.
+     */
+    private String getImplementationKey() {
+        final StringBuilder key = new StringBuilder(String.valueOf(pluginVersion)).append(';').append(
+                AnalysisCache.getOrigin(getClass()));
+        if (filters != null) {
+            for (final String filter : new TreeSet<String>(filters)) {
+                if (!filter.startsWith(FILTER_SCALAC_PREFIX)) {
+                    key.append(';');
+                    try {
+                        key.append(AnalysisCache.getOrigin(Class.forName(filter, false, getClass().getClassLoader())));
+                    } catch (final ClassNotFoundException e) {
+                        key.append(filter);
+                    }
+                }
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * Warns if the classes of a node were compiled without line numbers.
+     * 
+     * @param node
+     *            a bundle of the report
+     */
+    protected void checkForMissingDebugInformation(final ICoverageNode node) {
+        final long start = System.nanoTime();
+        if (node.getClassCounter().getTotalCount() > 0 && node.getLineCounter().getTotalCount() == 0) {
+            getLog().warn("To enable source code annotation class files have to be compiled with debug information.");
+        }
+        metrics.addTime("checkForMissingDebugInformation", System.nanoTime() - start);
+    }
+
+    /**
+     * Resolves a path against the base directory of a project.
+     * 
+     * @param reportProject
+     *            the project
+     * @param path
+     *            an absolute path or a path relative to the base directory of the project
+     * @return the absolute file
+     */
+    protected static File resolvePath(final MavenProject reportProject, final String path) {
+        File file = new File(path);
+        if (!file.isAbsolute()) {
+            file = new File(reportProject.getBasedir(), path);
+        }
+        return file;
+    }
+
+    static final class SanitizingBundleCreator extends BundleCreator {
+        private final Filters filter;
+        private final AnalysisCache cache;
+        private SharedStringPool stringPool;
+
+        public SanitizingBundleCreator(final MavenProject project, final FileFilter fileFilter, final int threadCount,
+                final Filters filter, final AnalysisCache cache) {
+            this(project, null, fileFilter, threadCount, filter, cache);
+        }
+
+        public SanitizingBundleCreator(final MavenProject project, final List<File> classLocations,
+                final FileFilter fileFilter, final int threadCount, final Filters filter, final AnalysisCache cache) {
+            super(project, classLocations, fileFilter, threadCount);
+            this.filter = filter;
+            this.cache = cache;
+        }
+
+        @Override
+        List<IBundleCoverage> analyze(final List<ProbeStore> probeStores) throws IOException {
+            return withCache(new Analysis<List<IBundleCoverage>>() {
+                @Override
+                public List<IBundleCoverage> run() throws IOException {
+                    return SanitizingBundleCreator.super.analyze(probeStores);
+                }
+            });
+        }
+
+        @Override
+        void analyzeByPackage(final List<ProbeStore> probeStores, final PackageBundleVisitor visitor)
+                throws IOException {
+            withCache(new Analysis<Void>() {
+                @Override
+                public Void run() throws IOException {
+                    SanitizingBundleCreator.super.analyzeByPackage(probeStores, visitor);
+                    return null;
+                }
+            });
+        }
+
+        /**
+         * Runs an analysis with a fresh string pool, with the analysis cache loaded before and saved after it.
+         */
+        private <T> T withCache(final Analysis<T> analysis) throws IOException {
+            stringPool = new SharedStringPool();
+            try {
+                if (cache == null) {
+                    return analysis.run();
+                }
+                cache.load(stringPool);
+                final T result = analysis.run();
+                cache.save();
+                return result;
+            } finally {
+                stringPool = null;
+            }
+        }
+
+        private interface Analysis<T> {
+            T run() throws IOException;
+        }
+
+        @Override
+        protected Analyzer createAnalyzer(final ExecutionDataStore executionDataStore, final ICoverageVisitor coverageVisitor) {
+            return new SanitizingAnalyzer(Collections.singletonList(ProbeStore.of(executionDataStore)),
+                    Collections.singletonList(coverageVisitor), filter, cache, stringPool, getMetrics());
+        }
+
+        /**
+         * The structure of a class does not depend on the probes, so one analyzer parses and filters each class once and
+         * applies the probes of every store to it.
+         */
+        @Override
+        List<Analyzer> createAnalyzers(final List<ProbeStore> probeStores,
+                final List<? extends ICoverageVisitor> coverageVisitors) {
+            return Collections.<Analyzer> singletonList(new SanitizingAnalyzer(probeStores, coverageVisitors, filter,
+                    cache, stringPool, getMetrics()));
+        }
+    }
+
+    /**
+     * Each analyzer is used by a single thread, so it reuses one SanitizingClassAnalyzer for all of its classes. The
+     * probes are read from the packed ProbeStores; the ExecutionDataStore of the Analyzer itself stays empty.
+     */
+    private static final class SanitizingAnalyzer extends MeteredAnalyzer {
+
+        private final List<ProbeStore> executionData;
+        private final List<? extends ICoverageVisitor> coverageVisitors;
+        private final AnalysisCache cache;
+        private final SanitizingClassAnalyzer classAnalyzer;
+
+        public SanitizingAnalyzer(final List<ProbeStore> executionData,
+                final List<? extends ICoverageVisitor> coverageVisitors, final Filters filter, final AnalysisCache cache,
+                final SharedStringPool stringPool, final ReportMetrics metrics) {
+            super(new ExecutionDataStore(), coverageVisitors.get(0), metrics);
+            this.executionData = executionData;
+            this.coverageVisitors = coverageVisitors;
+            this.cache = cache;
+            this.classAnalyzer = new SanitizingClassAnalyzer(stringPool, filter);
+        }
+
+        @Override
+        protected void analyze(final ClassReader reader) {
+            final long classid = CRC64.checksum(reader.b);
+            ClassStructure structure = cache == null ? null : cache.get(classid);
+            if (structure == null) {
+                classAnalyzer.reset(classid);
+                reader.accept(new ClassProbesAdapter(classAnalyzer), 0);
+                addFilteringTime(classAnalyzer.getFilteringTime());
+                structure = classAnalyzer.getStructure();
+                if (cache != null) {
+                    cache.put(structure);
+                }
+            }
+            for (int i = 0; i < executionData.size(); i++) {
+                final long[] probes = executionData.get(i).getProbes(classid);
+                coverageVisitors.get(i).visitCoverage(structure.createCoverage(probes));
+            }
+        }
+    }
+
+    private static final class SanitizingClassAnalyzer extends ClassProbesVisitor {
+        private final SharedStringPool stringPool;
+        private final Filters filter;
+        private final CollectingMethodAnalyzer methodAnalyzer = new CollectingMethodAnalyzer();
+        private final List<MethodStructure> methodStructures = new ArrayList<MethodStructure>();
+        private final List<IMethodCoverage> methodCoverages = new ArrayList<IMethodCoverage>();
+        private IMethodCoverage[] unfilteredCoverages = new IMethodCoverage[16];
+        private long classid;
+        private String name;
+        private String signature;
+        private String superName;
+        private String[] interfaces;
+        private String sourceFileName;
+        private ClassStructure structure;
+        private long filteringNanos;
+
+        private SanitizingClassAnalyzer(final SharedStringPool stringPool, final Filters filter) {
+            this.stringPool = stringPool;
+            this.filter = filter;
+        }
+
+        void reset(final long classid) {
+            this.classid = classid;
+            name = null;
+            signature = null;
+            superName = null;
+            interfaces = null;
+            sourceFileName = null;
+            structure = null;
+            filteringNanos = 0;
+            methodStructures.clear();
+        }
+
+        ClassStructure getStructure() {
+            return structure;
+        }
+
+        /**
+         * @return the time spent in filters while the current class was visited, in nanoseconds
+         */
+        long getFilteringTime() {
+            return filteringNanos;
+        }
+
+        @Override
+        public void visit(final int version, final int access, final String name, final String signature,
+                final String superName, final String[] interfaces) {
+            this.name = stringPool.get(name);
+            this.signature = stringPool.get(signature);
+            this.superName = stringPool.get(superName);
+            this.interfaces = stringPool.get(interfaces);
+        }
+
+        @Override
+        public void visitSource(final String source, final String debug) {
+            this.sourceFileName = stringPool.get(source);
+        }
+
+        @Override
+        public MethodProbesVisitor visitMethod(final int access, final String name, final String desc,
+                final String signature, final String[] exceptions) {
+
+            InstrSupport.assertNotInstrumented(name, this.name);
+
+            // TODO: Use filter hook
+            if ((access & Opcodes.ACC_SYNTHETIC) != 0) {
+                return null;
+            }
+
+            final long start = System.nanoTime();
+            final boolean excluded = filter.excludes(access, name, desc, signature);
+            filteringNanos += System.nanoTime() - start;
+            if (excluded) {
+                return null;
+            }
+
+            // The ClassProbesAdapter hands over a method only after the
+            // previous one has ended, so one analyzer serves all of them
+            methodAnalyzer.reset(stringPool.get(name), stringPool.get(desc), stringPool.get(signature));
+            return methodAnalyzer;
+        }
+
+        @Override
+        public FieldVisitor visitField(final int access, final String name, final String desc, final String signature,
+                final Object value) {
+            InstrSupport.assertNotInstrumented(name, this.name);
+            return super.visitField(access, name, desc, signature, value);
+        }
+
+        @Override
+        public void visitTotalProbeCount(final int count) {
+            // nothing to do
+        }
+
+        @Override
+        public void visitEnd() {
+            structure = new ClassStructure(classid, name, signature, superName, interfaces, sourceFileName,
+                    sanitizedMethods());
+        }
+
+        /**
+         * The filters only look at the structure of the methods, so they are given coverages without execution data and
+         * their verdict holds for any probes applied to the structure later.
+         */
+        private List<MethodStructure> sanitizedMethods() {
+            final int count = methodStructures.size();
+            if (!filter.filtersCoverage()) {
+                return new ArrayList<MethodStructure>(methodStructures);
+            }
+            if (unfilteredCoverages.length < count) {
+                unfilteredCoverages = new IMethodCoverage[Math.max(count, unfilteredCoverages.length * 2)];
+            }
+            methodCoverages.clear();
+            for (int i = 0; i < count; i++) {
+                final IMethodCoverage methodCoverage = methodStructures.get(i).createCoverage(null);
+                unfilteredCoverages[i] = methodCoverage;
+                methodCoverages.add(methodCoverage);
+            }
+            final long start = System.nanoTime();
+            final Collection<IMethodCoverage> filtered = filter.filter(methodCoverages);
+            filteringNanos += System.nanoTime() - start;
+            final List<MethodStructure> sanitized = new ArrayList<MethodStructure>(filtered.size());
+            int next = 0;
+            for (final IMethodCoverage methodCoverage : filtered) {
+                final int index = indexOf(methodCoverage, next, count);
+                sanitized.add(methodStructures.get(index));
+                next = index + 1;
+            }
+            Arrays.fill(unfilteredCoverages, 0, count, null);
+            methodCoverages.clear();
+            return sanitized;
+        }
+
+        /**
+         * Filters usually keep the order of the methods, so the search starts after the previous match.
+         */
+        private int indexOf(final IMethodCoverage methodCoverage, final int from, final int count) {
+            for (int i = 0; i < count; i++) {
+                final int index = (from + i) % count;
+                if (unfilteredCoverages[index] == methodCoverage) {
+                    return index;
+                }
+            }
+            throw new IllegalStateException("A filter returned the unknown method " + methodCoverage.getName()
+                    + methodCoverage.getDesc() + " of " + name);
+        }
+
+        private final class CollectingMethodAnalyzer extends MethodStructureAnalyzer {
+            @Override
+            public void visitEnd() {
+                super.visitEnd();
+                final MethodStructure methodStructure = getStructure();
+                if (methodStructure.getInstructionCount() > 0) {
+                    // Only consider methods that actually contain
+                    // code
+                    methodStructures.add(methodStructure);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,710 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2013 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Evgeny Mandrikov - initial API and implementation
+ *    Kyle Lieber - implementation of CheckMojo
+ * 
+ *******************************************************************************/
+package timezra.maven.jacoco.scala;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.reporting.MavenReport;
+import org.apache.maven.reporting.MavenReportException;
+import org.codehaus.plexus.util.FileUtils;
+import org.jacoco.core.JaCoCo;
+import org.jacoco.core.analysis.CoverageNodeImpl;
+import org.jacoco.core.analysis.IBundleCoverage;
+import org.jacoco.core.analysis.ICoverageNode.ElementType;
+import org.jacoco.core.data.SessionInfo;
+import org.jacoco.report.FileMultiReportOutput;
+import org.jacoco.report.IMultiReportOutput;
+import org.jacoco.report.IReportGroupVisitor;
+import org.jacoco.report.IReportVisitor;
+import org.jacoco.report.ISourceFileLocator;
+import org.jacoco.report.csv.CSVFormatter;
+import org.jacoco.report.html.HTMLFormatter;
+import org.jacoco.report.xml.XMLFormatter;
+
+/**
+ * Base class for creating a code coverage report of one or more projects in multiple formats (HTML, XML, and CSV).
+ */
+public abstract class AbstractReportMojo extends AbstractAnalysisMojo implements MavenReport {
+
+    private static final String FORMAT_XML = "XML";
+    private static final String FORMAT_CSV = "CSV";
+    private static final String FORMAT_HTML = "HTML";
+    private static final String FORMAT_SNAPSHOT = "SNAPSHOT";
+
+    /**
+     * Encoding of the generated reports.
+     * 
+     * @parameter expression="${project.reporting.outputEncoding}" default-value="UTF-8"
+     */
+    private String outputEncoding;
+
+    /**
+     * A list of the report formats to write: XML, CSV, HTML and SNAPSHOT, a compact binary jacoco.snapshot that
+     * CoverageSnapshot reads. When more than one format is chosen, the formatters run concurrently, each on a thread of
+     * its own. When not specified XML, CSV and HTML are written. The site only links to the HTML report.
+     * 
+     * @parameter expression="${jacoco.formats}"
+     */
+    private List<String> formats;
+
+    /**
+     * Flag used to write only the files of the HTML report whose content changed. The hash of every file is kept in
+     * jacoco-html.index in the output directory; files with the same hash are not written again, and the pages of
+     * packages, classes and sources that are no longer reported are deleted.
+     * 
+     * @parameter expression="${jacoco.incrementalHtml}" default-value="false"
+     */
+    private boolean incrementalHtml;
+
+    /**
+     * Encoding of the source files.
+     * 
+     * @parameter expression="${project.build.sourceEncoding}" default-value="UTF-8"
+     */
+    private String sourceEncoding;
+
+    /**
+     * Flag used to skip the report when none of its inputs changed since it was last written. The execution data, class
+     * and source files and the configuration are fingerprinted into a file next to the output directory.
+     * 
+     * @parameter expression="${jacoco.upToDateCheck}" default-value="true"
+     */
+    private boolean upToDateCheck;
+
+    /**
+     * Named execution data files that a report of its own is written for, each into a directory of the same name below
+     * the output directory, e.g. the execution data of the unit and of the integration tests. The class files are read,
+     * parsed and filtered once and the probes of every data set are applied to the same structure. When not specified,
+     * one report is written for all execution data files.
+     * 
+     * <pre>
+     * &lt;dataSet&gt;
+     *   &lt;name&gt;it&lt;/name&gt;
+     *   &lt;dataFile&gt;${project.build.directory}/jacoco-it.exec&lt;/dataFile&gt;
+     * &lt;/dataSet&gt;
+     * </pre>
+     * 
+     * @parameter
+     */
+    private List<DataSet> dataSets;
+
+    /**
+     * Flag used to write a report per session of the execution data, each into a directory named after the session id
+     * below the output directory (or below the directory of its data set). The class files are analyzed once for all
+     * sessions.
+     * 
+     * @parameter expression="${jacoco.reportPerSession}" default-value="false"
+     */
+    private boolean reportPerSession;
+
+    /**
+     * Flag used to analyze and write the report one package at a time, for projects whose coverage does not fit into
+     * the heap at once. Each package is written as a bundle of its own below a group of the project, and its coverage
+     * is released once it is written, so the memory needed depends on the largest package rather than on the whole
+     * project. This changes the shape of the report: in the XML and CSV formats every package is a bundle named after
+     * it instead of a package of the project bundle. The analysis cache is not used in this mode, since it would keep
+     * the structure of every class until the whole project is analyzed, and the source files are read as their pages
+     * are written without being kept. Cannot be combined with the SNAPSHOT format or a baseline, which need the coverage
+     * of all packages.
+     * 
+     * @parameter expression="${jacoco.streamPackages}" default-value="false"
+     */
+    private boolean streamPackages;
+
+    private List<ExecutionDataSet> executionDataSets;
+
+    /**
+     * The structures are not cached while the packages are streamed, see {@link #streamPackages}.
+     */
+    @Override
+    protected boolean isAnalysisCacheUsed() {
+        return !streamPackages;
+    }
+
+    @Override
+    public boolean isExternalReport() {
+        return true;
+    }
+
+    @Override
+    public String getCategoryName() {
+        return CATEGORY_PROJECT_REPORTS;
+    }
+
+    @Override
+    public File getReportOutputDirectory() {
+        return new File(getOutputDirectory());
+    }
+
+    /**
+     * The report is external, so the site only runs it and nothing is written to the sink.
+     */
+    @Override
+    public void generate(@SuppressWarnings("deprecation") final org.codehaus.doxia.sink.Sink sink,
+            final Locale locale) throws MavenReportException {
+        if (canGenerateReport()) {
+            executeReport(locale);
+        }
+    }
+
+    /**
+     * @return the absolute path of the directory that the report is written to
+     */
+    protected abstract String getOutputDirectory();
+
+    /**
+     * Writes the bundles of the report projects to the report.
+     * 
+     * @param visitor
+     *            the root visitor of the report
+     * @param reportProjects
+     *            the report projects
+     * @param bundles
+     *            the bundle of each report project
+     * @throws IOException
+     *             if the report can't be written
+     */
+    protected abstract void createReport(IReportGroupVisitor visitor, List<MavenProject> reportProjects,
+            List<IBundleCoverage> bundles) throws IOException;
+
+    @Override
+    public boolean canGenerateReport() {
+        return canAnalyze();
+    }
+
+    /**
+     * This method is called when the report generation is invoked directly as a standalone Mojo.
+     */
+    @Override
+    public void execute() throws MojoExecutionException {
+        if (!canGenerateReport()) {
+            return;
+        }
+        try {
+            executeReport(Locale.getDefault());
+        } catch (final MavenReportException e) {
+            throw new MojoExecutionException("An error has occurred in " + getName(Locale.ENGLISH) + " report generation.",
+                    e);
+        }
+    }
+
+    /**
+     * Analyzes the class files and writes the report.
+     * 
+     * @param locale
+     *            the locale of the HTML report
+     * @throws MavenReportException
+     *             if the report can't be written
+     */
+    protected void executeReport(final Locale locale) throws MavenReportException {
+        final File outputDirectory = new File(getOutputDirectory());
+        final ReportMetrics metrics = startMetrics();
+        metrics.startHeapTracking();
+        try {
+            final List<MavenProject> reportProjects = getReportProjects();
+            final List<BundleCreator> creators = createBundleCreators(reportProjects);
+            final Collection<String> reportFormats = getFormats();
+            final File fingerprintFile = new File(outputDirectory.getParentFile(), outputDirectory.getName()
+                    + ".fingerprint");
+            String fingerprint = null;
+            if (upToDateCheck) {
+                fingerprint = createFingerprint(reportProjects, creators, reportFormats, locale);
+                if (ReportFingerprint.matches(fingerprintFile, fingerprint) && reportExists(outputDirectory, reportFormats)) {
+                    getLog().info("Skipping JaCoCo report generation, the report is up to date");
+                    return;
+                }
+            }
+            fingerprintFile.delete();
+            if (streamPackages) {
+                createPackageReports(outputDirectory, locale, reportFormats, reportProjects, creators);
+            } else {
+                createReports(outputDirectory, locale, reportFormats, reportProjects, creators);
+            }
+            if (fingerprint != null) {
+                ReportFingerprint.save(fingerprintFile, fingerprint);
+            }
+            metrics.write(new File(outputDirectory, ReportMetrics.FILE_NAME));
+            getLog().info(metrics.summarize());
+        } catch (final IOException e) {
+            throw new MavenReportException("Error while creating report: " + e.getMessage(), e);
+        } finally {
+            metrics.stopHeapTracking();
+        }
+    }
+
+    private void createReports(final File outputDirectory, final Locale locale, final Collection<String> reportFormats,
+            final List<MavenProject> reportProjects, final List<BundleCreator> creators) throws IOException,
+            MavenReportException {
+        final List<List<IBundleCoverage>> setBundles = loadAndAnalyze(creators);
+        final long start = System.nanoTime();
+        for (int i = 0; i < executionDataSets.size(); i++) {
+            final ExecutionDataSet set = executionDataSets.get(i);
+            final List<IReportVisitor> visitors = new ArrayList<IReportVisitor>(1);
+            final List<Closeable> outputs = new ArrayList<Closeable>();
+            try {
+                final IReportVisitor visitor = createVisitor(set.getOutputDirectory(outputDirectory), locale,
+                        reportFormats, outputs);
+                visitors.add(visitor);
+                visitor.visitInfo(set.sessionInfos, set.executionData.getContents());
+                createReport(visitor, reportProjects, setBundles.get(i));
+                visitor.visitEnd();
+            } catch (final IOException | RuntimeException | Error e) {
+                abortReports(visitors, outputs);
+                throw e;
+            }
+        }
+        getMetrics().addTime("report", System.nanoTime() - start);
+        if (getBaselineSnapshot() != null) {
+            for (int i = 0; i < executionDataSets.size(); i++) {
+                compareWithBaseline(executionDataSets.get(i).getOutputDirectory(outputDirectory), setBundles.get(i));
+            }
+        }
+    }
+
+    /**
+     * Writes the reports of all data sets while the projects are analyzed one package at a time. The visitors write a
+     * package while the next one is analyzed, so at most two packages are in memory. The projects are analyzed one after
+     * the other.
+     */
+    private void createPackageReports(final File outputDirectory, final Locale locale,
+            final Collection<String> reportFormats, final List<MavenProject> reportProjects,
+            final List<BundleCreator> creators) throws IOException, MavenReportException {
+        if (getBaseline() != null || reportFormats.contains(FORMAT_SNAPSHOT)) {
+            throw new MavenReportException("streamPackages can't be combined with the " + FORMAT_SNAPSHOT
+                    + " format or a baseline");
+        }
+        long start = System.nanoTime();
+        loadExecutionDataSets(creators);
+        getMetrics().addTime("loadExecutionData", System.nanoTime() - start);
+
+        start = System.nanoTime();
+        final List<ProbeStore> stores = new ArrayList<ProbeStore>(executionDataSets.size());
+        final List<IReportVisitor> visitors = new ArrayList<IReportVisitor>(executionDataSets.size());
+        final List<Closeable> outputs = new ArrayList<Closeable>();
+        try {
+            final List<IReportGroupVisitor> roots = new ArrayList<IReportGroupVisitor>(executionDataSets.size());
+            for (final ExecutionDataSet set : executionDataSets) {
+                final IReportVisitor visitor = createVisitor(set.getOutputDirectory(outputDirectory), locale,
+                        reportFormats, outputs);
+                visitors.add(visitor);
+                visitor.visitInfo(set.sessionInfos, set.executionData.getContents());
+                stores.add(set.executionData);
+                roots.add(visitor.visitGroup(getProject().getName()));
+            }
+            final long[] reportTime = new long[1];
+            for (int i = 0; i < creators.size(); i++) {
+                final MavenProject reportProject = reportProjects.get(i);
+                final List<IReportGroupVisitor> groups = new ArrayList<IReportGroupVisitor>(roots.size());
+                for (final IReportGroupVisitor root : roots) {
+                    groups.add(reportProjects.size() == 1 ? root : root.visitGroup(reportProject.getName()));
+                }
+                // the locator only keeps the paths of the source files; each source page reads its file through
+                final ISourceFileLocator locator = createSourceFileLocator(reportProject);
+                final CoverageNodeImpl total = new CoverageNodeImpl(ElementType.GROUP, reportProject.getName());
+                creators.get(i).analyzeByPackage(stores, new BundleCreator.PackageBundleVisitor() {
+                    @Override
+                    public void visitPackage(final List<IBundleCoverage> bundles) throws IOException {
+                        final long packageStart = System.nanoTime();
+                        for (final IReportVisitor visitor : visitors) {
+                            if (visitor instanceof ConcurrentReportVisitor) {
+                                ((ConcurrentReportVisitor) visitor).awaitPending();
+                            }
+                        }
+                        for (int j = 0; j < groups.size(); j++) {
+                            groups.get(j).visitBundle(bundles.get(j), locator);
+                        }
+                        total.increment(bundles.get(0));
+                        reportTime[0] += System.nanoTime() - packageStart;
+                    }
+                });
+                checkForMissingDebugInformation(total);
+            }
+            getMetrics().addTime("createBundle", System.nanoTime() - start - reportTime[0]);
+
+            start = System.nanoTime();
+            for (final IReportVisitor visitor : visitors) {
+                visitor.visitEnd();
+            }
+            getMetrics().addTime("report", System.nanoTime() - start + reportTime[0]);
+        } catch (final IOException | RuntimeException | Error e) {
+            abortReports(visitors, outputs);
+            throw e;
+        }
+    }
+
+    /**
+     * @return the bundles of each data set, with one bundle per project
+     */
+    private List<List<IBundleCoverage>> loadAndAnalyze(final List<BundleCreator> creators) throws IOException,
+            MavenReportException {
+        long start = System.nanoTime();
+        loadExecutionDataSets(creators);
+        getMetrics().addTime("loadExecutionData", System.nanoTime() - start);
+        start = System.nanoTime();
+        final List<List<IBundleCoverage>> bundles = createBundles(creators);
+        getMetrics().addTime("createBundle", System.nanoTime() - start);
+        return bundles;
+    }
+
+    private void compareWithBaseline(final File outputDirectory, final List<IBundleCoverage> bundles)
+            throws IOException {
+        final long start = System.nanoTime();
+        final CoverageDelta delta = new CoverageDelta(getBaselineSnapshot(), bundles);
+        delta.write(new File(outputDirectory, CoverageDelta.FILE_NAME), outputEncoding);
+        getMetrics().addTime("baselineComparison", System.nanoTime() - start);
+        getLog().info(delta.summarize());
+    }
+
+    private String createFingerprint(final List<MavenProject> reportProjects, final List<BundleCreator> creators,
+            final Collection<String> reportFormats, final Locale locale) throws IOException {
+        final ReportFingerprint fingerprint = new ReportFingerprint();
+        fingerprint.add("jacoco", JaCoCo.VERSION).addLocation(getClass());
+        fingerprint.add("name", getProject().getName()).add("formats", reportFormats).add("locale", locale);
+        fingerprint.add("outputEncoding", outputEncoding).add("sourceEncoding", sourceEncoding);
+        fingerprint.add("includes", getIncludes()).add("excludes", getExcludes()).add("filters", getFilters());
+        fingerprint.add("filterExecutionData", isFilterExecutionData()).add("reportPerSession", reportPerSession);
+        fingerprint.add("streamPackages", streamPackages);
+        if (dataSets != null) {
+            for (final DataSet dataSet : dataSets) {
+                fingerprint.add("dataSet", dataSet.getName());
+            }
+        }
+        if (getBaseline() != null) {
+            fingerprint.addFiles("baseline", Collections.singletonList(getBaseline()));
+        }
+        if (getFilters() != null) {
+            for (final String filter : getFilters()) {
+                if (!filter.startsWith(FILTER_SCALAC_PREFIX)) {
+                    try {
+                        fingerprint.addLocation(Class.forName(filter, false, getClass().getClassLoader()));
+                    } catch (final ClassNotFoundException e) {
+                        fingerprint.add(filter, null);
+                    }
+                }
+            }
+        }
+        fingerprint.addFiles("dataFiles", getAllDataFiles());
+        for (int i = 0; i < reportProjects.size(); i++) {
+            final MavenProject reportProject = reportProjects.get(i);
+            fingerprint.add("project", reportProject.getName());
+            fingerprint.addFiles("classFiles", creators.get(i).getClassFiles());
+            if (reportFormats.contains(FORMAT_HTML)) {
+                final List<File> sourceRoots = getCompileSourceRoots(reportProject);
+                fingerprint.add("sourceRoots", sourceRoots);
+                for (final File sourceRoot : sourceRoots) {
+                    if (sourceRoot.isDirectory()) {
+                        @SuppressWarnings("unchecked")
+                        final List<File> sourceFiles = FileUtils.getFiles(sourceRoot, "**", null);
+                        fingerprint.addFiles("sourceFiles", sourceFiles);
+                    }
+                }
+            }
+        }
+        return fingerprint.getValue();
+    }
+
+    /**
+     * The directories of the session reports are only known once the execution data is loaded, so their existence is
+     * judged by the metrics file that is written after all reports.
+     */
+    private boolean reportExists(final File outputDirectory, final Collection<String> reportFormats) {
+        if (reportPerSession) {
+            return new File(outputDirectory, ReportMetrics.FILE_NAME).isFile();
+        }
+        if (dataSets == null || dataSets.isEmpty()) {
+            return reportFilesExist(outputDirectory, reportFormats);
+        }
+        for (final DataSet dataSet : dataSets) {
+            if (!reportFilesExist(new File(outputDirectory, dataSet.getName()), reportFormats)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean reportFilesExist(final File outputDirectory, final Collection<String> reportFormats) {
+        return (!reportFormats.contains(FORMAT_XML) || new File(outputDirectory, "jacoco.xml").isFile())
+                && (!reportFormats.contains(FORMAT_CSV) || new File(outputDirectory, "jacoco.csv").isFile())
+                && (!reportFormats.contains(FORMAT_HTML) || new File(outputDirectory, "index.html").isFile())
+                && (!reportFormats.contains(FORMAT_SNAPSHOT) || new File(outputDirectory, CoverageSnapshot.FILE_NAME)
+                        .isFile()) && (getBaseline() == null || new File(outputDirectory, CoverageDelta.FILE_NAME).isFile());
+    }
+
+    /**
+     * Loads the execution data of every data set, or of all execution data files if no data set is configured. When a
+     * report is written per session, the data of each set is split by session id.
+     */
+    private void loadExecutionDataSets(final List<BundleCreator> creators) throws IOException, MavenReportException {
+        final Set<Long> classIds = getExecutionDataClassIds(creators);
+        final Map<String, List<File>> dataFilesBySet = new LinkedHashMap<String, List<File>>();
+        if (dataSets == null || dataSets.isEmpty()) {
+            dataFilesBySet.put(null, getAllDataFiles());
+        } else {
+            for (final DataSet dataSet : dataSets) {
+                if (dataSet.getDataFile().isFile()) {
+                    dataFilesBySet.put(dataSet.getName(), Collections.singletonList(dataSet.getDataFile()));
+                } else {
+                    getLog().info("Missing execution data file " + dataSet.getDataFile() + " of data set "
+                            + dataSet.getName());
+                    dataFilesBySet.put(dataSet.getName(), Collections.<File> emptyList());
+                }
+            }
+        }
+        final boolean splitBySession = reportPerSession;
+        executionDataSets = new ArrayList<ExecutionDataSet>();
+        for (final Map.Entry<String, List<File>> setDataFiles : dataFilesBySet.entrySet()) {
+            final MergingExecFileLoader loader;
+            try {
+                loader = loadExecutionData(setDataFiles.getValue(), classIds, splitBySession);
+            } catch (final IOException e) {
+                throw new MavenReportException(e.getMessage(), e);
+            }
+            final String setName = setDataFiles.getKey();
+            if (!splitBySession) {
+                executionDataSets.add(new ExecutionDataSet(setName, loader.getSessionInfoStore().getInfos(), loader
+                        .getProbeStore()));
+                continue;
+            }
+            for (final Map.Entry<String, ProbeStore> session : loader.getSessionProbeStores().entrySet()) {
+                final List<SessionInfo> sessionInfos = new ArrayList<SessionInfo>();
+                for (final SessionInfo info : loader.getSessionInfoStore().getInfos()) {
+                    if (info.getId().equals(session.getKey())) {
+                        sessionInfos.add(info);
+                    }
+                }
+                final String sessionName = getSessionDirectoryName(session.getKey());
+                executionDataSets.add(new ExecutionDataSet(setName == null ? sessionName : setName + File.separator
+                        + sessionName, sessionInfos, session.getValue()));
+            }
+        }
+    }
+
+    private static String getSessionDirectoryName(final String sessionId) {
+        if (sessionId.length() == 0) {
+            return "default";
+        }
+        return sessionId.replaceAll("[^A-Za-z0-9._-]", "_");
+    }
+
+    /**
+     * @return the execution data files of all data sets, or the execution data files of the report if no data set is
+     *         configured
+     */
+    @Override
+    protected List<File> getAllDataFiles() {
+        if (dataSets == null || dataSets.isEmpty()) {
+            return getDataFiles();
+        }
+        final List<File> dataFiles = new ArrayList<File>();
+        for (final DataSet dataSet : dataSets) {
+            if (dataSet.getDataFile().isFile()) {
+                dataFiles.add(dataSet.getDataFile().getAbsoluteFile());
+            }
+        }
+        return dataFiles;
+    }
+
+    /**
+     * @return the bundles of each data set, with one bundle per project
+     */
+    private List<List<IBundleCoverage>> createBundles(final List<BundleCreator> creators) throws IOException {
+        final List<ProbeStore> stores = new ArrayList<ProbeStore>(executionDataSets.size());
+        for (final ExecutionDataSet set : executionDataSets) {
+            stores.add(set.executionData);
+        }
+        final List<List<IBundleCoverage>> projectBundles = createProjectBundles(creators, stores);
+        final List<List<IBundleCoverage>> setBundles = new ArrayList<List<IBundleCoverage>>(stores.size());
+        for (int i = 0; i < stores.size(); i++) {
+            final List<IBundleCoverage> bundles = new ArrayList<IBundleCoverage>(creators.size());
+            for (final List<IBundleCoverage> bundlesOfProject : projectBundles) {
+                bundles.add(bundlesOfProject.get(i));
+            }
+            setBundles.add(bundles);
+        }
+        return setBundles;
+    }
+
+    /**
+     * Creates a locator for the sources of a report project.
+     * 
+     * @param reportProject
+     *            one of the report projects
+     * @return the source file locator
+     */
+    protected ISourceFileLocator createSourceFileLocator(final MavenProject reportProject) {
+        return new SourceFileCollection(getCompileSourceRoots(reportProject), sourceEncoding);
+    }
+
+    private Collection<String> getFormats() throws MavenReportException {
+        final Collection<String> reportFormats = new LinkedHashSet<String>();
+        if (formats == null || formats.isEmpty()) {
+            reportFormats.add(FORMAT_XML);
+            reportFormats.add(FORMAT_CSV);
+            reportFormats.add(FORMAT_HTML);
+            return reportFormats;
+        }
+        for (final String format : formats) {
+            final String reportFormat = format.trim().toUpperCase(Locale.ENGLISH);
+            if (!FORMAT_XML.equals(reportFormat) && !FORMAT_CSV.equals(reportFormat)
+                    && !FORMAT_HTML.equals(reportFormat) && !FORMAT_SNAPSHOT.equals(reportFormat)) {
+                throw new MavenReportException("Unknown report format " + format + ", expected one of " + FORMAT_XML
+                        + ", " + FORMAT_CSV + ", " + FORMAT_HTML + " or " + FORMAT_SNAPSHOT);
+            }
+            reportFormats.add(reportFormat);
+        }
+        return reportFormats;
+    }
+
+    /**
+     * Creates the visitor that writes the reports of one data set.
+     * 
+     * @param outputs
+     *            the list that the files and outputs opened for the reports are added to, so that they can be closed by
+     *            {@link #abortReports(List, List)} if the reports are not completed
+     */
+    private IReportVisitor createVisitor(final File outputDirectory, final Locale locale,
+            final Collection<String> reportFormats, final List<Closeable> outputs) throws IOException {
+        final List<IReportVisitor> visitors = new ArrayList<IReportVisitor>();
+
+        outputDirectory.mkdirs();
+
+        if (reportFormats.contains(FORMAT_XML)) {
+            final XMLFormatter xmlFormatter = new XMLFormatter();
+            xmlFormatter.setOutputEncoding(outputEncoding);
+            visitors.add(new TimedReportVisitor(xmlFormatter.createVisitor(createOutputStream(outputDirectory,
+                    "jacoco.xml", outputs)), getMetrics(), "report.xml"));
+        }
+
+        if (reportFormats.contains(FORMAT_CSV)) {
+            final CSVFormatter csvFormatter = new CSVFormatter();
+            csvFormatter.setOutputEncoding(outputEncoding);
+            visitors.add(new TimedReportVisitor(csvFormatter.createVisitor(createOutputStream(outputDirectory,
+                    "jacoco.csv", outputs)), getMetrics(), "report.csv"));
+        }
+
+        if (reportFormats.contains(FORMAT_HTML)) {
+            final HTMLFormatter htmlFormatter = new HTMLFormatter();
+            htmlFormatter.setOutputEncoding(outputEncoding);
+            htmlFormatter.setLocale(locale);
+            final IMultiReportOutput output;
+            if (incrementalHtml) {
+                // holds the pages in memory until they are complete, and must not be closed unless the report is
+                output = new IncrementalMultiReportOutput(outputDirectory, getMetrics());
+            } else {
+                final BufferedMultiReportOutput bufferedOutput = new BufferedMultiReportOutput(
+                        new FileMultiReportOutput(outputDirectory));
+                outputs.add(bufferedOutput);
+                output = bufferedOutput;
+            }
+            visitors.add(new TimedReportVisitor(htmlFormatter.createVisitor(output), getMetrics(), "report.html"));
+        }
+
+        if (reportFormats.contains(FORMAT_SNAPSHOT)) {
+            visitors.add(new TimedReportVisitor(new SnapshotFormatter().createVisitor(createOutputStream(
+                    outputDirectory, CoverageSnapshot.FILE_NAME, outputs)), getMetrics(), "report.snapshot"));
+        }
+
+        if (visitors.size() == 1) {
+            return visitors.get(0);
+        }
+        return new ConcurrentReportVisitor(visitors);
+    }
+
+    private OutputStream createOutputStream(final File outputDirectory, final String fileName,
+            final List<Closeable> outputs) throws IOException {
+        final OutputStream output = new BufferedOutputStream(new FileOutputStream(new File(outputDirectory, fileName)));
+        outputs.add(output);
+        return output;
+    }
+
+    /**
+     * Stops the report threads and closes the files of reports that are not completed, so that a failed report does not
+     * leak them into the Maven JVM, e.g. while the watch goal keeps running. The reports are left incomplete.
+     * 
+     * @param visitors
+     *            the visitors of the reports
+     * @param outputs
+     *            the files and outputs opened for the reports
+     */
+    private void abortReports(final List<IReportVisitor> visitors, final List<Closeable> outputs) {
+        for (final IReportVisitor visitor : visitors) {
+            if (visitor instanceof ConcurrentReportVisitor) {
+                ((ConcurrentReportVisitor) visitor).abort();
+            }
+        }
+        for (final Closeable output : outputs) {
+            try {
+                output.close();
+            } catch (final IOException e) {
+                getLog().debug("Could not close the output of an incomplete report", e);
+            }
+        }
+    }
+
+    /**
+     * @param reportProject
+     *            one of the report projects
+     * @return the absolute compile source roots of the project
+     */
+    protected static List<File> getCompileSourceRoots(final MavenProject reportProject) {
+        final List<File> result = new ArrayList<File>();
+        for (final Object path : reportProject.getCompileSourceRoots()) {
+            result.add(resolvePath(reportProject, (String) path));
+        }
+        return result;
+    }
+
+    /**
+     * The execution data that one report is written for.
+     */
+    private static final class ExecutionDataSet {
+        private final String name;
+        private final List<SessionInfo> sessionInfos;
+        private final ProbeStore executionData;
+
+        /**
+         * @param name
+         *            the path of the report below the output directory, or <code>null</code> for the output directory
+         * @param sessionInfos
+         *            the sessions that the execution data was recorded in
+         * @param executionData
+         *            the execution data
+         */
+        ExecutionDataSet(final String name, final List<SessionInfo> sessionInfos, final ProbeStore executionData) {
+            this.name = name;
+            this.sessionInfos = sessionInfos;
+            this.executionData = executionData;
+        }
+
+        File getOutputDirectory(final File outputDirectory) {
+            return name == null ? outputDirectory : new File(outputDirectory, name);
+        }
+    }
+
+}
@@ -0,0 +1,267 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2013 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Evgeny Mandrikov - initial API and implementation
+ *    Kyle Lieber - implementation of CheckMojo
+ * 
+ *******************************************************************************/
+package timezra.maven.jacoco.scala;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.jacoco.core.JaCoCo;
+import org.jacoco.core.internal.data.CRC64;
+
+/**
+ * An on-disk cache of ClassStructures keyed by the CRC64 class id. One cache file is kept per filter configuration, so
+ * a cached structure is only reused for the filters it was created with. The file is also discarded when the plugin
+ * or the jar of a custom filter changed since it was written. Only the entries used by the last analysis are written
+ * back, so the cache does not grow with classes that have been deleted or recompiled, unless the analysis only looked
+ * at the classes that changed since a baseline.
+ */
+final class AnalysisCache {
+
+    private static final int FORMAT_VERSION = 2;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final File cacheFile;
+    private final String filterKey;
+    private final String implementationKey;
+    private Map<Long, ClassStructure> loaded = Collections.emptyMap();
+    private final Map<Long, ClassStructure> used = new ConcurrentHashMap<Long, ClassStructure>();
+    private boolean persistent = true;
+    private boolean pruned = true;
+    private Map<Long, ClassStructure> retained;
+    private SessionCache sessionCache;
+
+    /**
+     * @param cacheDirectory
+     *            the directory that holds the cache files
+     * @param filterKey
+     *            a description of the active filters
+     * @param implementationKey
+     *            a description of the code that analyzes and filters the classes, e.g. the version of the plugin and
+     *            the jars of the custom filters
+     */
+    AnalysisCache(final File cacheDirectory, final String filterKey, final String implementationKey) {
+        this.filterKey = filterKey;
+        this.implementationKey = implementationKey;
+        this.cacheFile = new File(cacheDirectory, "classes-" + Long.toHexString(CRC64.checksum(filterKey.getBytes(UTF_8)))
+                + ".cache");
+    }
+
+    /**
+     * @param persistent
+     *            whether the structures are read from and written to the cache file
+     */
+    void setPersistent(final boolean persistent) {
+        this.persistent = persistent;
+    }
+
+    /**
+     * @param pruned
+     *            whether a save drops the structures that were not used since the last load; an analysis of the classes
+     *            that changed since a baseline does not look up the others, so their structures have to be kept
+     */
+    void setPruned(final boolean pruned) {
+        this.pruned = pruned;
+    }
+
+    /**
+     * Keeps the structures used by each analysis in memory, so that the next load reuses them instead of reading the
+     * cache file again.
+     */
+    void retain() {
+        if (retained == null) {
+            retained = Collections.emptyMap();
+        }
+    }
+
+    /**
+     * Shares the structures with the other executions of the plugin in the same Maven session: a load takes the
+     * structures saved by the last of them instead of reading the cache file.
+     * 
+     * @param sessionCache
+     *            the cache of the Maven session
+     */
+    void share(final SessionCache sessionCache) {
+        this.sessionCache = sessionCache;
+    }
+
+    /**
+     * Loads the structures stored by the previous analysis. A missing, outdated or unreadable cache file leaves the
+     * cache empty, so every class is analyzed again.
+     * 
+     * @param stringPool
+     *            the pool that the names of the loaded structures are interned in
+     */
+    void load(final SharedStringPool stringPool) {
+        used.clear();
+        loaded = Collections.emptyMap();
+        if (retained != null && !retained.isEmpty()) {
+            loaded = retained;
+            return;
+        }
+        if (sessionCache != null) {
+            try {
+                @SuppressWarnings("unchecked")
+                final Map<Long, ClassStructure> shared = (Map<Long, ClassStructure>) sessionCache
+                        .getIfPresent(getSessionKey());
+                if (shared != null) {
+                    loaded = shared;
+                    return;
+                }
+            } catch (final IOException e) {
+                // the structures are read from the cache file instead
+            }
+        }
+        if (!persistent || !cacheFile.isFile()) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)))) {
+            if (in.readInt() != FORMAT_VERSION || !JaCoCo.VERSION.equals(in.readUTF())
+                    || !filterKey.equals(in.readUTF()) || !implementationKey.equals(in.readUTF())) {
+                return;
+            }
+            final int count = in.readInt();
+            final Map<Long, ClassStructure> structures = new HashMap<Long, ClassStructure>(count * 4 / 3 + 1);
+            for (int i = 0; i < count; i++) {
+                final ClassStructure structure = ClassStructure.read(in, stringPool);
+                structures.put(Long.valueOf(structure.getId()), structure);
+            }
+            loaded = structures;
+        } catch (final IOException e) {
+            loaded = Collections.emptyMap();
+        }
+    }
+
+    /**
+     * @param classid
+     *            the CRC64 id of the class
+     * @return the cached structure of the class, or <code>null</code> if it has to be analyzed
+     */
+    ClassStructure get(final long classid) {
+        final Long key = Long.valueOf(classid);
+        ClassStructure structure = used.get(key);
+        if (structure == null) {
+            structure = loaded.get(key);
+            if (structure != null) {
+                used.put(key, structure);
+            }
+        }
+        return structure;
+    }
+
+    void put(final ClassStructure structure) {
+        used.put(Long.valueOf(structure.getId()), structure);
+    }
+
+    /**
+     * Describes the code that a class is loaded from, so that a cache written by another build of it is not reused:
+     * the version of its package, if any, and the path, size and modification time of its jar or class file.
+     * 
+     * @param type
+     *            e.g. a custom filter
+     * @return a description of the origin of the class
+     */
+    static String getOrigin(final Class<?> type) {
+        final StringBuilder origin = new StringBuilder(type.getName());
+        final Package typePackage = type.getPackage();
+        if (typePackage != null && typePackage.getImplementationVersion() != null) {
+            origin.append(' ').append(typePackage.getImplementationVersion());
+        }
+        final URL resource = type.getResource(type.getSimpleName() + ".class");
+        if (resource != null) {
+            try {
+                URL location = resource;
+                final URLConnection connection = resource.openConnection();
+                if (connection instanceof JarURLConnection) {
+                    location = ((JarURLConnection) connection).getJarFileURL();
+                }
+                final File file = new File(location.toURI());
+                origin.append(' ').append(file.getPath()).append(' ').append(file.length()).append(' ')
+                        .append(file.lastModified());
+            } catch (final IOException | URISyntaxException | IllegalArgumentException e) {
+                origin.append(' ').append(resource);
+            }
+        }
+        return origin.toString();
+    }
+
+    private String getSessionKey() {
+        return "structures:" + cacheFile.getAbsolutePath() + ":" + filterKey + ":" + implementationKey;
+    }
+
+    /**
+     * Replaces the cache file with the structures used since the last load, and with the loaded ones if the cache is not
+     * pruned.
+     * 
+     * @throws IOException
+     *             if the cache file can't be written
+     */
+    void save() throws IOException {
+        final Map<Long, ClassStructure> structures;
+        if (pruned) {
+            structures = used;
+        } else {
+            structures = new HashMap<Long, ClassStructure>(loaded);
+            structures.putAll(used);
+        }
+        if (retained != null && !used.isEmpty()) {
+            // an analysis without classes, e.g. during a clean build, keeps the structures of the one before
+            retained = new HashMap<Long, ClassStructure>(structures);
+        }
+        if (sessionCache != null) {
+            final Map<Long, ClassStructure> shared = new HashMap<Long, ClassStructure>(structures);
+            long estimatedSize = 0;
+            for (final ClassStructure structure : shared.values()) {
+                estimatedSize += 48 + structure.estimateSize();
+            }
+            sessionCache.put(getSessionKey(), shared, estimatedSize);
+        }
+        if (!persistent) {
+            return;
+        }
+        final File directory = cacheFile.getParentFile();
+        directory.mkdirs();
+        final File tempFile = File.createTempFile("classes", ".tmp", directory);
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+                out.writeInt(FORMAT_VERSION);
+                out.writeUTF(JaCoCo.VERSION);
+                out.writeUTF(filterKey);
+                out.writeUTF(implementationKey);
+                out.writeInt(structures.size());
+                for (final ClassStructure structure : structures.values()) {
+                    structure.write(out);
+                }
+            }
+            Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            tempFile.delete();
+        }
+    }
+}
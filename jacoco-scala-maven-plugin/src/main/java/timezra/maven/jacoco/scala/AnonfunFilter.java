@@ -0,0 +1,26 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2013 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Evgeny Mandrikov - initial API and implementation
+ *    Kyle Lieber - implementation of CheckMojo
+ * 
+ *******************************************************************************/
+package timezra.maven.jacoco.scala;
+
+/**
+ * SCALAC.ANONFUN: excludes the classes that scalac generates for anonymous functions (<code>Foo$$anonfun$bar$1</code>)
+ * and anonymous classes (<code>Foo$$anon$1</code>).
+ */
+final class AnonfunFilter implements ClassFilter {
+
+    @Override
+    public boolean excludes(final String name) {
+        final int simpleName = name.lastIndexOf('/') + 1;
+        return name.indexOf("$anonfun$", simpleName) >= 0 || name.indexOf("$$anon$", simpleName) >= 0;
+    }
+}
@@ -0,0 +1,73 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2013 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Evgeny Mandrikov - initial API and implementation
+ *    Kyle Lieber - implementation of CheckMojo
+ * 
+ *******************************************************************************/
+package timezra.maven.jacoco.scala;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.jacoco.report.IMultiReportOutput;
+
+/**
+ * Buffers every file that is written to an IMultiReportOutput, so the HTML formatter does not write each page to disk
+ * in small pieces. The files that are still open when the output is closed, which only happens if the report failed,
+ * are closed with it.
+ */
+final class BufferedMultiReportOutput implements IMultiReportOutput, Closeable {
+
+    private final IMultiReportOutput output;
+    private final Set<OutputStream> openFiles = Collections.synchronizedSet(new LinkedHashSet<OutputStream>());
+
+    BufferedMultiReportOutput(final IMultiReportOutput output) {
+        this.output = output;
+    }
+
+    @Override
+    public OutputStream createFile(final String path) throws IOException {
+        final OutputStream file = new BufferedOutputStream(output.createFile(path)) {
+            @Override
+            public void close() throws IOException {
+                openFiles.remove(this);
+                super.close();
+            }
+        };
+        openFiles.add(file);
+        return file;
+    }
+
+    @Override
+    public void close() throws IOException {
+        final List<OutputStream> files;
+        synchronized (openFiles) {
+            files = new ArrayList<OutputStream>(openFiles);
+        }
+        IOException failure = null;
+        for (final OutputStream file : files) {
+            try {
+                file.close();
+            } catch (final IOException e) {
+                failure = e;
+            }
+        }
+        output.close();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
@@ -12,17 +12,27 @@
  *******************************************************************************/
 package timezra.maven.jacoco.scala;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.maven.project.MavenProject;
-import org.codehaus.plexus.util.FileUtils;
 import org.jacoco.core.analysis.Analyzer;
 import org.jacoco.core.analysis.CoverageBuilder;
 import org.jacoco.core.analysis.IBundleCoverage;
+import org.jacoco.core.analysis.IClassCoverage;
 import org.jacoco.core.analysis.ICoverageVisitor;
 import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.internal.data.CRC64;
 import org.jacoco.maven.FileFilter;
 
 /**
@@ -30,8 +40,18 @@ import org.jacoco.maven.FileFilter;
  */
 public class BundleCreator {
 
+    /**
+     * The name that the reports give to the package of classes without a package.
+     */
+    private static final String DEFAULT_PACKAGE_NAME = "default";
+
     private final MavenProject project;
+    private final List<File> classLocations;
     private final FileFilter fileFilter;
+    private final int threadCount;
+    private ReportMetrics metrics = new ReportMetrics();
+    private Set<Long> unchangedClassIds = Collections.emptySet();
+    private ClassFilter classFilter;
 
     /**
      * Construct a new BundleCreator given the MavenProject and FileFilter.
@@ -42,8 +62,71 @@ public class BundleCreator {
      *            the FileFilter
      */
     public BundleCreator(final MavenProject project, final FileFilter fileFilter) {
+        this(project, fileFilter, 1);
+    }
+
+    /**
+     * Construct a new BundleCreator given the MavenProject, FileFilter and the number of threads used for analysis.
+     * 
+     * @param project
+     *            the MavenProject
+     * @param fileFilter
+     *            the FileFilter
+     * @param threadCount
+     *            the number of workers that analyze class files concurrently
+     */
+    public BundleCreator(final MavenProject project, final FileFilter fileFilter, final int threadCount) {
+        this(project, null, fileFilter, threadCount);
+    }
+
+    /**
+     * Construct a new BundleCreator given the MavenProject, the locations of its classes, FileFilter and the number of
+     * threads used for analysis.
+     * 
+     * @param project
+     *            the MavenProject
+     * @param classLocations
+     *            directories, jars and zips with the class files, or <code>null</code> for the output directory of the
+     *            project
+     * @param fileFilter
+     *            the FileFilter, applied to the class files within each location
+     * @param threadCount
+     *            the number of workers that analyze class files concurrently
+     */
+    public BundleCreator(final MavenProject project, final List<File> classLocations, final FileFilter fileFilter,
+            final int threadCount) {
         this.project = project;
+        this.classLocations = classLocations;
         this.fileFilter = fileFilter;
+        this.threadCount = threadCount;
+    }
+
+    /**
+     * @param metrics
+     *            the metrics that the analysis is recorded in
+     */
+    void setMetrics(final ReportMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    ReportMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @param unchangedClassIds
+     *            the CRC64 ids of the classes to leave out, e.g. because they are unchanged since a baseline
+     */
+    void setUnchangedClassIds(final Set<Long> unchangedClassIds) {
+        this.unchangedClassIds = unchangedClassIds;
+    }
+
+    /**
+     * @param classFilter
+     *            excludes classes by name before their class files are read, may be <code>null</code>
+     */
+    void setClassFilter(final ClassFilter classFilter) {
+        this.classFilter = classFilter;
     }
 
     /**
@@ -55,7 +138,26 @@ public class BundleCreator {
      * @return an Analyzer
      */
     protected Analyzer createAnalyzer(final ExecutionDataStore executionDataStore, final ICoverageVisitor coverageVisitor) {
-        return new Analyzer(executionDataStore, coverageVisitor);
+        return new MeteredAnalyzer(executionDataStore, coverageVisitor, metrics);
+    }
+
+    /**
+     * Factory method for the Analyzers that apply several ProbeStores to the same class files. By default each store is
+     * unpacked for an Analyzer of its own, so every class is analyzed once per store.
+     * 
+     * @param probeStores
+     *            the execution data
+     * @param coverageVisitors
+     *            the visitor of the class coverages of each store
+     * @return the Analyzers that every class file is passed to
+     */
+    List<Analyzer> createAnalyzers(final List<ProbeStore> probeStores,
+            final List<? extends ICoverageVisitor> coverageVisitors) {
+        final List<Analyzer> analyzers = new ArrayList<Analyzer>(probeStores.size());
+        for (int i = 0; i < probeStores.size(); i++) {
+            analyzers.add(createAnalyzer(probeStores.get(i).toExecutionDataStore(), coverageVisitors.get(i)));
+        }
+        return analyzers;
     }
 
     /**
@@ -68,17 +170,261 @@ public class BundleCreator {
      *             if class files can't be read
      */
     public IBundleCoverage createBundle(final ExecutionDataStore executionDataStore) throws IOException {
-        final CoverageBuilder builder = new CoverageBuilder();
-        final Analyzer analyzer = createAnalyzer(executionDataStore, builder);
-        final File classesDir = new File(project.getBuild().getOutputDirectory());
+        return createBundles(Collections.singletonList(executionDataStore)).get(0);
+    }
 
-        @SuppressWarnings("unchecked")
-        final List<File> filesToAnalyze = FileUtils.getFiles(classesDir, fileFilter.getIncludes(), fileFilter.getExcludes());
+    /**
+     * Create an IBundleCoverage for each of the given ExecutionDataStores in a single pass over the class files.
+     * 
+     * @param executionDataStores
+     *            the execution data, e.g. of unit and integration tests
+     * @return the coverage data, in the order of the stores
+     * @throws IOException
+     *             if class files can't be read
+     */
+    public List<IBundleCoverage> createBundles(final List<ExecutionDataStore> executionDataStores) throws IOException {
+        return analyze(pack(executionDataStores));
+    }
 
-        for (final File file : filesToAnalyze) {
-            analyzer.analyzeAll(file);
+    /**
+     * Create an IBundleCoverage for each of the given ProbeStores in a single pass over the class files.
+     * 
+     * @param probeStores
+     *            the execution data, e.g. of unit and integration tests
+     * @return the coverage data, in the order of the stores
+     * @throws IOException
+     *             if class files can't be read
+     */
+    List<IBundleCoverage> analyze(final List<ProbeStore> probeStores) throws IOException {
+        try (ClassSource classSource = new ClassSource(getClassLocations(), fileFilter, classFilter)) {
+            final List<Path> classesToAnalyze = classSource.getClasses();
+            metrics.add("classesExcluded", classSource.getExcludedCount());
+            return createBundles(probeStores, classesToAnalyze, project.getName());
         }
+    }
 
-        return builder.getBundle(project.getName());
+    /**
+     * Create an IBundleCoverage for each of the given ExecutionDataStores one package at a time, so that only the
+     * coverage of a single package has to be kept in memory. Each bundle holds one package and is named after it.
+     * 
+     * @param executionDataStores
+     *            the execution data, e.g. of unit and integration tests
+     * @param visitor
+     *            receives the bundles of each package, in the order of the package names
+     * @throws IOException
+     *             if class files can't be read or the visitor fails
+     */
+    public void createPackageBundles(final List<ExecutionDataStore> executionDataStores,
+            final PackageBundleVisitor visitor) throws IOException {
+        analyzeByPackage(pack(executionDataStores), visitor);
+    }
+
+    /**
+     * Create an IBundleCoverage for each of the given ProbeStores one package at a time.
+     * 
+     * @param probeStores
+     *            the execution data, e.g. of unit and integration tests
+     * @param visitor
+     *            receives the bundles of each package, in the order of the package names
+     * @throws IOException
+     *             if class files can't be read or the visitor fails
+     * @see #createPackageBundles(List, PackageBundleVisitor)
+     */
+    void analyzeByPackage(final List<ProbeStore> probeStores, final PackageBundleVisitor visitor)
+            throws IOException {
+        try (ClassSource classSource = new ClassSource(getClassLocations(), fileFilter, classFilter)) {
+            final Map<String, List<Path>> packages = classSource.getClassesByPackage();
+            metrics.add("classesExcluded", classSource.getExcludedCount());
+            for (final Map.Entry<String, List<Path>> packageClasses : packages.entrySet()) {
+                final String packageName = packageClasses.getKey();
+                final List<IBundleCoverage> bundles = createBundles(probeStores, packageClasses.getValue(),
+                        packageName.length() == 0 ? DEFAULT_PACKAGE_NAME : packageName.replace('/', '.'));
+                if (bundles.get(0).getClassCounter().getTotalCount() > 0) {
+                    visitor.visitPackage(bundles);
+                }
+            }
+        }
+    }
+
+    private static List<ProbeStore> pack(final List<ExecutionDataStore> executionDataStores) {
+        final List<ProbeStore> probeStores = new ArrayList<ProbeStore>(executionDataStores.size());
+        for (final ExecutionDataStore executionDataStore : executionDataStores) {
+            probeStores.add(ProbeStore.of(executionDataStore));
+        }
+        return probeStores;
+    }
+
+    private List<IBundleCoverage> createBundles(final List<ProbeStore> probeStores, final List<Path> classesToAnalyze,
+            final String bundleName) throws IOException {
+        final List<CoverageBuilder> builders = new ArrayList<CoverageBuilder>(probeStores.size());
+        for (int i = 0; i < probeStores.size(); i++) {
+            builders.add(new CoverageBuilder());
+        }
+        if (threadCount > 1 && classesToAnalyze.size() > 1) {
+            analyzeConcurrently(probeStores, classesToAnalyze, builders);
+        } else {
+            final List<Analyzer> analyzers = createAnalyzers(probeStores, builders);
+            for (final Path path : classesToAnalyze) {
+                analyze(analyzers, path);
+            }
+        }
+
+        final List<IBundleCoverage> bundles = new ArrayList<IBundleCoverage>(builders.size());
+        for (final CoverageBuilder builder : builders) {
+            bundles.add(builder.getBundle(bundleName));
+        }
+        return bundles;
+    }
+
+    /**
+     * Returns the files that the classes of the project are read from: the class files of directories that pass the
+     * FileFilter and the jars and zips.
+     * 
+     * @return the files with the classes to analyze
+     * @throws IOException
+     *             if a directory can't be scanned
+     */
+    public List<File> getClassFiles() throws IOException {
+        try (ClassSource classSource = new ClassSource(getClassLocations(), fileFilter, classFilter)) {
+            return classSource.getFiles();
+        }
+    }
+
+    /**
+     * Returns the ids of the classes to analyze, so that only their execution data has to be loaded.
+     * 
+     * @return the CRC64 ids of the classes, or <code>null</code> if a location holds a nested archive with more classes
+     * @throws IOException
+     *             if a class can't be read
+     */
+    Set<Long> getClassIds() throws IOException {
+        final Set<Long> classIds = new HashSet<Long>();
+        try (ClassSource classSource = new ClassSource(getClassLocations(), fileFilter, classFilter)) {
+            for (final Path path : classSource.getClasses()) {
+                final byte[] bytes = ClassSource.read(path);
+                if (ClassSource.isClass(bytes)) {
+                    final Long classId = Long.valueOf(CRC64.checksum(bytes));
+                    if (!unchangedClassIds.contains(classId)) {
+                        classIds.add(classId);
+                    }
+                } else if (ClassSource.isArchive(bytes)) {
+                    return null;
+                }
+            }
+        }
+        return classIds;
+    }
+
+    private List<File> getClassLocations() {
+        if (classLocations == null) {
+            return Collections.singletonList(new File(project.getBuild().getOutputDirectory()));
+        }
+        return classLocations;
+    }
+
+    /**
+     * Reads a class file or archive entry through NIO once and passes it to every Analyzer unless it is one of the
+     * unchanged classes; content that is not a class, such as a nested archive, is left to the content detection of the
+     * Analyzers.
+     */
+    private void analyze(final List<Analyzer> analyzers, final Path path) throws IOException {
+        final long start = System.nanoTime();
+        final byte[] bytes = ClassSource.read(path);
+        metrics.addTime("createBundle.classIO", System.nanoTime() - start);
+        final String location = ClassSource.describe(path);
+        if (ClassSource.isClass(bytes)) {
+            if (!unchangedClassIds.isEmpty() && unchangedClassIds.contains(Long.valueOf(CRC64.checksum(bytes)))) {
+                metrics.add("classesUnchanged", 1);
+                return;
+            }
+            for (final Analyzer analyzer : analyzers) {
+                analyzer.analyzeClass(bytes, location);
+            }
+        } else {
+            for (final Analyzer analyzer : analyzers) {
+                analyzer.analyzeAll(new ByteArrayInputStream(bytes), location);
+            }
+        }
+    }
+
+    /**
+     * Splits the files across workers that each own their Analyzers, then replays the collected class coverages into
+     * the builders in file order so that the bundles are the same as the ones built sequentially.
+     */
+    private void analyzeConcurrently(final List<ProbeStore> probeStores,
+            final List<Path> classesToAnalyze, final List<? extends ICoverageVisitor> builders) throws IOException {
+        final List<List<List<IClassCoverage>>> coverages = new ArrayList<List<List<IClassCoverage>>>(
+                classesToAnalyze.size());
+        for (int i = 0; i < classesToAnalyze.size(); i++) {
+            coverages.add(null);
+        }
+        final AtomicInteger nextFile = new AtomicInteger();
+
+        final int workerCount = Math.min(threadCount, classesToAnalyze.size());
+        final List<Callable<Void>> workers = new ArrayList<Callable<Void>>(workerCount);
+        for (int i = 0; i < workerCount; i++) {
+            workers.add(new Callable<Void>() {
+                @Override
+                public Void call() throws IOException {
+                    final List<ClassCoverageCollector> collectors = new ArrayList<ClassCoverageCollector>();
+                    for (int i = 0; i < probeStores.size(); i++) {
+                        collectors.add(new ClassCoverageCollector());
+                    }
+                    final List<Analyzer> analyzers = createAnalyzers(probeStores, collectors);
+                    int index;
+                    while ((index = nextFile.getAndIncrement()) < classesToAnalyze.size()
+                            && !Thread.currentThread().isInterrupted()) {
+                        final List<List<IClassCoverage>> collected = new ArrayList<List<IClassCoverage>>();
+                        for (final ClassCoverageCollector collector : collectors) {
+                            final List<IClassCoverage> storeCollected = new ArrayList<IClassCoverage>();
+                            collector.collectInto(storeCollected);
+                            collected.add(storeCollected);
+                        }
+                        analyze(analyzers, classesToAnalyze.get(index));
+                        synchronized (coverages) {
+                            coverages.set(index, collected);
+                        }
+                    }
+                    return null;
+                }
+            });
+        }
+        ConcurrentTasks.invokeAll(workerCount, workers);
+
+        for (final List<List<IClassCoverage>> collected : coverages) {
+            for (int i = 0; i < builders.size(); i++) {
+                for (final IClassCoverage coverage : collected.get(i)) {
+                    builders.get(i).visitCoverage(coverage);
+                }
+            }
+        }
+    }
+
+    /**
+     * Receives the bundles of one package at a time from createPackageBundles.
+     */
+    public interface PackageBundleVisitor {
+
+        /**
+         * @param bundles
+         *            the coverage of the package, one bundle per ExecutionDataStore; they are not used by the
+         *            BundleCreator afterwards
+         * @throws IOException
+         *             if the bundles can't be written
+         */
+        void visitPackage(List<IBundleCoverage> bundles) throws IOException;
+    }
+
+    private static final class ClassCoverageCollector implements ICoverageVisitor {
+        private List<IClassCoverage> coverages;
+
+        void collectInto(final List<IClassCoverage> coverages) {
+            this.coverages = coverages;
+        }
+
+        @Override
+        public void visitCoverage(final IClassCoverage coverage) {
+            coverages.add(coverage);
+        }
     }
 }
@@ -0,0 +1,54 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2013 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Evgeny Mandrikov - initial API and implementation
+ *    Kyle Lieber - implementation of CheckMojo
+ * 
+ *******************************************************************************/
+package timezra.maven.jacoco.scala;
+
+/**
+ * SCALAC.CASE: excludes the curried, tupled and default argument methods that scalac generates for case classes. The
+ * decision only needs the name and descriptor, so these methods are never analyzed.
+ */
+final class CaseFilter implements MethodSignatureFilter {
+
+    private static final String DEFAULT_ARGUMENT = "$default$";
+
+    @Override
+    public boolean excludes(final int access, final String name, final String desc, final String signature) {
+        if (!desc.startsWith("()")) {
+            return false;
+        }
+        return "curried".equals(name) || "tupled".equals(name) || isDefaultArgument(name);
+    }
+
+    /**
+     * Matches <code>(?:\w|\$)+\$default\$\d+</code> without creating a Matcher for every method.
+     */
+    private static boolean isDefaultArgument(final String name) {
+        final int marker = name.lastIndexOf(DEFAULT_ARGUMENT);
+        final int index = marker + DEFAULT_ARGUMENT.length();
+        if (marker <= 0 || index == name.length()) {
+            return false;
+        }
+        for (int i = index; i < name.length(); i++) {
+            final char c = name.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        for (int i = 0; i < marker; i++) {
+            final char c = name.charAt(i);
+            if (!(c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '_' || c == '$')) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,187 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2013 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Evgeny Mandrikov - initial API and implementation
+ *    Kyle Lieber - implementation of CheckMojo
+ * 
+ *******************************************************************************/
+package timezra.maven.jacoco.scala;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.reporting.MavenReportException;
+import org.jacoco.core.analysis.IBundleCoverage;
+import org.jacoco.core.analysis.ICoverageNode;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.SessionInfo;
+import org.jacoco.report.IReportVisitor;
+import org.jacoco.report.check.IViolationsOutput;
+import org.jacoco.report.check.Limit;
+import org.jacoco.report.check.Rule;
+import org.jacoco.report.check.RulesChecker;
+
+/**
+ * Checks the code coverage of a single project against rules without writing a report. The class files are analyzed
+ * with the same filters as by the report goal and the coverage tree is walked once; by default the first violated rule
+ * fails the build.
+ * 
+ * @phase verify
+ * @goal check
+ * @requiresProject true
+ * @threadSafe
+ */
+public class CheckMojo extends AbstractAnalysisMojo implements IViolationsOutput {
+
+    private static final String CHECK_SUCCESS = "All coverage checks have been met.";
+    private static final String CHECK_FAILED = "Coverage checks have not been met. See log for details.";
+
+    /**
+     * The rules to check, e.g. a minimum line coverage for every class:
+     * 
+     * <pre>
+     * &lt;rule implementation="timezra.maven.jacoco.scala.RuleConfiguration"&gt;
+     *   &lt;element&gt;CLASS&lt;/element&gt;
+     *   &lt;limits&gt;
+     *     &lt;limit implementation="org.jacoco.report.check.Limit"&gt;
+     *       &lt;counter&gt;LINE&lt;/counter&gt;
+     *       &lt;value&gt;COVEREDRATIO&lt;/value&gt;
+     *       &lt;minimum&gt;0.80&lt;/minimum&gt;
+     *     &lt;/limit&gt;
+     *   &lt;/limits&gt;
+     * &lt;/rule&gt;
+     * </pre>
+     * 
+     * @parameter
+     * @required
+     */
+    private List<RuleConfiguration> rules;
+
+    /**
+     * Flag used to fail the build on the first violated rule. When false, every violation is logged and the build goes
+     * on.
+     * 
+     * @parameter expression="${jacoco.haltOnFailure}" default-value="true"
+     */
+    private boolean haltOnFailure;
+
+    /**
+     * File with execution data.
+     * 
+     * @parameter default-value="${project.build.directory}/jacoco.exec"
+     */
+    private File dataFile;
+
+    /**
+     * Directories, jars and zips with the class files to check, such as a shaded artifact or the jar of a sibling
+     * module. Archives are read in place; the includes and excludes are matched against the paths of the class files
+     * within each location. Defaults to the output directory of the project.
+     * 
+     * @parameter
+     */
+    private List<File> classLocations;
+
+    /**
+     * Directory that holds the cached structure of analyzed class files, which is shared with the report goal.
+     * 
+     * @parameter default-value="${project.build.directory}/jacoco-scala-cache"
+     */
+    private File analysisCacheDirectory;
+
+    private int violations;
+
+    @Override
+    protected boolean canAnalyze() {
+        if ("pom".equals(getProject().getPackaging())) {
+            getLog().info("Skipping JaCoCo for project with packaging type 'pom'");
+            return false;
+        }
+        return super.canAnalyze();
+    }
+
+    @Override
+    protected List<MavenProject> getReportProjects() {
+        return Collections.singletonList(getProject());
+    }
+
+    @Override
+    protected List<File> getDataFiles() {
+        return getDataFiles(dataFile, resolvePath(getProject(), getProject().getBuild().getDirectory()));
+    }
+
+    @Override
+    protected File getAnalysisCacheDirectory(final MavenProject reportProject) {
+        return analysisCacheDirectory;
+    }
+
+    @Override
+    protected List<File> getClassLocations(final MavenProject reportProject) {
+        if (classLocations == null || classLocations.isEmpty()) {
+            return super.getClassLocations(reportProject);
+        }
+        return classLocations;
+    }
+
+    @Override
+    public void execute() throws MojoExecutionException {
+        if (!canAnalyze()) {
+            return;
+        }
+        violations = 0;
+        try {
+            check();
+        } catch (final RuleViolatedException e) {
+            throw new MojoExecutionException(CHECK_FAILED);
+        } catch (final IOException | MavenReportException e) {
+            throw new MojoExecutionException("An error has occurred in JaCoCo coverage check.", e);
+        }
+        if (violations > 0) {
+            getLog().warn(CHECK_FAILED);
+        } else {
+            getLog().info(CHECK_SUCCESS);
+        }
+    }
+
+    private void check() throws IOException, MavenReportException {
+        final List<Rule> checkedRules = new ArrayList<Rule>(rules.size());
+        for (final RuleConfiguration rule : rules) {
+            checkedRules.add(rule.rule);
+        }
+        final RulesChecker checker = new RulesChecker();
+        checker.setRules(checkedRules);
+        final IReportVisitor visitor = checker.createVisitor(this);
+
+        final IBundleCoverage bundle = analyze(getReportProjects()).get(0);
+        checkForMissingDebugInformation(bundle);
+        visitor.visitInfo(Collections.<SessionInfo> emptyList(), Collections.<ExecutionData> emptyList());
+        // the rules checker does not read sources
+        visitor.visitBundle(bundle, null);
+        visitor.visitEnd();
+    }
+
+    @Override
+    public void onViolation(final ICoverageNode node, final Rule rule, final Limit limit, final String message) {
+        getLog().warn(message);
+        violations++;
+        if (haltOnFailure) {
+            throw new RuleViolatedException();
+        }
+    }
+
+    /**
+     * Stops the walk over the coverage tree at the first violation.
+     */
+    private static final class RuleViolatedException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+    }
+}
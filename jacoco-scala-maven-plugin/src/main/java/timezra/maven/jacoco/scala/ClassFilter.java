@@ -0,0 +1,32 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2013 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Evgeny Mandrikov - initial API and implementation
+ *    Kyle Lieber - implementation of CheckMojo
+ * 
+ *******************************************************************************/
+package timezra.maven.jacoco.scala;
+
+/**
+ * Excludes whole classes from the report before their class files are read. The decision is made from the name of the
+ * class, which is taken from the path of its class file within its directory or archive, so an excluded class costs
+ * neither I/O nor parsing.
+ * <p>
+ * Implementations are configured by their fully qualified class name in the <code>filters</code> parameter, must have a
+ * public no-argument constructor and must be thread-safe.
+ * </p>
+ */
+public interface ClassFilter {
+
+    /**
+     * @param name
+     *            the internal name of the class, e.g. <code>com/example/Foo$$anonfun$1</code>
+     * @return <code>true</code> if the class should not be in the report
+     */
+    boolean excludes(final String name);
+}
@@ -0,0 +1,342 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2013 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Evgeny Mandrikov - initial API and implementation
+ *    Kyle Lieber - implementation of CheckMojo
+ * 
+ *******************************************************************************/
+package timezra.maven.jacoco.scala;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.SelectorUtils;
+import org.codehaus.plexus.util.StringUtils;
+import org.jacoco.core.internal.ContentTypeDetector;
+import org.jacoco.maven.FileFilter;
+
+/**
+ * The class files of a report project, read from directories, jars and zips. Directories are scanned with the include
+ * and exclude patterns of the FileFilter; archives are opened as zip file systems and the same patterns are matched
+ * against the paths of their entries, so no entry is extracted. A source has to be closed to release the archives it
+ * has opened.
+ */
+final class ClassSource implements Closeable {
+
+    /**
+     * Smaller files are read into an array directly; mapping them costs more than it saves.
+     */
+    private static final long MAPPING_THRESHOLD = 256 * 1024;
+
+    private static final String CLASS_FILE_SUFFIX = ".class";
+
+    private final List<File> locations;
+    private final FileFilter fileFilter;
+    private final ClassFilter classFilter;
+    private final List<FileSystem> archives = new ArrayList<FileSystem>();
+    private int excludedCount;
+
+    /**
+     * @param locations
+     *            directories, jars and zips with class files, locations that don't exist are skipped
+     * @param fileFilter
+     *            the include and exclude patterns of the class files
+     */
+    ClassSource(final List<File> locations, final FileFilter fileFilter) {
+        this(locations, fileFilter, null);
+    }
+
+    /**
+     * @param locations
+     *            directories, jars and zips with class files, locations that don't exist are skipped
+     * @param fileFilter
+     *            the include and exclude patterns of the class files
+     * @param classFilter
+     *            excludes class files by the class name that their path stands for, may be <code>null</code>
+     */
+    ClassSource(final List<File> locations, final FileFilter fileFilter, final ClassFilter classFilter) {
+        this.locations = locations;
+        this.fileFilter = fileFilter;
+        this.classFilter = classFilter;
+    }
+
+    /**
+     * @return the number of class files that the ClassFilter has excluded from the files or classes listed so far
+     */
+    int getExcludedCount() {
+        return excludedCount;
+    }
+
+    /**
+     * Returns the files that the classes are read from: the included files of the directories and the archives
+     * themselves.
+     * 
+     * @return the files that the classes are read from
+     * @throws IOException
+     *             if a directory can't be scanned
+     */
+    List<File> getFiles() throws IOException {
+        final List<File> files = new ArrayList<File>();
+        for (final File location : locations) {
+            if (location.isDirectory()) {
+                files.addAll(scan(location));
+            } else if (location.isFile()) {
+                files.add(location);
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Returns the included files of the directories and the included entries of the archives. The archives stay open
+     * until the source is closed.
+     * 
+     * @return the paths of the classes, in the file system of their directory or archive
+     * @throws IOException
+     *             if a directory can't be scanned or an archive can't be opened
+     */
+    List<Path> getClasses() throws IOException {
+        final List<Path> classes = new ArrayList<Path>();
+        for (final File location : locations) {
+            if (location.isDirectory()) {
+                for (final File file : scan(location)) {
+                    classes.add(file.toPath());
+                }
+            } else if (location.isFile()) {
+                addEntries(location, classes);
+            }
+        }
+        return classes;
+    }
+
+    /**
+     * Returns the classes like getClasses, grouped by the directory that they are in within their directory or archive,
+     * i.e. by package. The classes of a package in several locations are in the same group.
+     * 
+     * @return the paths of the classes by the internal name of their package, sorted by name
+     * @throws IOException
+     *             if a directory can't be scanned or an archive can't be opened
+     */
+    Map<String, List<Path>> getClassesByPackage() throws IOException {
+        final Map<String, List<Path>> packages = new TreeMap<String, List<Path>>();
+        for (final File location : locations) {
+            final List<Path> classes = new ArrayList<Path>();
+            if (location.isDirectory()) {
+                for (final File file : scan(location)) {
+                    classes.add(file.toPath());
+                }
+            } else if (location.isFile()) {
+                addEntries(location, classes);
+            }
+            final Path directory = location.toPath();
+            for (final Path path : classes) {
+                final Path parent = (path.getFileSystem() == FileSystems.getDefault() ? directory : path.getRoot())
+                        .relativize(path).getParent();
+                final String packageName = parent == null ? "" : parent.toString().replace(
+                        path.getFileSystem().getSeparator(), "/");
+                List<Path> packageClasses = packages.get(packageName);
+                if (packageClasses == null) {
+                    packageClasses = new ArrayList<Path>();
+                    packages.put(packageName, packageClasses);
+                }
+                packageClasses.add(path);
+            }
+        }
+        return packages;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<File> scan(final File directory) throws IOException {
+        final List<File> files = FileUtils.getFiles(directory, fileFilter.getIncludes(), fileFilter.getExcludes());
+        if (classFilter == null) {
+            return files;
+        }
+        final Path root = directory.toPath().toAbsolutePath();
+        final List<File> included = new ArrayList<File>(files.size());
+        for (final File file : files) {
+            if (!excludes(root.relativize(file.toPath().toAbsolutePath()).toString(), File.separatorChar)) {
+                included.add(file);
+            }
+        }
+        return included;
+    }
+
+    /**
+     * Class files are named after their class, so the ClassFilter decides from the path alone and the file is never
+     * read. Files that are not named like class files, e.g. nested archives, are kept.
+     */
+    private boolean excludes(final String relativePath, final char separator) {
+        if (!relativePath.endsWith(CLASS_FILE_SUFFIX)) {
+            return false;
+        }
+        final String name = relativePath.substring(0, relativePath.length() - CLASS_FILE_SUFFIX.length()).replace(
+                separator, '/');
+        if (classFilter.excludes(name)) {
+            excludedCount++;
+            return true;
+        }
+        return false;
+    }
+
+    private void addEntries(final File archive, final List<Path> classes) throws IOException {
+        final FileSystem fileSystem;
+        try {
+            fileSystem = FileSystems.newFileSystem(archive.toPath(), (ClassLoader) null);
+        } catch (final IOException | RuntimeException e) {
+            throw new IOException("Unable to open class location " + archive + ": " + e.getMessage(), e);
+        }
+        archives.add(fileSystem);
+        final String[] includes = patterns(fileFilter.getIncludes());
+        final String[] excludes = patterns(fileFilter.getExcludes());
+        for (final Path root : fileSystem.getRootDirectories()) {
+            Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(final Path entry, final BasicFileAttributes attributes) {
+                    final String entryName = root.relativize(entry).toString();
+                    final String name = entryName.replace('/', File.separatorChar);
+                    if (matches(name, includes) && !matches(name, excludes)
+                            && (classFilter == null || !excludes(entryName, '/'))) {
+                        classes.add(entry);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        }
+    }
+
+    /**
+     * Splits a comma separated list of patterns the way the DirectoryScanner does: a pattern that ends with a separator
+     * matches everything below it.
+     */
+    private static String[] patterns(final String list) {
+        if (list == null) {
+            return new String[0];
+        }
+        final String[] patterns = StringUtils.split(list, ",");
+        for (int i = 0; i < patterns.length; i++) {
+            String pattern = patterns[i].trim().replace('/', File.separatorChar).replace('\\', File.separatorChar);
+            if (pattern.endsWith(File.separator)) {
+                pattern += "**";
+            }
+            patterns[i] = pattern;
+        }
+        return patterns;
+    }
+
+    private static boolean matches(final String name, final String[] patterns) {
+        for (final String pattern : patterns) {
+            if (SelectorUtils.matchPath(pattern, name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reads a class file or an archive entry. Large files on the default file system are memory-mapped instead of
+     * copied through a stream buffer.
+     * 
+     * @param path
+     *            the path of the class
+     * @return the content of the class file
+     * @throws IOException
+     *             if the file can't be read
+     */
+    static byte[] read(final Path path) throws IOException {
+        if (path.getFileSystem() != FileSystems.getDefault()) {
+            return Files.readAllBytes(path);
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Class file " + path + " is too large");
+            }
+            final byte[] bytes = new byte[(int) size];
+            if (size >= MAPPING_THRESHOLD) {
+                final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                buffer.get(bytes);
+            } else {
+                final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+                while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                    // read until the buffer is full
+                }
+            }
+            return bytes;
+        }
+    }
+
+    /**
+     * @param bytes
+     *            the content of a file
+     * @return <code>true</code> if the content is a class file, otherwise it may be a nested archive
+     */
+    static boolean isClass(final byte[] bytes) {
+        return bytes.length >= 4 && ByteBuffer.wrap(bytes).getInt() == ContentTypeDetector.CLASSFILE;
+    }
+
+    /**
+     * @param bytes
+     *            the content of a file
+     * @return <code>true</code> if the content is an archive that the Analyzer looks into for more classes
+     * @throws IOException
+     *             never, the content is in memory
+     */
+    static boolean isArchive(final byte[] bytes) throws IOException {
+        switch (new ContentTypeDetector(new ByteArrayInputStream(bytes)).getType()) {
+        case ContentTypeDetector.ZIPFILE:
+        case ContentTypeDetector.GZFILE:
+        case ContentTypeDetector.PACK200FILE:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * @param path
+     *            the path of a class
+     * @return the location of the class for error messages, with the archive for archive entries
+     */
+    static String describe(final Path path) {
+        return path.getFileSystem() == FileSystems.getDefault() ? path.toString() : path.toUri().toString();
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        for (final FileSystem archive : archives) {
+            try {
+                archive.close();
+            } catch (final IOException e) {
+                failure = e;
+            }
+        }
+        archives.clear();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
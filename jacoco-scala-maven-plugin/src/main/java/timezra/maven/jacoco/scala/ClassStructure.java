@@ -0,0 +1,128 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2013 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Evgeny Mandrikov - initial API and implementation
+ *    Kyle Lieber - implementation of CheckMojo
+ * 
+ *******************************************************************************/
+package timezra.maven.jacoco.scala;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.jacoco.core.analysis.IClassCoverage;
+import org.jacoco.core.internal.analysis.ClassCoverageImpl;
+
+/**
+ * The probe-independent result of analyzing and filtering a class. It only holds the methods that survived the
+ * filters, so creating the coverage of a class from it does not need the class file.
+ */
+final class ClassStructure {
+
+    private final long id;
+    private final String name;
+    private final String signature;
+    private final String superName;
+    private final String[] interfaces;
+    private final String sourceFileName;
+    private final List<MethodStructure> methods;
+
+    ClassStructure(final long id, final String name, final String signature, final String superName,
+            final String[] interfaces, final String sourceFileName, final List<MethodStructure> methods) {
+        this.id = id;
+        this.name = name;
+        this.signature = signature;
+        this.superName = superName;
+        this.interfaces = interfaces;
+        this.sourceFileName = sourceFileName;
+        this.methods = methods;
+    }
+
+    long getId() {
+        return id;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    List<MethodStructure> getMethods() {
+        return Collections.unmodifiableList(methods);
+    }
+
+    /**
+     * @return the estimated heap size of this structure in bytes, not counting the pooled names
+     */
+    long estimateSize() {
+        long estimatedSize = 64 + 8 * methods.size();
+        for (final MethodStructure method : methods) {
+            estimatedSize += method.estimateSize();
+        }
+        return estimatedSize;
+    }
+
+    /**
+     * Creates the coverage of this class for the given probes.
+     * 
+     * @param probes
+     *            the probes of the class packed into long words, or <code>null</code> if the class was not executed
+     * @return the coverage of this class
+     */
+    IClassCoverage createCoverage(final long[] probes) {
+        final ClassCoverageImpl coverage = new ClassCoverageImpl(name, id, signature, superName, interfaces);
+        coverage.setSourceFileName(sourceFileName);
+        for (final MethodStructure method : methods) {
+            coverage.addMethod(method.createCoverage(probes));
+        }
+        return coverage;
+    }
+
+    void write(final DataOutput out) throws IOException {
+        out.writeLong(id);
+        out.writeUTF(name);
+        MethodStructure.writeNullable(out, signature);
+        MethodStructure.writeNullable(out, superName);
+        out.writeBoolean(interfaces != null);
+        if (interfaces != null) {
+            out.writeInt(interfaces.length);
+            for (final String i : interfaces) {
+                out.writeUTF(i);
+            }
+        }
+        MethodStructure.writeNullable(out, sourceFileName);
+        out.writeInt(methods.size());
+        for (final MethodStructure method : methods) {
+            method.write(out);
+        }
+    }
+
+    static ClassStructure read(final DataInput in, final SharedStringPool stringPool) throws IOException {
+        final long id = in.readLong();
+        final String name = stringPool.get(in.readUTF());
+        final String signature = stringPool.get(MethodStructure.readNullable(in));
+        final String superName = stringPool.get(MethodStructure.readNullable(in));
+        String[] interfaces = null;
+        if (in.readBoolean()) {
+            interfaces = new String[in.readInt()];
+            for (int i = 0; i < interfaces.length; i++) {
+                interfaces[i] = stringPool.get(in.readUTF());
+            }
+        }
+        final String sourceFileName = stringPool.get(MethodStructure.readNullable(in));
+        final int methodCount = in.readInt();
+        final List<MethodStructure> methods = new ArrayList<MethodStructure>(methodCount);
+        for (int i = 0; i < methodCount; i++) {
+            methods.add(MethodStructure.read(in, stringPool));
+        }
+        return new ClassStructure(id, name, signature, superName, interfaces, sourceFileName, methods);
+    }
+}
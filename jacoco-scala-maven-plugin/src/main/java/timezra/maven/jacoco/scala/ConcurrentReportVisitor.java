@@ -0,0 +1,210 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2013 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Evgeny Mandrikov - initial API and implementation
+ *    Kyle Lieber - implementation of CheckMojo
+ * 
+ *******************************************************************************/
+package timezra.maven.jacoco.scala;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.jacoco.core.analysis.IBundleCoverage;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.SessionInfo;
+import org.jacoco.report.IReportGroupVisitor;
+import org.jacoco.report.IReportVisitor;
+import org.jacoco.report.ISourceFileLocator;
+
+/**
+ * Passes every call on to several report visitors, each on a thread of its own. The calls to one visitor keep their
+ * order, but the visitors read the same immutable bundle at the same time, so writing all reports takes about as long
+ * as writing the slowest one. A failure of any visitor is rethrown by {@link #visitEnd()}; if the report is not
+ * completed, {@link #abort()} stops the threads.
+ */
+final class ConcurrentReportVisitor implements IReportVisitor {
+
+    private final List<IReportVisitor> visitors;
+    private final List<ExecutorService> workers = new ArrayList<ExecutorService>();
+    private final List<Future<?>> pending = new ArrayList<Future<?>>();
+    private final GroupVisitor root;
+
+    /**
+     * @param visitors
+     *            the visitors to pass the calls on to
+     */
+    ConcurrentReportVisitor(final List<IReportVisitor> visitors) {
+        final List<Future<? extends IReportGroupVisitor>> groups = new ArrayList<Future<? extends IReportGroupVisitor>>();
+        for (final IReportVisitor visitor : visitors) {
+            workers.add(Executors.newSingleThreadExecutor(new ReportThreadFactory()));
+            groups.add(done(visitor));
+        }
+        this.visitors = visitors;
+        this.root = new GroupVisitor(groups);
+    }
+
+    @Override
+    public void visitInfo(final List<SessionInfo> sessionInfos, final Collection<ExecutionData> executionData) {
+        for (int i = 0; i < visitors.size(); i++) {
+            final IReportVisitor visitor = visitors.get(i);
+            submit(i, new Callable<Void>() {
+                @Override
+                public Void call() throws IOException {
+                    visitor.visitInfo(sessionInfos, executionData);
+                    return null;
+                }
+            });
+        }
+    }
+
+    @Override
+    public void visitBundle(final IBundleCoverage bundle, final ISourceFileLocator locator) {
+        root.visitBundle(bundle, locator);
+    }
+
+    @Override
+    public IReportGroupVisitor visitGroup(final String name) {
+        return root.visitGroup(name);
+    }
+
+    @Override
+    public void visitEnd() throws IOException {
+        try {
+            for (int i = 0; i < visitors.size(); i++) {
+                final IReportVisitor visitor = visitors.get(i);
+                submit(i, new Callable<Void>() {
+                    @Override
+                    public Void call() throws IOException {
+                        visitor.visitEnd();
+                        return null;
+                    }
+                });
+            }
+            for (final Future<?> future : pending) {
+                ConcurrentTasks.await(future);
+            }
+        } finally {
+            for (final ExecutorService worker : workers) {
+                worker.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Waits until the visitors have handled every call so far, so that the caller does not get ahead of the slowest
+     * visitor by more than one bundle.
+     * 
+     * @throws IOException
+     *             if a visitor has failed
+     */
+    void awaitPending() throws IOException {
+        for (final Future<?> future : pending) {
+            ConcurrentTasks.await(future);
+        }
+        pending.clear();
+    }
+
+    /**
+     * Stops the visitors of a report that is not completed. The calls that have not started are dropped; the method
+     * returns once the running calls are finished, so that the outputs of the visitors can be closed afterwards.
+     */
+    void abort() {
+        for (final ExecutorService worker : workers) {
+            worker.shutdownNow();
+        }
+        pending.clear();
+        try {
+            for (final ExecutorService worker : workers) {
+                worker.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private <T> Future<T> submit(final int worker, final Callable<T> task) {
+        final Future<T> future = workers.get(worker).submit(task);
+        pending.add(future);
+        return future;
+    }
+
+    private static <T> Future<T> done(final T value) {
+        final FutureTask<T> future = new FutureTask<T>(new Callable<T>() {
+            @Override
+            public T call() {
+                return value;
+            }
+        });
+        future.run();
+        return future;
+    }
+
+    /**
+     * The group visitors of the delegates are created on their workers, so a group only holds the futures of them. As
+     * each worker runs its tasks in order, a future is always complete when a later task of the same worker reads it.
+     */
+    private final class GroupVisitor implements IReportGroupVisitor {
+
+        private final List<Future<? extends IReportGroupVisitor>> groups;
+
+        private GroupVisitor(final List<Future<? extends IReportGroupVisitor>> groups) {
+            this.groups = groups;
+        }
+
+        @Override
+        public void visitBundle(final IBundleCoverage bundle, final ISourceFileLocator locator) {
+            for (int i = 0; i < groups.size(); i++) {
+                final Future<? extends IReportGroupVisitor> group = groups.get(i);
+                submit(i, new Callable<Void>() {
+                    @Override
+                    public Void call() throws IOException {
+                        ConcurrentTasks.await(group).visitBundle(bundle, locator);
+                        return null;
+                    }
+                });
+            }
+        }
+
+        @Override
+        public IReportGroupVisitor visitGroup(final String name) {
+            final List<Future<? extends IReportGroupVisitor>> children = new ArrayList<Future<? extends IReportGroupVisitor>>();
+            for (int i = 0; i < groups.size(); i++) {
+                final Future<? extends IReportGroupVisitor> group = groups.get(i);
+                children.add(submit(i, new Callable<IReportGroupVisitor>() {
+                    @Override
+                    public IReportGroupVisitor call() throws IOException {
+                        return ConcurrentTasks.await(group).visitGroup(name);
+                    }
+                }));
+            }
+            return new GroupVisitor(children);
+        }
+    }
+
+    /**
+     * Report threads are daemons, so a build that fails before visitEnd does not keep the JVM alive.
+     */
+    private static final class ReportThreadFactory implements ThreadFactory {
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            final Thread thread = new Thread(runnable, "jacoco-scala-report");
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
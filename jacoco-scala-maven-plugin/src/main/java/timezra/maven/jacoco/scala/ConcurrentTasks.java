@@ -0,0 +1,108 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2013 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Evgeny Mandrikov - initial API and implementation
+ *    Kyle Lieber - implementation of CheckMojo
+ * 
+ *******************************************************************************/
+package timezra.maven.jacoco.scala;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs I/O bound tasks on a bounded number of threads.
+ */
+final class ConcurrentTasks {
+
+    private static final long TERMINATION_TIMEOUT_SECONDS = 30;
+
+    private ConcurrentTasks() {
+    }
+
+    /**
+     * Runs the tasks on at most threadCount threads and waits until all of them are done. The first failure is
+     * rethrown once the remaining tasks have been interrupted and have stopped, so that none of them still writes to
+     * shared state while the caller cleans up.
+     * 
+     * @param threadCount
+     *            the maximum number of threads
+     * @param tasks
+     *            the tasks to run
+     * @throws IOException
+     *             if a task fails with an IOException or the current thread is interrupted
+     */
+    static void invokeAll(final int threadCount, final List<? extends Callable<Void>> tasks) throws IOException {
+        if (tasks.isEmpty()) {
+            return;
+        }
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threadCount, tasks.size())));
+        try {
+            final List<Future<Void>> futures = new ArrayList<Future<Void>>(tasks.size());
+            for (final Callable<Void> task : tasks) {
+                futures.add(executor.submit(task));
+            }
+            for (final Future<Void> future : futures) {
+                await(future);
+            }
+        } finally {
+            executor.shutdownNow();
+            awaitTermination(executor);
+        }
+    }
+
+    /**
+     * Waits a bounded time for the interrupted tasks to stop. A task that ignores the interrupt is left running rather
+     * than blocking the build.
+     */
+    private static void awaitTermination(final ExecutorService executor) {
+        try {
+            executor.awaitTermination(TERMINATION_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Waits for a task and rethrows its failure.
+     * 
+     * @param future
+     *            the task to wait for
+     * @return the result of the task
+     * @throws IOException
+     *             if the task failed with an IOException or the current thread is interrupted
+     */
+    static <T> T await(final Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for concurrent tasks");
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+}
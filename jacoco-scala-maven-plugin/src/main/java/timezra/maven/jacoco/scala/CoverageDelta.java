@@ -0,0 +1,136 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2013 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Evgeny Mandrikov - initial API and implementation
+ *    Kyle Lieber - implementation of CheckMojo
+ * 
+ *******************************************************************************/
+package timezra.maven.jacoco.scala;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jacoco.core.analysis.IBundleCoverage;
+import org.jacoco.core.analysis.IClassCoverage;
+import org.jacoco.core.analysis.ICounter;
+import org.jacoco.core.analysis.ICoverageNode.CounterEntity;
+import org.jacoco.core.analysis.IPackageCoverage;
+
+/**
+ * Compares the classes of the analyzed bundles with the same classes in a baseline snapshot and lists the lines and
+ * branches that each class gained or lost. Classes that are not in the baseline are compared with empty counters.
+ */
+final class CoverageDelta {
+
+    static final String FILE_NAME = "jacoco-delta.csv";
+
+    private static final String HEADER = "GROUP,PACKAGE,CLASS,STATUS,LINE_MISSED,LINE_COVERED,LINE_MISSED_DELTA,"
+            + "LINE_COVERED_DELTA,BRANCH_MISSED,BRANCH_COVERED,BRANCH_MISSED_DELTA,BRANCH_COVERED_DELTA";
+
+    private final List<String> rows = new ArrayList<String>();
+    private int newClasses;
+    private long linesGained;
+    private long linesLost;
+    private long branchesGained;
+    private long branchesLost;
+
+    /**
+     * @param baseline
+     *            the snapshot of a previous build
+     * @param bundles
+     *            the bundles with the changed classes
+     */
+    CoverageDelta(final CoverageSnapshot baseline, final List<IBundleCoverage> bundles) {
+        for (final IBundleCoverage bundle : bundles) {
+            for (final IPackageCoverage p : bundle.getPackages()) {
+                for (final IClassCoverage c : p.getClasses()) {
+                    compare(bundle.getName(), p.getName(), c, baseline.findClass(c.getName()));
+                }
+            }
+        }
+    }
+
+    private void compare(final String bundleName, final String packageName, final IClassCoverage current,
+            final CoverageSnapshot.Node previous) {
+        if (previous == null) {
+            newClasses++;
+        }
+        final StringBuilder row = new StringBuilder();
+        row.append(bundleName).append(',').append(packageName.replace('/', '.')).append(',')
+                .append(current.getName().substring(packageName.length() == 0 ? 0 : packageName.length() + 1))
+                .append(',').append(previous == null ? "NEW" : "CHANGED");
+        final long lineDelta = append(row, current, previous, CounterEntity.LINE);
+        final long branchDelta = append(row, current, previous, CounterEntity.BRANCH);
+        rows.add(row.toString());
+        if (lineDelta > 0) {
+            linesGained += lineDelta;
+        } else {
+            linesLost -= lineDelta;
+        }
+        if (branchDelta > 0) {
+            branchesGained += branchDelta;
+        } else {
+            branchesLost -= branchDelta;
+        }
+    }
+
+    /**
+     * Appends the current counter of the class and its difference to the baseline.
+     * 
+     * @return the difference of the covered count
+     */
+    private static long append(final StringBuilder row, final IClassCoverage current,
+            final CoverageSnapshot.Node previous, final CounterEntity entity) {
+        final ICounter counter = current.getCounter(entity);
+        int previousMissed = 0;
+        int previousCovered = 0;
+        if (previous != null) {
+            final ICounter previousCounter = previous.getCounter(entity);
+            previousMissed = previousCounter.getMissedCount();
+            previousCovered = previousCounter.getCoveredCount();
+        }
+        final int coveredDelta = counter.getCoveredCount() - previousCovered;
+        row.append(',').append(counter.getMissedCount()).append(',').append(counter.getCoveredCount()).append(',')
+                .append(counter.getMissedCount() - previousMissed).append(',').append(coveredDelta);
+        return coveredDelta;
+    }
+
+    /**
+     * @param file
+     *            the CSV file to write a row per changed class to
+     * @param encoding
+     *            the encoding of the file
+     * @throws IOException
+     *             if the file can't be written
+     */
+    void write(final File file, final String encoding) throws IOException {
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), encoding))) {
+            writer.write(HEADER);
+            writer.write('\n');
+            for (final String row : rows) {
+                writer.write(row);
+                writer.write('\n');
+            }
+        }
+    }
+
+    /**
+     * @return a one-line summary of the comparison, for the build log
+     */
+    String summarize() {
+        return "JaCoCo coverage of " + rows.size() + " changed classes (" + newClasses + " new) since the baseline: "
+                + "lines covered +" + linesGained + "/-" + linesLost + ", branches covered +" + branchesGained + "/-"
+                + branchesLost;
+    }
+}
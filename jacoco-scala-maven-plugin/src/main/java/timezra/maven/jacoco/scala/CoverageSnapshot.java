@@ -0,0 +1,385 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2013 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Evgeny Mandrikov - initial API and implementation
+ *    Kyle Lieber - implementation of CheckMojo
+ * 
+ *******************************************************************************/
+package timezra.maven.jacoco.scala;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.AbstractList;
+import java.util.Collections;
+import java.util.List;
+
+import org.jacoco.core.analysis.ICounter;
+import org.jacoco.core.analysis.ICoverageNode.CounterEntity;
+import org.jacoco.core.analysis.ICoverageNode.ElementType;
+import org.jacoco.core.analysis.ISourceNode;
+import org.jacoco.core.internal.analysis.CounterImpl;
+
+/**
+ * Reads a coverage snapshot written by the SnapshotFormatter. The file is memory-mapped and only the records that are
+ * asked for are decoded, so single packages, classes or methods can be looked up without parsing the whole snapshot.
+ * A snapshot may be read by several threads at once.
+ */
+public final class CoverageSnapshot {
+
+    /** The default name of the snapshot in the output directory of a report. */
+    public static final String FILE_NAME = "jacoco.snapshot";
+
+    static final int MAGIC = 0x4A43534E;
+    static final int VERSION = 1;
+
+    private static final int COUNTERS_SIZE = 8 * CounterEntity.values().length;
+    static final int HEADER_SIZE = 7 * 4 + 6 * 8;
+    static final int BUNDLE_SIZE = 3 * 4 + COUNTERS_SIZE;
+    static final int PACKAGE_SIZE = 4 * 4 + COUNTERS_SIZE;
+    static final int CLASS_SIZE = 8 + 5 * 4 + COUNTERS_SIZE;
+    static final int METHOD_SIZE = 4 * 4 + COUNTERS_SIZE;
+
+    private final ByteBuffer buffer;
+    private final String[] strings;
+    private final int stringsOffset;
+    private final int[] counts = new int[ElementType.values().length];
+    private final int[] offsets = new int[ElementType.values().length];
+    private final int classIndexOffset;
+
+    private CoverageSnapshot(final ByteBuffer buffer, final File file) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a coverage snapshot: " + file);
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported version " + buffer.getInt(4) + " of coverage snapshot " + file);
+        }
+        strings = new String[buffer.getInt(8)];
+        counts[ElementType.BUNDLE.ordinal()] = buffer.getInt(12);
+        counts[ElementType.PACKAGE.ordinal()] = buffer.getInt(16);
+        counts[ElementType.CLASS.ordinal()] = buffer.getInt(20);
+        counts[ElementType.METHOD.ordinal()] = buffer.getInt(24);
+        stringsOffset = (int) buffer.getLong(28);
+        offsets[ElementType.BUNDLE.ordinal()] = (int) buffer.getLong(36);
+        offsets[ElementType.PACKAGE.ordinal()] = (int) buffer.getLong(44);
+        offsets[ElementType.CLASS.ordinal()] = (int) buffer.getLong(52);
+        offsets[ElementType.METHOD.ordinal()] = (int) buffer.getLong(60);
+        classIndexOffset = (int) buffer.getLong(68);
+        if (classIndexOffset + 4L * counts[ElementType.CLASS.ordinal()] != buffer.capacity()) {
+            throw new IOException("Truncated coverage snapshot: " + file);
+        }
+    }
+
+    /**
+     * Maps a snapshot into memory. The mapping stays valid after the file is replaced or deleted and is released when
+     * the snapshot is garbage collected.
+     * 
+     * @param file
+     *            the snapshot
+     * @return the snapshot
+     * @throws IOException
+     *             if the file can't be read or is not a coverage snapshot
+     */
+    public static CoverageSnapshot open(final File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            final FileChannel channel = raf.getChannel();
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Coverage snapshot is too large: " + file);
+            }
+            return new CoverageSnapshot(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), file);
+        }
+    }
+
+    /**
+     * @return the bundles of the snapshot, in the order they were reported
+     */
+    public List<Node> getBundles() {
+        return new NodeList(ElementType.BUNDLE, 0, count(ElementType.BUNDLE));
+    }
+
+    /**
+     * @return all classes of the snapshot, ordered by bundle, package and class name
+     */
+    public List<Node> getClasses() {
+        return new NodeList(ElementType.CLASS, 0, count(ElementType.CLASS));
+    }
+
+    /**
+     * Looks up a package by a binary search over the packages of each bundle.
+     * 
+     * @param name
+     *            the VM name of the package, e.g. <code>org/example</code>
+     * @return the package of the first bundle that contains it, or <code>null</code>
+     */
+    public Node findPackage(final String name) {
+        for (final Node bundle : getBundles()) {
+            final int index = search(ElementType.PACKAGE, bundle.firstChild(), bundle.childCount(), name);
+            if (index >= 0) {
+                return new Node(ElementType.PACKAGE, index);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Looks up a class by a binary search over the class index.
+     * 
+     * @param name
+     *            the VM name of the class, e.g. <code>org/example/Example$</code>
+     * @return the class of the first bundle that contains it, or <code>null</code>
+     */
+    public Node findClass(final String name) {
+        int low = 0;
+        int high = count(ElementType.CLASS) - 1;
+        int found = -1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final int index = buffer.getInt(classIndexOffset + 4 * mid);
+            final int comparison = new Node(ElementType.CLASS, index).getName().compareTo(name);
+            if (comparison < 0) {
+                low = mid + 1;
+            } else {
+                if (comparison == 0) {
+                    found = index;
+                }
+                high = mid - 1;
+            }
+        }
+        return found < 0 ? null : new Node(ElementType.CLASS, found);
+    }
+
+    private int search(final ElementType type, final int first, final int count, final String name) {
+        int low = first;
+        int high = first + count - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final int comparison = new Node(type, mid).getName().compareTo(name);
+            if (comparison < 0) {
+                low = mid + 1;
+            } else if (comparison > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private int count(final ElementType type) {
+        return counts[type.ordinal()];
+    }
+
+    /**
+     * Decodes a string of the string table once; the race between threads that decode the same string is benign.
+     */
+    private String getString(final int id) {
+        if (id < 0) {
+            return null;
+        }
+        String s = strings[id];
+        if (s == null) {
+            final int offset = stringsOffset + buffer.getInt(stringsOffset + 4 * id);
+            final byte[] bytes = new byte[buffer.getInt(offset)];
+            final ByteBuffer view = buffer.duplicate();
+            view.position(offset + 4);
+            view.get(bytes);
+            s = new String(bytes, SnapshotFormatter.UTF8);
+            strings[id] = s;
+        }
+        return s;
+    }
+
+    /**
+     * A bundle, package, class or method of the snapshot. A node is a view of its record and is decoded on access.
+     */
+    public final class Node {
+        private final ElementType type;
+        private final int index;
+        private final int offset;
+
+        Node(final ElementType type, final int index) {
+            this.type = type;
+            this.index = index;
+            this.offset = offsets[type.ordinal()] + index * recordSize(type);
+        }
+
+        /**
+         * @return BUNDLE, PACKAGE, CLASS or METHOD
+         */
+        public ElementType getElementType() {
+            return type;
+        }
+
+        /**
+         * @return the name of the bundle, or the VM name of the package, class or method
+         */
+        public String getName() {
+            return getString(buffer.getInt(type == ElementType.CLASS ? offset + 8 : offset));
+        }
+
+        /**
+         * @param entity
+         *            the counter entity
+         * @return the counter of the node for the given entity
+         */
+        public ICounter getCounter(final CounterEntity entity) {
+            final int counterOffset = offset + recordSize(type) - COUNTERS_SIZE + 8 * entity.ordinal();
+            return CounterImpl.getInstance(buffer.getInt(counterOffset), buffer.getInt(counterOffset + 4));
+        }
+
+        /**
+         * @return the packages of a bundle, the classes of a package or the methods of a class, each sorted by name
+         *         except for the methods, which are in the order of the class file
+         */
+        public List<Node> getChildren() {
+            if (type == ElementType.METHOD) {
+                return Collections.emptyList();
+            }
+            return new NodeList(childType(), firstChild(), childCount());
+        }
+
+        /**
+         * @return the bundle of a package, the package of a class, the class of a method, or <code>null</code> for a
+         *         bundle
+         */
+        public Node getParent() {
+            switch (type) {
+            case PACKAGE:
+                return new Node(ElementType.BUNDLE, buffer.getInt(offset + 4));
+            case CLASS:
+                return new Node(ElementType.PACKAGE, buffer.getInt(offset + 16));
+            case METHOD:
+                return new Node(ElementType.CLASS, buffer.getInt(offset + 12));
+            default:
+                return null;
+            }
+        }
+
+        /**
+         * @return the CRC64 id of the class file of a class, or 0 for other nodes
+         */
+        public long getId() {
+            return type == ElementType.CLASS ? buffer.getLong(offset) : 0;
+        }
+
+        /**
+         * @return the source file name of a class, or <code>null</code> if it is unknown or the node is not a class
+         */
+        public String getSourceFileName() {
+            return type == ElementType.CLASS ? getString(buffer.getInt(offset + 12)) : null;
+        }
+
+        /**
+         * @return the descriptor of a method, or <code>null</code> for other nodes
+         */
+        public String getDesc() {
+            return type == ElementType.METHOD ? getString(buffer.getInt(offset + 4)) : null;
+        }
+
+        /**
+         * @return the first source line of a method, or -1 if it is unknown or the node is not a method
+         */
+        public int getFirstLine() {
+            return type == ElementType.METHOD ? buffer.getInt(offset + 8) : ISourceNode.UNKNOWN_LINE;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (!(o instanceof Node)) {
+                return false;
+            }
+            final Node other = (Node) o;
+            return type == other.type && index == other.index && getSnapshot() == other.getSnapshot();
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * type.hashCode() + index;
+        }
+
+        @Override
+        public String toString() {
+            return type + " " + getName();
+        }
+
+        private CoverageSnapshot getSnapshot() {
+            return CoverageSnapshot.this;
+        }
+
+        private ElementType childType() {
+            switch (type) {
+            case BUNDLE:
+                return ElementType.PACKAGE;
+            case PACKAGE:
+                return ElementType.CLASS;
+            default:
+                return ElementType.METHOD;
+            }
+        }
+
+        int firstChild() {
+            return buffer.getInt(offset + childRangeOffset());
+        }
+
+        int childCount() {
+            return buffer.getInt(offset + childRangeOffset() + 4);
+        }
+
+        private int childRangeOffset() {
+            switch (type) {
+            case BUNDLE:
+                return 4;
+            case PACKAGE:
+                return 8;
+            default:
+                return 20;
+            }
+        }
+    }
+
+    private static int recordSize(final ElementType type) {
+        switch (type) {
+        case BUNDLE:
+            return BUNDLE_SIZE;
+        case PACKAGE:
+            return PACKAGE_SIZE;
+        case CLASS:
+            return CLASS_SIZE;
+        default:
+            return METHOD_SIZE;
+        }
+    }
+
+    private final class NodeList extends AbstractList<Node> {
+        private final ElementType type;
+        private final int first;
+        private final int size;
+
+        NodeList(final ElementType type, final int first, final int size) {
+            this.type = type;
+            this.first = first;
+            this.size = size;
+        }
+
+        @Override
+        public Node get(final int i) {
+            if (i < 0 || i >= size) {
+                throw new IndexOutOfBoundsException(String.valueOf(i));
+            }
+            return new Node(type, first + i);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
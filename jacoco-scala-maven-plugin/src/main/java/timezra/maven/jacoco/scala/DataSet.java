@@ -0,0 +1,50 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2013 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Evgeny Mandrikov - initial API and implementation
+ *    Kyle Lieber - implementation of CheckMojo
+ * 
+ *******************************************************************************/
+package timezra.maven.jacoco.scala;
+
+import java.io.File;
+
+/**
+ * A named execution data file that a report of its own is written for, e.g. the execution data of the integration
+ * tests next to the one of the unit tests. The class files are analyzed once for all data sets.
+ */
+public class DataSet {
+
+    private String name;
+
+    private File dataFile;
+
+    /**
+     * @param name
+     *            the name of the data set, used as the directory of its report below the output directory
+     */
+    public void setName(final String name) {
+        this.name = name;
+    }
+
+    /**
+     * @param dataFile
+     *            the execution data file of the data set
+     */
+    public void setDataFile(final File dataFile) {
+        this.dataFile = dataFile;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    File getDataFile() {
+        return dataFile;
+    }
+}
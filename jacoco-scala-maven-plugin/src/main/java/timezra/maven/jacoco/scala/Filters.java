@@ -0,0 +1,85 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2013 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Evgeny Mandrikov - initial API and implementation
+ *    Kyle Lieber - implementation of CheckMojo
+ * 
+ *******************************************************************************/
+package timezra.maven.jacoco.scala;
+
+import java.util.Collection;
+import java.util.Collections;
+
+import org.jacoco.core.analysis.IMethodCoverage;
+
+/**
+ * Applies a chain of ClassFilters before class files are read, a chain of MethodSignatureFilters before methods are
+ * analyzed and a chain of MethodCoverageFilters after a class has been analyzed.
+ */
+final class Filters implements ClassFilter, MethodSignatureFilter, MethodCoverageFilter {
+
+    private final Iterable<ClassFilter> classFilters;
+    private final Iterable<MethodSignatureFilter> signatureFilters;
+    private final Iterable<MethodCoverageFilter> coverageFilters;
+
+    Filters(final Iterable<MethodSignatureFilter> signatureFilters, final Iterable<MethodCoverageFilter> coverageFilters) {
+        this(Collections.<ClassFilter> emptyList(), signatureFilters, coverageFilters);
+    }
+
+    Filters(final Iterable<ClassFilter> classFilters, final Iterable<MethodSignatureFilter> signatureFilters,
+            final Iterable<MethodCoverageFilter> coverageFilters) {
+        this.classFilters = classFilters;
+        this.signatureFilters = signatureFilters;
+        this.coverageFilters = coverageFilters;
+    }
+
+    /**
+     * @return <code>true</code> if a ClassFilter is configured, otherwise the names of the classes do not have to be
+     *         checked
+     */
+    boolean filtersClasses() {
+        return classFilters.iterator().hasNext();
+    }
+
+    /**
+     * @return <code>true</code> if a MethodCoverageFilter is configured, otherwise the methods do not have to be turned
+     *         into coverages before the structure of a class is complete
+     */
+    boolean filtersCoverage() {
+        return coverageFilters.iterator().hasNext();
+    }
+
+    @Override
+    public boolean excludes(final String name) {
+        for (final ClassFilter filter : classFilters) {
+            if (filter.excludes(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean excludes(final int access, final String name, final String desc, final String signature) {
+        for (final MethodSignatureFilter filter : signatureFilters) {
+            if (filter.excludes(access, name, desc, signature)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public Collection<IMethodCoverage> filter(final Collection<IMethodCoverage> methodCoverages) {
+        Collection<IMethodCoverage> filtered = methodCoverages;
+        for (final MethodCoverageFilter filter : coverageFilters) {
+            filtered = filter.filter(filtered);
+        }
+        return filtered;
+    }
+}
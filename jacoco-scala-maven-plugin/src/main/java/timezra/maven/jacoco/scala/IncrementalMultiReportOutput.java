@@ -0,0 +1,189 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2013 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Evgeny Mandrikov - initial API and implementation
+ *    Kyle Lieber - implementation of CheckMojo
+ * 
+ *******************************************************************************/
+package timezra.maven.jacoco.scala;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.jacoco.report.IMultiReportOutput;
+
+/**
+ * Writes the files of a multi-file report, such as the pages of the HTML report, only when their content changed. The
+ * SHA-1 hash of every file is kept in an index in the output directory; a file whose hash and length are the same as
+ * in the last report is not written again, and the files of the last report that are not part of this one, e.g. the
+ * pages of deleted classes, are removed. Files that are not in the index are never removed.
+ */
+final class IncrementalMultiReportOutput implements IMultiReportOutput {
+
+    static final String INDEX_FILE_NAME = "jacoco-html.index";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final File directory;
+    private final ReportMetrics metrics;
+    private final Map<String, String> previousHashes;
+    private final Map<String, String> hashes = Collections.synchronizedMap(new TreeMap<String, String>());
+
+    /**
+     * @param directory
+     *            the output directory of the report
+     * @param metrics
+     *            the metrics that the written, unchanged and deleted files are counted in
+     */
+    IncrementalMultiReportOutput(final File directory, final ReportMetrics metrics) {
+        this.directory = directory;
+        this.metrics = metrics;
+        this.previousHashes = readIndex(new File(directory, INDEX_FILE_NAME));
+    }
+
+    @Override
+    public OutputStream createFile(final String path) {
+        return new PageOutputStream(path);
+    }
+
+    /**
+     * Removes the files of the last report that have not been written again and replaces the index.
+     */
+    @Override
+    public void close() throws IOException {
+        for (final String path : previousHashes.keySet()) {
+            if (!hashes.containsKey(path)) {
+                delete(new File(directory, path));
+                metrics.add("report.html.filesDeleted", 1);
+            }
+        }
+        writeIndex(new File(directory, INDEX_FILE_NAME));
+    }
+
+    private void writeIfChanged(final String path, final byte[] content, final int length) throws IOException {
+        final String hash = hash(content, length);
+        final File file = new File(directory, path);
+        if (hash.equals(previousHashes.get(path)) && file.length() == length && file.isFile()) {
+            metrics.add("report.html.filesUnchanged", 1);
+        } else {
+            file.getParentFile().mkdirs();
+            try (OutputStream out = new FileOutputStream(file)) {
+                out.write(content, 0, length);
+            }
+            metrics.add("report.html.filesWritten", 1);
+        }
+        hashes.put(path, hash);
+    }
+
+    /**
+     * Deletes a file and the directories that it leaves empty, up to the output directory.
+     */
+    private void delete(final File file) {
+        File deleted = file;
+        while (deleted.delete()) {
+            deleted = deleted.getParentFile();
+            if (deleted == null || deleted.equals(directory)) {
+                break;
+            }
+        }
+    }
+
+    private static Map<String, String> readIndex(final File indexFile) {
+        final Map<String, String> index = new HashMap<String, String>();
+        if (!indexFile.isFile()) {
+            return index;
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(indexFile), UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final int separator = line.indexOf(' ');
+                if (separator > 0) {
+                    index.put(line.substring(separator + 1), line.substring(0, separator));
+                }
+            }
+        } catch (final IOException e) {
+            // an unreadable index only means that every file is written again
+            index.clear();
+        }
+        return index;
+    }
+
+    private void writeIndex(final File indexFile) throws IOException {
+        directory.mkdirs();
+        final File tempFile = File.createTempFile("jacoco-html", ".tmp", directory);
+        try {
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tempFile), UTF_8))) {
+                synchronized (hashes) {
+                    for (final Map.Entry<String, String> entry : hashes.entrySet()) {
+                        writer.write(entry.getValue());
+                        writer.write(' ');
+                        writer.write(entry.getKey());
+                        writer.write('\n');
+                    }
+                }
+            }
+            Files.move(tempFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            tempFile.delete();
+        }
+    }
+
+    private static String hash(final byte[] content, final int length) {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is not supported by this JVM", e);
+        }
+        digest.update(content, 0, length);
+        final StringBuilder value = new StringBuilder();
+        for (final byte b : digest.digest()) {
+            value.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return value.toString();
+    }
+
+    /**
+     * Holds the content of a file in memory until it is closed, so that it can be compared before anything is written.
+     */
+    private final class PageOutputStream extends ByteArrayOutputStream {
+        private final String path;
+        private boolean closed;
+
+        PageOutputStream(final String path) {
+            super(8192);
+            this.path = path;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!closed) {
+                closed = true;
+                writeIfChanged(path, buf, count);
+            }
+        }
+    }
+}
@@ -0,0 +1,248 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2013 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Evgeny Mandrikov - initial API and implementation
+ *    Kyle Lieber - implementation of CheckMojo
+ * 
+ *******************************************************************************/
+package timezra.maven.jacoco.scala;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jacoco.core.data.ExecutionDataReader;
+import org.jacoco.core.data.ExecutionDataWriter;
+import org.jacoco.core.data.ISessionInfoVisitor;
+import org.jacoco.core.data.SessionInfo;
+import org.jacoco.core.data.SessionInfoStore;
+
+/**
+ * Loads several execution data files into one ProbeStore and SessionInfoStore. The files are read concurrently and
+ * every record is merged into the stores as soon as it is read, so the probes of a class are OR-ed together without
+ * building a store per file or writing a merged file. The probes are packed into long words as they are read, without
+ * an intermediate boolean array. When the ids of the analyzed classes are known, the records of all other classes are
+ * skipped without decoding their probes. The records may also be kept apart by the session that they were recorded in,
+ * with one store per session id.
+ */
+final class MergingExecFileLoader {
+
+    private final int threadCount;
+    private final Set<Long> classIds;
+    private final AtomicLong skipped = new AtomicLong();
+    private final ProbeStore probeStore = new ProbeStore();
+    private final SessionInfoStore sessionInfoStore = new SessionInfoStore();
+    private final boolean splitBySession;
+    private final Map<String, ProbeStore> sessionStores = new TreeMap<String, ProbeStore>();
+
+    /**
+     * @param threadCount
+     *            the maximum number of files read at the same time
+     */
+    MergingExecFileLoader(final int threadCount) {
+        this(threadCount, null);
+    }
+
+    /**
+     * @param threadCount
+     *            the maximum number of files read at the same time
+     * @param classIds
+     *            the ids of the classes to keep the execution data of, or <code>null</code> to keep all of it
+     */
+    MergingExecFileLoader(final int threadCount, final Set<Long> classIds) {
+        this(threadCount, classIds, false);
+    }
+
+    /**
+     * @param threadCount
+     *            the maximum number of files read at the same time
+     * @param classIds
+     *            the ids of the classes to keep the execution data of, or <code>null</code> to keep all of it
+     * @param splitBySession
+     *            whether the records are merged into one store per session id instead of a single store
+     */
+    MergingExecFileLoader(final int threadCount, final Set<Long> classIds, final boolean splitBySession) {
+        this.threadCount = threadCount;
+        this.classIds = classIds;
+        this.splitBySession = splitBySession;
+    }
+
+    /**
+     * Reads the given files into the stores.
+     * 
+     * @param files
+     *            the execution data files
+     * @throws IOException
+     *             if one of the files can't be read
+     */
+    void load(final List<File> files) throws IOException {
+        final List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(files.size());
+        for (final File file : files) {
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() throws IOException {
+                    load(file);
+                    return null;
+                }
+            });
+        }
+        ConcurrentTasks.invokeAll(threadCount, tasks);
+    }
+
+    private void load(final File file) throws IOException {
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+            final RecordVisitor visitor = new RecordVisitor();
+            final ExecutionDataReader reader = new PackingExecutionDataReader(in, visitor);
+            reader.setSessionInfoVisitor(visitor);
+            reader.read();
+        } catch (final IOException e) {
+            throw new IOException("Unable to read execution data file " + file + ": " + e.getMessage(), e);
+        }
+    }
+
+    ProbeStore getProbeStore() {
+        return probeStore;
+    }
+
+    SessionInfoStore getSessionInfoStore() {
+        return sessionInfoStore;
+    }
+
+    /**
+     * @return the stores with the records of each session, sorted by session id, if the records are split by session;
+     *         records that precede every session header are kept under the empty id
+     */
+    Map<String, ProbeStore> getSessionProbeStores() {
+        final Map<String, ProbeStore> stores = new TreeMap<String, ProbeStore>();
+        synchronized (sessionStores) {
+            for (final Map.Entry<String, ProbeStore> entry : sessionStores.entrySet()) {
+                if (!entry.getValue().isEmpty()) {
+                    stores.put(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+        return stores;
+    }
+
+    private ProbeStore getSessionStore(final String sessionId) {
+        synchronized (sessionStores) {
+            ProbeStore store = sessionStores.get(sessionId);
+            if (store == null) {
+                store = new ProbeStore();
+                sessionStores.put(sessionId, store);
+            }
+            return store;
+        }
+    }
+
+    /**
+     * Merges the records of one file into the store of the session that they follow, or into the single store.
+     */
+    private final class RecordVisitor implements ISessionInfoVisitor {
+        private ProbeStore store = splitBySession ? getSessionStore("") : probeStore;
+
+        @Override
+        public void visitSessionInfo(final SessionInfo info) {
+            synchronized (sessionInfoStore) {
+                sessionInfoStore.visitSessionInfo(info);
+            }
+            if (splitBySession) {
+                store = getSessionStore(info.getId());
+            }
+        }
+
+        void visitProbes(final long id, final String name, final long[] words, final int probeCount) {
+            synchronized (store) {
+                store.put(id, name, words, probeCount);
+            }
+        }
+    }
+
+    /**
+     * @return the estimated heap size of the loaded execution data in bytes
+     */
+    long estimateSize() {
+        long estimatedSize = probeStore.estimateSize();
+        synchronized (sessionStores) {
+            for (final ProbeStore store : sessionStores.values()) {
+                estimatedSize += store.estimateSize();
+            }
+        }
+        return estimatedSize;
+    }
+
+    /**
+     * @return the number of execution data records that were skipped because their class is not analyzed
+     */
+    long getSkippedCount() {
+        return skipped.get();
+    }
+
+    /**
+     * Reads the probes of every execution data record straight into long words: the file stores eight probes per
+     * byte, lowest bit first, so eight bytes make a word. When the ids of the analyzed classes are known, the id of a
+     * record is read first and the rest of the records of other classes is skipped in the stream.
+     */
+    private final class PackingExecutionDataReader extends ExecutionDataReader {
+        private final RecordVisitor visitor;
+
+        PackingExecutionDataReader(final InputStream input, final RecordVisitor visitor) {
+            super(input);
+            this.visitor = visitor;
+        }
+
+        @Override
+        protected boolean readBlock(final byte blocktype) throws IOException {
+            if (blocktype != ExecutionDataWriter.BLOCK_EXECUTIONDATA) {
+                return super.readBlock(blocktype);
+            }
+            final long id = in.readLong();
+            if (classIds == null || classIds.contains(Long.valueOf(id))) {
+                final String name = in.readUTF();
+                final int probeCount = in.readVarInt();
+                visitor.visitProbes(id, name, readWords(probeCount), probeCount);
+            } else {
+                skipFully(in.readUnsignedShort());
+                skipFully((in.readVarInt() + 7) / 8);
+                skipped.incrementAndGet();
+            }
+            return true;
+        }
+
+        private long[] readWords(final int probeCount) throws IOException {
+            final long[] words = new long[ProbeStore.wordCount(probeCount)];
+            final int byteCount = (probeCount + 7) / 8;
+            for (int i = 0; i < byteCount; i++) {
+                words[i >>> 3] |= (in.readByte() & 0xFFL) << ((i & 7) << 3);
+            }
+            return words;
+        }
+
+        private void skipFully(final int length) throws IOException {
+            int remaining = length;
+            while (remaining > 0) {
+                final int count = in.skipBytes(remaining);
+                if (count <= 0) {
+                    in.readByte();
+                    remaining--;
+                } else {
+                    remaining -= count;
+                }
+            }
+        }
+    }
+}
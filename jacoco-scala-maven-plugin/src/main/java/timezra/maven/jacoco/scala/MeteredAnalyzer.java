@@ -0,0 +1,71 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2013 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Evgeny Mandrikov - initial API and implementation
+ *    Kyle Lieber - implementation of CheckMojo
+ * 
+ *******************************************************************************/
+package timezra.maven.jacoco.scala;
+
+import org.jacoco.core.analysis.Analyzer;
+import org.jacoco.core.analysis.ICoverageVisitor;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.objectweb.asm.ClassReader;
+
+/**
+ * An Analyzer that records the number and size of the analyzed classes and splits the time spent on them into parsing
+ * and analyzing them (createBundle.parsing) and applying filters (createBundle.filtering). An instance is used by a
+ * single thread.
+ */
+class MeteredAnalyzer extends Analyzer {
+
+    private final ReportMetrics metrics;
+    private long filteringNanos;
+
+    MeteredAnalyzer(final ExecutionDataStore executionData, final ICoverageVisitor coverageVisitor,
+            final ReportMetrics metrics) {
+        super(executionData, coverageVisitor);
+        this.metrics = metrics;
+    }
+
+    @Override
+    public final void analyzeClass(final ClassReader reader) {
+        final long filteringBefore = filteringNanos;
+        final long start = System.nanoTime();
+        try {
+            analyze(reader);
+        } finally {
+            final long nanos = System.nanoTime() - start;
+            final long filtering = filteringNanos - filteringBefore;
+            metrics.addTime("createBundle.parsing", nanos - filtering);
+            if (filtering > 0) {
+                metrics.addTime("createBundle.filtering", filtering);
+            }
+            metrics.add("classes", 1);
+            metrics.add("classBytes", reader.b.length);
+        }
+    }
+
+    /**
+     * Analyzes a class.
+     * 
+     * @param reader
+     *            the reader of the class
+     */
+    protected void analyze(final ClassReader reader) {
+        super.analyzeClass(reader);
+    }
+
+    /**
+     * @param nanos
+     *            time spent in filters while analyzing the current class
+     */
+    protected void addFilteringTime(final long nanos) {
+        filteringNanos += nanos;
+    }
+}
@@ -0,0 +1,41 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2013 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Evgeny Mandrikov - initial API and implementation
+ *    Kyle Lieber - implementation of CheckMojo
+ * 
+ *******************************************************************************/
+package timezra.maven.jacoco.scala;
+
+import java.util.Collection;
+
+import org.jacoco.core.analysis.IMethodCoverage;
+
+/**
+ * Removes methods from the coverage of a class after all of its methods have been analyzed. Use this for decisions that
+ * need to look at several methods of the class at once, such as comparing the first line of a method with the lines of
+ * the constructors. A filter that can decide from the name, descriptor and access flags of a single method should be a
+ * {@link MethodSignatureFilter} instead, so the method is never analyzed.
+ * <p>
+ * The given coverages carry no execution data: the result of a filter may only depend on the structure of the methods
+ * (names, descriptors, lines and counter totals), because it is cached and applied to the execution data of later
+ * builds.
+ * </p>
+ * Implementations are configured by their fully qualified class name in the <code>filters</code> parameter, must have
+ * a public no-argument constructor and must be thread-safe.
+ */
+public interface MethodCoverageFilter {
+
+    /**
+     * @param methodCoverages
+     *            the analyzed methods of a class that contain code; the collection is reused for the next class, so
+     *            it must not be kept after the call
+     * @return the methods to keep in the report, which may be the given collection itself if nothing is removed
+     */
+    Collection<IMethodCoverage> filter(final Collection<IMethodCoverage> methodCoverages);
+}
@@ -0,0 +1,38 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2013 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Evgeny Mandrikov - initial API and implementation
+ *    Kyle Lieber - implementation of CheckMojo
+ * 
+ *******************************************************************************/
+package timezra.maven.jacoco.scala;
+
+/**
+ * Excludes methods from the report before they are analyzed. The decision is made from the method declaration alone, so
+ * an excluded method costs no instruction analysis. A filter that has to look at several methods of the class should be
+ * a {@link MethodCoverageFilter} instead.
+ * <p>
+ * Implementations are configured by their fully qualified class name in the <code>filters</code> parameter, must have a
+ * public no-argument constructor and must be thread-safe.
+ * </p>
+ */
+public interface MethodSignatureFilter {
+
+    /**
+     * @param access
+     *            the access flags of the method (see org.objectweb.asm.Opcodes)
+     * @param name
+     *            the name of the method
+     * @param desc
+     *            the descriptor of the method
+     * @param signature
+     *            the generic signature of the method, may be <code>null</code>
+     * @return <code>true</code> if the method should not be in the report
+     */
+    boolean excludes(final int access, final String name, final String desc, final String signature);
+}
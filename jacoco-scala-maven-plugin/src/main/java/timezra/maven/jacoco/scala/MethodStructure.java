@@ -0,0 +1,164 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2013 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Evgeny Mandrikov - initial API and implementation
+ *    Kyle Lieber - implementation of CheckMojo
+ * 
+ *******************************************************************************/
+package timezra.maven.jacoco.scala;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.jacoco.core.analysis.ICounter;
+import org.jacoco.core.analysis.IMethodCoverage;
+import org.jacoco.core.internal.analysis.CounterImpl;
+import org.jacoco.core.internal.analysis.MethodCoverageImpl;
+
+/**
+ * The probe-independent result of analyzing a method: the line and branch count of every instruction, the predecessor
+ * that coverage flows back to, and the instructions that each probe marks as executed. Applying a probe array to it
+ * yields the same IMethodCoverage as the JaCoCo MethodAnalyzer.
+ */
+final class MethodStructure {
+
+    private static final int NO_INSTRUCTION = -1;
+
+    private final String name;
+    private final String desc;
+    private final String signature;
+    private final int firstLine;
+    private final int lastLine;
+    private final int[] lines;
+    private final int[] branches;
+    private final int[] predecessors;
+    private final int[] probeIds;
+    private final int[] probeInstructions;
+
+    MethodStructure(final String name, final String desc, final String signature, final int firstLine,
+            final int lastLine, final int[] lines, final int[] branches, final int[] predecessors, final int[] probeIds,
+            final int[] probeInstructions) {
+        this.name = name;
+        this.desc = desc;
+        this.signature = signature;
+        this.firstLine = firstLine;
+        this.lastLine = lastLine;
+        this.lines = lines;
+        this.branches = branches;
+        this.predecessors = predecessors;
+        this.probeIds = probeIds;
+        this.probeInstructions = probeInstructions;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    String getDesc() {
+        return desc;
+    }
+
+    /**
+     * @return the estimated heap size of this structure in bytes, not counting the pooled names
+     */
+    long estimateSize() {
+        return 48 + 5 * 16 + 4L * (lines.length + branches.length + predecessors.length + probeIds.length
+                + probeInstructions.length);
+    }
+
+    int getInstructionCount() {
+        return lines.length;
+    }
+
+    /**
+     * Creates the coverage of this method for the given probes.
+     * 
+     * @param probes
+     *            the probes of the class packed into long words, or <code>null</code> if the class was not executed
+     * @return the coverage of this method
+     */
+    IMethodCoverage createCoverage(final long[] probes) {
+        final MethodCoverageImpl coverage = new MethodCoverageImpl(name, desc, signature);
+        final int[] coveredBranches = new int[lines.length];
+        if (probes != null) {
+            for (int i = 0; i < probeIds.length; i++) {
+                if (ProbeStore.isCovered(probes, probeIds[i])) {
+                    setCovered(coveredBranches, probeInstructions[i]);
+                }
+            }
+        }
+        coverage.ensureCapacity(firstLine, lastLine);
+        for (int i = 0; i < lines.length; i++) {
+            final int total = branches[i];
+            final int covered = coveredBranches[i];
+            final ICounter instructionCounter = covered == 0 ? CounterImpl.COUNTER_1_0 : CounterImpl.COUNTER_0_1;
+            final ICounter branchCounter = total > 1 ? CounterImpl.getInstance(total - covered, covered)
+                    : CounterImpl.COUNTER_0_0;
+            coverage.increment(instructionCounter, branchCounter, lines[i]);
+        }
+        coverage.incrementMethodCounter();
+        return coverage;
+    }
+
+    private void setCovered(final int[] coveredBranches, final int instruction) {
+        int i = instruction;
+        while (i != NO_INSTRUCTION && coveredBranches[i]++ == 0) {
+            i = predecessors[i];
+        }
+    }
+
+    void write(final DataOutput out) throws IOException {
+        out.writeUTF(name);
+        out.writeUTF(desc);
+        writeNullable(out, signature);
+        out.writeInt(firstLine);
+        out.writeInt(lastLine);
+        writeInts(out, lines);
+        writeInts(out, branches);
+        writeInts(out, predecessors);
+        writeInts(out, probeIds);
+        writeInts(out, probeInstructions);
+    }
+
+    static MethodStructure read(final DataInput in, final SharedStringPool stringPool) throws IOException {
+        final String name = stringPool.get(in.readUTF());
+        final String desc = stringPool.get(in.readUTF());
+        final String signature = stringPool.get(readNullable(in));
+        final int firstLine = in.readInt();
+        final int lastLine = in.readInt();
+        return new MethodStructure(name, desc, signature, firstLine, lastLine, readInts(in), readInts(in),
+                readInts(in), readInts(in), readInts(in));
+    }
+
+    static void writeNullable(final DataOutput out, final String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    static String readNullable(final DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeInts(final DataOutput out, final int[] values) throws IOException {
+        out.writeInt(values.length);
+        for (final int value : values) {
+            out.writeInt(value);
+        }
+    }
+
+    private static int[] readInts(final DataInput in) throws IOException {
+        final int[] values = new int[in.readInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = in.readInt();
+        }
+        return values;
+    }
+}
@@ -0,0 +1,300 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2013 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Evgeny Mandrikov - initial API and implementation
+ *    Kyle Lieber - implementation of CheckMojo
+ * 
+ *******************************************************************************/
+package timezra.maven.jacoco.scala;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jacoco.core.internal.flow.LabelInfo;
+import org.jacoco.core.internal.flow.MethodProbesVisitor;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Label;
+
+/**
+ * Records the MethodStructure of a method. This follows the JaCoCo MethodAnalyzer step by step, but refers to
+ * instructions by index instead of evaluating the probes, so the result can be kept and applied to any execution data.
+ * An analyzer can be reset and reused for the next method, so its buffers are only grown and never allocated again.
+ */
+class MethodStructureAnalyzer extends MethodProbesVisitor {
+
+    private static final int NO_INSTRUCTION = -1;
+
+    private String name;
+    private String desc;
+    private String signature;
+
+    private int currentLine;
+    private int firstLine;
+    private int lastLine;
+
+    private final List<Label> currentLabel = new ArrayList<Label>(2);
+    private final Map<Label, Integer> labelInstructions = new HashMap<Label, Integer>();
+    private final List<Label> jumpTargets = new ArrayList<Label>();
+
+    private int[] lines = new int[16];
+    private int[] branches = new int[16];
+    private int[] predecessors = new int[16];
+    private int instructionCount;
+
+    private int[] jumpSources = new int[4];
+    private int[] probeIds = new int[4];
+    private int[] probeInstructions = new int[4];
+    private int probeCount;
+
+    private int lastInsn;
+
+    private MethodStructure structure;
+
+    /**
+     * Prepares this analyzer for the next method. It has to be called before each method is visited.
+     * 
+     * @param name
+     *            the name of the method
+     * @param desc
+     *            the descriptor of the method
+     * @param signature
+     *            the generic signature of the method, may be <code>null</code>
+     */
+    void reset(final String name, final String desc, final String signature) {
+        this.name = name;
+        this.desc = desc;
+        this.signature = signature;
+        currentLine = -1;
+        firstLine = -1;
+        lastLine = -1;
+        currentLabel.clear();
+        labelInstructions.clear();
+        jumpTargets.clear();
+        instructionCount = 0;
+        probeCount = 0;
+        lastInsn = NO_INSTRUCTION;
+        structure = null;
+    }
+
+    /**
+     * @return the structure of the method, available once the method has been visited
+     */
+    MethodStructure getStructure() {
+        return structure;
+    }
+
+    @Override
+    public void visitLabel(final Label label) {
+        currentLabel.add(label);
+        if (!LabelInfo.isSuccessor(label)) {
+            lastInsn = NO_INSTRUCTION;
+        }
+    }
+
+    @Override
+    public void visitLineNumber(final int line, final Label start) {
+        currentLine = line;
+        if (firstLine > line || lastLine == -1) {
+            firstLine = line;
+        }
+        if (lastLine < line) {
+            lastLine = line;
+        }
+    }
+
+    private void visitInsn() {
+        if (instructionCount == lines.length) {
+            lines = Arrays.copyOf(lines, instructionCount * 2);
+            branches = Arrays.copyOf(branches, instructionCount * 2);
+            predecessors = Arrays.copyOf(predecessors, instructionCount * 2);
+        }
+        final int insn = instructionCount++;
+        lines[insn] = currentLine;
+        branches[insn] = 0;
+        predecessors[insn] = NO_INSTRUCTION;
+        if (lastInsn != NO_INSTRUCTION) {
+            setPredecessor(insn, lastInsn);
+        }
+        final int labelCount = currentLabel.size();
+        if (labelCount > 0) {
+            final Integer instruction = Integer.valueOf(insn);
+            for (int i = labelCount; --i >= 0;) {
+                labelInstructions.put(currentLabel.get(i), instruction);
+            }
+            currentLabel.clear();
+        }
+        lastInsn = insn;
+    }
+
+    private void setPredecessor(final int insn, final int predecessor) {
+        predecessors[insn] = predecessor;
+        branches[predecessor]++;
+    }
+
+    private void addJump(final Label target) {
+        if (jumpTargets.size() == jumpSources.length) {
+            jumpSources = Arrays.copyOf(jumpSources, jumpSources.length * 2);
+        }
+        jumpSources[jumpTargets.size()] = lastInsn;
+        jumpTargets.add(target);
+    }
+
+    private void addProbe(final int probeId) {
+        branches[lastInsn]++;
+        if (probeCount == probeIds.length) {
+            probeIds = Arrays.copyOf(probeIds, probeCount * 2);
+            probeInstructions = Arrays.copyOf(probeInstructions, probeCount * 2);
+        }
+        probeIds[probeCount] = probeId;
+        probeInstructions[probeCount] = lastInsn;
+        probeCount++;
+    }
+
+    @Override
+    public void visitInsn(final int opcode) {
+        visitInsn();
+    }
+
+    @Override
+    public void visitIntInsn(final int opcode, final int operand) {
+        visitInsn();
+    }
+
+    @Override
+    public void visitVarInsn(final int opcode, final int var) {
+        visitInsn();
+    }
+
+    @Override
+    public void visitTypeInsn(final int opcode, final String type) {
+        visitInsn();
+    }
+
+    @Override
+    public void visitFieldInsn(final int opcode, final String owner, final String name, final String desc) {
+        visitInsn();
+    }
+
+    @Override
+    public void visitMethodInsn(final int opcode, final String owner, final String name, final String desc) {
+        visitInsn();
+    }
+
+    @Override
+    public void visitInvokeDynamicInsn(final String name, final String desc, final Handle bsm,
+            final Object... bsmArgs) {
+        visitInsn();
+    }
+
+    @Override
+    public void visitJumpInsn(final int opcode, final Label label) {
+        visitInsn();
+        addJump(label);
+    }
+
+    @Override
+    public void visitLdcInsn(final Object cst) {
+        visitInsn();
+    }
+
+    @Override
+    public void visitIincInsn(final int var, final int increment) {
+        visitInsn();
+    }
+
+    @Override
+    public void visitTableSwitchInsn(final int min, final int max, final Label dflt, final Label... labels) {
+        visitSwitchInsn(dflt, labels);
+    }
+
+    @Override
+    public void visitLookupSwitchInsn(final Label dflt, final int[] keys, final Label[] labels) {
+        visitSwitchInsn(dflt, labels);
+    }
+
+    private void visitSwitchInsn(final Label dflt, final Label[] labels) {
+        visitInsn();
+        LabelInfo.resetDone(labels);
+        addJump(dflt);
+        LabelInfo.setDone(dflt);
+        for (final Label l : labels) {
+            if (!LabelInfo.isDone(l)) {
+                addJump(l);
+                LabelInfo.setDone(l);
+            }
+        }
+    }
+
+    @Override
+    public void visitMultiANewArrayInsn(final String desc, final int dims) {
+        visitInsn();
+    }
+
+    @Override
+    public void visitProbe(final int probeId) {
+        addProbe(probeId);
+        lastInsn = NO_INSTRUCTION;
+    }
+
+    @Override
+    public void visitJumpInsnWithProbe(final int opcode, final Label label, final int probeId) {
+        visitInsn();
+        addProbe(probeId);
+    }
+
+    @Override
+    public void visitInsnWithProbe(final int opcode, final int probeId) {
+        visitInsn();
+        addProbe(probeId);
+    }
+
+    @Override
+    public void visitTableSwitchInsnWithProbes(final int min, final int max, final Label dflt, final Label[] labels) {
+        visitSwitchInsnWithProbes(dflt, labels);
+    }
+
+    @Override
+    public void visitLookupSwitchInsnWithProbes(final Label dflt, final int[] keys, final Label[] labels) {
+        visitSwitchInsnWithProbes(dflt, labels);
+    }
+
+    private void visitSwitchInsnWithProbes(final Label dflt, final Label[] labels) {
+        visitInsn();
+        LabelInfo.resetDone(dflt);
+        LabelInfo.resetDone(labels);
+        visitSwitchTarget(dflt);
+        for (final Label l : labels) {
+            visitSwitchTarget(l);
+        }
+    }
+
+    private void visitSwitchTarget(final Label label) {
+        final int id = LabelInfo.getProbeId(label);
+        if (!LabelInfo.isDone(label)) {
+            if (id == LabelInfo.NO_PROBE) {
+                addJump(label);
+            } else {
+                addProbe(id);
+            }
+            LabelInfo.setDone(label);
+        }
+    }
+
+    @Override
+    public void visitEnd() {
+        for (int i = 0; i < jumpTargets.size(); i++) {
+            setPredecessor(labelInstructions.get(jumpTargets.get(i)).intValue(), jumpSources[i]);
+        }
+        structure = new MethodStructure(name, desc, signature, firstLine, lastLine, Arrays.copyOf(lines,
+                instructionCount), Arrays.copyOf(branches, instructionCount), Arrays.copyOf(predecessors,
+                instructionCount), Arrays.copyOf(probeIds, probeCount), Arrays.copyOf(probeInstructions, probeCount));
+    }
+}
@@ -0,0 +1,89 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2013 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Evgeny Mandrikov - initial API and implementation
+ *    Kyle Lieber - implementation of CheckMojo
+ * 
+ *******************************************************************************/
+package timezra.maven.jacoco.scala;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+import org.jacoco.core.analysis.IMethodCoverage;
+
+/**
+ * SCALAC.MIXIN: removes the forwarders that scalac generates for methods mixed in from traits. They are recognized by
+ * starting on the same line as a constructor.
+ */
+final class MixinFilter implements MethodCoverageFilter {
+    @Override
+    public Collection<IMethodCoverage> filter(final Collection<IMethodCoverage> methodCoverages) {
+        final int[] constructorLines = constructorLines(methodCoverages);
+        if (!containsMixin(methodCoverages, constructorLines)) {
+            return methodCoverages;
+        }
+        final Collection<IMethodCoverage> filtered = new ArrayList<IMethodCoverage>(methodCoverages.size());
+        for (final IMethodCoverage methodCoverage : methodCoverages) {
+            if (!isMixin(methodCoverage, constructorLines)) {
+                filtered.add(methodCoverage);
+            }
+        }
+        return filtered;
+    }
+
+    /**
+     * A class rarely has more than a few constructors, so their lines are kept in a plain array instead of a set of
+     * boxed integers.
+     */
+    private int[] constructorLines(final Collection<IMethodCoverage> methodCoverages) {
+        int count = 0;
+        for (final IMethodCoverage methodCoverage : methodCoverages) {
+            if (isConstructor(methodCoverage)) {
+                count++;
+            }
+        }
+        final int[] constructorLines = new int[count];
+        int i = 0;
+        for (final IMethodCoverage methodCoverage : methodCoverages) {
+            if (isConstructor(methodCoverage)) {
+                constructorLines[i++] = methodCoverage.getFirstLine();
+            }
+        }
+        return constructorLines;
+    }
+
+    private boolean containsMixin(final Collection<IMethodCoverage> methodCoverages, final int[] constructorLines) {
+        if (constructorLines.length == 0) {
+            return false;
+        }
+        for (final IMethodCoverage methodCoverage : methodCoverages) {
+            if (isMixin(methodCoverage, constructorLines)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isMixin(final IMethodCoverage methodCoverage, final int[] constructorLines) {
+        if (isConstructor(methodCoverage)) {
+            return false;
+        }
+        final int firstLine = methodCoverage.getFirstLine();
+        for (final int constructorLine : constructorLines) {
+            if (constructorLine == firstLine) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isConstructor(final IMethodCoverage methodCoverage) {
+        return "<init>".equals(methodCoverage.getName());
+    }
+}
@@ -0,0 +1,30 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2013 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Evgeny Mandrikov - initial API and implementation
+ *    Kyle Lieber - implementation of CheckMojo
+ * 
+ *******************************************************************************/
+package timezra.maven.jacoco.scala;
+
+/**
+ * SCALAC.PACKAGE: excludes package objects, i.e. the classes <code>package</code> and <code>package$</code> that scalac
+ * generates for the definitions of a <code>package object</code>.
+ */
+final class PackageObjectFilter implements ClassFilter {
+
+    private static final String PACKAGE = "package";
+
+    @Override
+    public boolean excludes(final String name) {
+        final int simpleName = name.lastIndexOf('/') + 1;
+        final int length = name.length() - simpleName;
+        return name.startsWith(PACKAGE, simpleName)
+                && (length == PACKAGE.length() || length == PACKAGE.length() + 1 && name.endsWith("$"));
+    }
+}
@@ -0,0 +1,192 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2013 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Evgeny Mandrikov - initial API and implementation
+ *    Kyle Lieber - implementation of CheckMojo
+ * 
+ *******************************************************************************/
+package timezra.maven.jacoco.scala;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataStore;
+
+/**
+ * Execution data with the probes of each class packed into long words, 64 probes per word instead of a byte per probe
+ * as in an ExecutionData. Probe <code>p</code> is bit <code>p &amp; 63</code> of word <code>p &gt;&gt;&gt; 6</code>,
+ * which is the order that execution data files store the probes in, so records are packed straight from the file and
+ * merged by OR-ing them word by word. A store is not thread-safe.
+ */
+final class ProbeStore {
+
+    private static final boolean[] NO_PROBES = new boolean[0];
+
+    private final Map<Long, Entry> entries = new HashMap<Long, Entry>();
+    private ExecutionDataStore executionDataStore;
+
+    /**
+     * @param executionDataStore
+     *            the execution data to pack
+     * @return a store with the probes of the given execution data
+     */
+    static ProbeStore of(final ExecutionDataStore executionDataStore) {
+        final ProbeStore store = new ProbeStore();
+        for (final ExecutionData data : executionDataStore.getContents()) {
+            store.put(data.getId(), data.getName(), pack(data.getProbes()), data.getProbes().length);
+        }
+        store.executionDataStore = executionDataStore;
+        return store;
+    }
+
+    /**
+     * @param probes
+     *            the probes of a class
+     * @return the probes packed into long words
+     */
+    static long[] pack(final boolean[] probes) {
+        final long[] words = new long[wordCount(probes.length)];
+        for (int i = 0; i < probes.length; i++) {
+            if (probes[i]) {
+                words[i >>> 6] |= 1L << i;
+            }
+        }
+        return words;
+    }
+
+    /**
+     * @param probeCount
+     *            the number of probes of a class
+     * @return the number of words that hold the probes
+     */
+    static int wordCount(final int probeCount) {
+        return (probeCount + 63) >>> 6;
+    }
+
+    /**
+     * @param words
+     *            the packed probes of a class
+     * @param probe
+     *            the id of a probe
+     * @return <code>true</code> if the probe was executed
+     */
+    static boolean isCovered(final long[] words, final int probe) {
+        return (words[probe >>> 6] & 1L << probe) != 0;
+    }
+
+    /**
+     * Adds the probes of a class, or merges them into the probes that the store has for the class.
+     * 
+     * @param id
+     *            the id of the class
+     * @param name
+     *            the VM name of the class
+     * @param words
+     *            the packed probes, kept by the store if it has no probes for the class yet
+     * @param probeCount
+     *            the number of probes
+     * @throws IllegalStateException
+     *             if the store has probes of a class with the same id but another name or number of probes
+     */
+    void put(final long id, final String name, final long[] words, final int probeCount) {
+        final Long key = Long.valueOf(id);
+        final Entry entry = entries.get(key);
+        if (entry == null) {
+            entries.put(key, new Entry(name, words, probeCount));
+            executionDataStore = null;
+            return;
+        }
+        if (!entry.name.equals(name)) {
+            throw new IllegalStateException(String.format("Different class names %s and %s for id %016x.",
+                    entry.name, name, Long.valueOf(id)));
+        }
+        if (entry.probeCount != probeCount) {
+            throw new IllegalStateException(String.format("Incompatible execution data for class %s with id %016x.",
+                    name, Long.valueOf(id)));
+        }
+        for (int i = 0; i < words.length; i++) {
+            entry.words[i] |= words[i];
+        }
+        executionDataStore = null;
+    }
+
+    /**
+     * @param id
+     *            the id of a class
+     * @return the packed probes of the class, or <code>null</code> if the store has no probes for it
+     */
+    long[] getProbes(final long id) {
+        final Entry entry = entries.get(Long.valueOf(id));
+        return entry == null ? null : entry.words;
+    }
+
+    boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    /**
+     * Returns the ids and names of the classes for the sessions page of a report. The ExecutionData carry no probes.
+     * 
+     * @return the classes that the store has probes for
+     */
+    Collection<ExecutionData> getContents() {
+        final List<ExecutionData> contents = new ArrayList<ExecutionData>(entries.size());
+        for (final Map.Entry<Long, Entry> entry : entries.entrySet()) {
+            contents.add(new ExecutionData(entry.getKey().longValue(), entry.getValue().name, NO_PROBES));
+        }
+        return contents;
+    }
+
+    /**
+     * Unpacks the probes for the Analyzer of JaCoCo. The unpacked store takes a byte per probe; it is created once and
+     * kept until the probes change.
+     * 
+     * @return the probes as an ExecutionDataStore
+     */
+    synchronized ExecutionDataStore toExecutionDataStore() {
+        if (executionDataStore == null) {
+            executionDataStore = new ExecutionDataStore();
+            for (final Map.Entry<Long, Entry> entry : entries.entrySet()) {
+                final Entry probes = entry.getValue();
+                final boolean[] unpacked = new boolean[probes.probeCount];
+                for (int i = 0; i < unpacked.length; i++) {
+                    unpacked[i] = isCovered(probes.words, i);
+                }
+                executionDataStore.put(new ExecutionData(entry.getKey().longValue(), probes.name, unpacked));
+            }
+        }
+        return executionDataStore;
+    }
+
+    /**
+     * @return the estimated heap size of the store in bytes, without an unpacked ExecutionDataStore
+     */
+    long estimateSize() {
+        long estimatedSize = 0;
+        for (final Entry entry : entries.values()) {
+            estimatedSize += 96 + 2 * entry.name.length() + 8L * entry.words.length;
+        }
+        return estimatedSize;
+    }
+
+    private static final class Entry {
+        private final String name;
+        private final long[] words;
+        private final int probeCount;
+
+        Entry(final String name, final long[] words, final int probeCount) {
+            this.name = name;
+            this.words = words;
+            this.probeCount = probeCount;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2013 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Evgeny Mandrikov - initial API and implementation
+ *    Kyle Lieber - implementation of CheckMojo
+ * 
+ *******************************************************************************/
+package timezra.maven.jacoco.scala;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import org.apache.maven.project.MavenProject;
+import org.jacoco.core.analysis.IBundleCoverage;
+import org.jacoco.report.IReportGroupVisitor;
+
+/**
+ * Creates one code coverage report for all modules of the reactor in multiple formats (HTML, XML, and CSV). The
+ * execution data of all modules is merged, so classes are also covered by the tests of other modules. Every module
+ * becomes a bundle of the report; the modules are analyzed concurrently if threadCount is greater than one. Run it
+ * after the modules have been built, e.g.
+ * <code>mvn verify timezra.maven:jacoco-scala-maven-plugin:report-aggregate</code>.
+ * 
+ * @goal report-aggregate
+ * @aggregator
+ * @requiresProject true
+ * @threadSafe
+ */
+public class ReportAggregateMojo extends AbstractReportMojo {
+
+    /**
+     * Output directory for the reports. Note that this parameter is only relevant if the goal is run from the command line
+     * or from the default build lifecycle. If the goal is run indirectly as part of a site generation, the output directory
+     * configured in the Maven Site Plugin is used instead.
+     * 
+     * @parameter default-value="${project.reporting.outputDirectory}/jacoco-aggregate"
+     */
+    private File outputDirectory;
+
+    /**
+     * Name of the file with execution data in the build directory of every module.
+     * 
+     * @parameter default-value="jacoco.exec"
+     */
+    private String dataFileName;
+
+    /**
+     * The projects in the reactor.
+     * 
+     * @parameter expression="${reactorProjects}"
+     * @required
+     * @readonly
+     */
+    private List<MavenProject> reactorProjects;
+
+    @Override
+    public String getOutputName() {
+        return "jacoco-aggregate/index";
+    }
+
+    @Override
+    public String getName(final Locale locale) {
+        return "JaCoCo Aggregate";
+    }
+
+    @Override
+    public String getDescription(final Locale locale) {
+        return "JaCoCo Test Coverage Report of all modules.";
+    }
+
+    @Override
+    protected String getOutputDirectory() {
+        return outputDirectory.getAbsolutePath();
+    }
+
+    @Override
+    public void setReportOutputDirectory(final File reportOutputDirectory) {
+        if (reportOutputDirectory != null && !reportOutputDirectory.getAbsolutePath().endsWith("jacoco-aggregate")) {
+            outputDirectory = new File(reportOutputDirectory, "jacoco-aggregate");
+        } else {
+            outputDirectory = reportOutputDirectory;
+        }
+    }
+
+    @Override
+    public boolean canGenerateReport() {
+        if (getReportProjects().isEmpty()) {
+            getLog().info("Skipping JaCoCo aggregation, no module has class files");
+            return false;
+        }
+        return super.canGenerateReport();
+    }
+
+    /**
+     * Returns the modules of the reactor that have class files, in reactor order.
+     */
+    @Override
+    protected List<MavenProject> getReportProjects() {
+        final List<MavenProject> modules = new ArrayList<MavenProject>();
+        for (final MavenProject module : reactorProjects) {
+            if (!"pom".equals(module.getPackaging())
+                    && resolvePath(module, module.getBuild().getOutputDirectory()).isDirectory()) {
+                modules.add(module);
+            }
+        }
+        return modules;
+    }
+
+    @Override
+    protected List<File> getDataFiles() {
+        final List<File> dataFiles = new ArrayList<File>();
+        for (final MavenProject module : reactorProjects) {
+            final File buildDirectory = resolvePath(module, module.getBuild().getDirectory());
+            dataFiles.addAll(getDataFiles(new File(buildDirectory, dataFileName), buildDirectory));
+        }
+        return dataFiles;
+    }
+
+    /**
+     * Every module keeps a cache of its own for this goal. It is not shared with the report goal of the module, as a
+     * cache only keeps the classes of the last report that wrote it, and the goals may analyze different classes.
+     */
+    @Override
+    protected File getAnalysisCacheDirectory(final MavenProject reportProject) {
+        return new File(resolvePath(reportProject, reportProject.getBuild().getDirectory()),
+                "jacoco-scala-aggregate-cache");
+    }
+
+    @Override
+    protected void createReport(final IReportGroupVisitor visitor, final List<MavenProject> reportProjects,
+            final List<IBundleCoverage> bundles) throws IOException {
+        final IReportGroupVisitor group = visitor.visitGroup(getProject().getName());
+        for (int i = 0; i < reportProjects.size(); i++) {
+            final IBundleCoverage bundle = bundles.get(i);
+            checkForMissingDebugInformation(bundle);
+            group.visitBundle(bundle, createSourceFileLocator(reportProjects.get(i)));
+        }
+    }
+}
@@ -0,0 +1,177 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2013 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Evgeny Mandrikov - initial API and implementation
+ *    Kyle Lieber - implementation of CheckMojo
+ * 
+ *******************************************************************************/
+package timezra.maven.jacoco.scala;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.security.CodeSource;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A SHA-1 digest of everything a report is created from: configuration values, the contents of the execution data,
+ * class and source files, and the location of the code that creates the report. Two equal fingerprints mean that the
+ * report would be written again byte for byte.
+ */
+final class ReportFingerprint {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final MessageDigest digest;
+    private final DataOutputStream out;
+    private final byte[] buffer = new byte[8192];
+
+    ReportFingerprint() {
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is not supported by this JVM", e);
+        }
+        out = new DataOutputStream(new DigestOutputStream(new NullOutputStream(), digest));
+    }
+
+    /**
+     * @param name
+     *            the name of the value
+     * @param value
+     *            the value, may be <code>null</code>
+     * @return this fingerprint
+     * @throws IOException
+     *             if the value can't be digested
+     */
+    ReportFingerprint add(final String name, final Object value) throws IOException {
+        out.writeUTF(name);
+        final byte[] bytes = String.valueOf(value).getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+        return this;
+    }
+
+    /**
+     * Adds the path and contents of the files, in the order of their paths.
+     * 
+     * @param name
+     *            the name of the group of files
+     * @param files
+     *            the files
+     * @return this fingerprint
+     * @throws IOException
+     *             if a file can't be read
+     */
+    ReportFingerprint addFiles(final String name, final List<File> files) throws IOException {
+        final List<String> paths = new ArrayList<String>(files.size());
+        for (final File file : files) {
+            paths.add(file.getAbsolutePath());
+        }
+        Collections.sort(paths);
+        add(name, Integer.valueOf(paths.size()));
+        for (final String path : paths) {
+            add(name, path);
+            addContent(new File(path));
+        }
+        return this;
+    }
+
+    /**
+     * Adds the location of the archive or directory a class is loaded from, which differs between versions of the
+     * plugin and of custom filters.
+     * 
+     * @param type
+     *            the class
+     * @return this fingerprint
+     * @throws IOException
+     *             if the value can't be digested
+     */
+    ReportFingerprint addLocation(final Class<?> type) throws IOException {
+        final CodeSource codeSource = type.getProtectionDomain().getCodeSource();
+        if (codeSource == null || codeSource.getLocation() == null) {
+            return add(type.getName(), null);
+        }
+        add(type.getName(), codeSource.getLocation());
+        try {
+            final File location = new File(codeSource.getLocation().toURI());
+            if (location.isFile()) {
+                out.writeLong(location.length());
+                out.writeLong(location.lastModified());
+            }
+        } catch (final URISyntaxException | IllegalArgumentException e) {
+            // not a file, the URL alone identifies it
+        }
+        return this;
+    }
+
+    private void addContent(final File file) throws IOException {
+        out.writeLong(file.length());
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+            }
+        }
+    }
+
+    /**
+     * @return the hexadecimal digest
+     */
+    String getValue() {
+        final StringBuilder value = new StringBuilder();
+        for (final byte b : digest.digest()) {
+            value.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return value.toString();
+    }
+
+    /**
+     * @param fingerprintFile
+     *            the file written by {@link #save(File, String)}
+     * @param value
+     *            the current fingerprint
+     * @return <code>true</code> if the file holds the given fingerprint
+     */
+    static boolean matches(final File fingerprintFile, final String value) {
+        if (!fingerprintFile.isFile()) {
+            return false;
+        }
+        try {
+            return value.equals(new String(Files.readAllBytes(fingerprintFile.toPath()), UTF_8).trim());
+        } catch (final IOException e) {
+            return false;
+        }
+    }
+
+    static void save(final File fingerprintFile, final String value) throws IOException {
+        Files.write(fingerprintFile.toPath(), value.getBytes(UTF_8));
+    }
+
+    private static final class NullOutputStream extends OutputStream {
+        @Override
+        public void write(final int b) {
+            // only the digest is needed
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) {
+            // only the digest is needed
+        }
+    }
+}
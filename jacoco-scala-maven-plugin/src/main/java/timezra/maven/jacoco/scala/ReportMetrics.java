@@ -0,0 +1,258 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2013 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Evgeny Mandrikov - initial API and implementation
+ *    Kyle Lieber - implementation of CheckMojo
+ * 
+ *******************************************************************************/
+package timezra.maven.jacoco.scala;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jacoco.core.analysis.IMethodCoverage;
+
+/**
+ * Wall times and counters of one report run. Times and counters may be added from several threads; the times of
+ * phases that run on several workers, such as the parts of createBundle, are the sum over all workers.
+ */
+final class ReportMetrics {
+
+    static final String FILE_NAME = "jacoco-metrics.json";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String REMOVED_METHODS = "methodsRemoved.";
+    private static final long HEAP_SAMPLE_MILLIS = 10;
+
+    private final Map<String, AtomicLong> times = new TreeMap<String, AtomicLong>();
+    private final Map<String, AtomicLong> counters = new TreeMap<String, AtomicLong>();
+    private final AtomicLong peakHeap = new AtomicLong();
+    private ScheduledExecutorService heapSampler;
+
+    /**
+     * Samples the used heap every few milliseconds until stopHeapTracking and keeps the largest sample. The peak usage
+     * of the memory pools is not used, as resetting it would disturb the other executions of a parallel build. The heap
+     * is shared by the whole JVM, so under -T the samples include the memory of the executions that run at the same time.
+     */
+    synchronized void startHeapTracking() {
+        if (heapSampler == null) {
+            sampleHeap();
+            heapSampler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                    final Thread thread = new Thread(runnable, "jacoco-scala-heap-sampler");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            heapSampler.scheduleAtFixedRate(new Runnable() {
+                @Override
+                public void run() {
+                    sampleHeap();
+                }
+            }, HEAP_SAMPLE_MILLIS, HEAP_SAMPLE_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stops sampling the heap. The largest sample so far is kept.
+     */
+    synchronized void stopHeapTracking() {
+        if (heapSampler != null) {
+            heapSampler.shutdownNow();
+            heapSampler = null;
+        }
+    }
+
+    /**
+     * @return the largest used heap of the JVM sampled since startHeapTracking, in bytes
+     */
+    long getPeakHeap() {
+        synchronized (this) {
+            if (heapSampler != null) {
+                sampleHeap();
+            }
+        }
+        return peakHeap.get();
+    }
+
+    private void sampleHeap() {
+        final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        final long used = memory.getHeapMemoryUsage().getUsed();
+        long peak;
+        do {
+            peak = peakHeap.get();
+        } while (used > peak && !peakHeap.compareAndSet(peak, used));
+    }
+
+    /**
+     * @param phase
+     *            the name of the phase
+     * @param nanos
+     *            the wall time spent in the phase, in nanoseconds
+     */
+    void addTime(final String phase, final long nanos) {
+        get(times, phase).addAndGet(nanos);
+    }
+
+    /**
+     * @param counter
+     *            the name of the counter
+     * @param amount
+     *            the amount to add to the counter
+     */
+    void add(final String counter, final long amount) {
+        get(counters, counter).addAndGet(amount);
+    }
+
+    long getTime(final String phase) {
+        return get(times, phase).get();
+    }
+
+    long getCount(final String counter) {
+        return get(counters, counter).get();
+    }
+
+    /**
+     * Wraps a filter so that the methods it excludes are counted as methodsRemoved.&lt;filterName&gt;. Methods of
+     * classes whose structure comes from the analysis cache are not counted, as they are not filtered again.
+     * 
+     * @param filterName
+     *            the name of the filter in the report configuration
+     * @param filter
+     *            the filter
+     * @return the counting filter
+     */
+    MethodSignatureFilter countRemovedMethods(final String filterName, final MethodSignatureFilter filter) {
+        final AtomicLong removed = get(counters, REMOVED_METHODS + filterName);
+        return new MethodSignatureFilter() {
+            @Override
+            public boolean excludes(final int access, final String name, final String desc, final String signature) {
+                if (filter.excludes(access, name, desc, signature)) {
+                    removed.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Wraps a filter so that the methods it removes are counted as methodsRemoved.&lt;filterName&gt;.
+     * 
+     * @param filterName
+     *            the name of the filter in the report configuration
+     * @param filter
+     *            the filter
+     * @return the counting filter
+     */
+    MethodCoverageFilter countRemovedMethods(final String filterName, final MethodCoverageFilter filter) {
+        final AtomicLong removed = get(counters, REMOVED_METHODS + filterName);
+        return new MethodCoverageFilter() {
+            @Override
+            public Collection<IMethodCoverage> filter(final Collection<IMethodCoverage> methodCoverages) {
+                final int before = methodCoverages.size();
+                final Collection<IMethodCoverage> filtered = filter.filter(methodCoverages);
+                removed.addAndGet(before - filtered.size());
+                return filtered;
+            }
+        };
+    }
+
+    /**
+     * Writes the metrics as a JSON object with the members phasesMillis, counters and jvmPeakHeapBytes, the largest
+     * sampled heap of the whole JVM.
+     * 
+     * @param file
+     *            the file to write
+     * @throws IOException
+     *             if the file can't be written
+     */
+    void write(final File file) throws IOException {
+        file.getParentFile().mkdirs();
+        try (Writer out = new OutputStreamWriter(new FileOutputStream(file), UTF_8)) {
+            out.write("{\n  \"phasesMillis\": {");
+            String separator = "\n";
+            for (final Map.Entry<String, Long> time : snapshot(times).entrySet()) {
+                out.write(separator + "    \"" + time.getKey() + "\": "
+                        + String.format(Locale.ROOT, "%.3f", time.getValue() / 1e6));
+                separator = ",\n";
+            }
+            out.write("\n  },\n  \"counters\": {");
+            separator = "\n";
+            for (final Map.Entry<String, Long> counter : snapshot(counters).entrySet()) {
+                out.write(separator + "    \"" + counter.getKey() + "\": " + counter.getValue());
+                separator = ",\n";
+            }
+            out.write("\n  },\n  \"jvmPeakHeapBytes\": " + getPeakHeap() + "\n}\n");
+        }
+    }
+
+    /**
+     * @return a one line summary for the build log
+     */
+    String summarize() {
+        final StringBuilder summary = new StringBuilder("JaCoCo report metrics:");
+        for (final Map.Entry<String, Long> time : snapshot(times).entrySet()) {
+            if (time.getKey().indexOf('.') < 0) {
+                summary.append(' ').append(time.getKey()).append(' ').append(time.getValue() / 1000000).append(" ms,");
+            }
+        }
+        summary.append(' ').append(getCount("classes")).append(" classes (").append(getCount("classBytes") / 1024)
+                .append(" KiB)");
+        long removed = 0;
+        for (final Map.Entry<String, Long> counter : snapshot(counters).entrySet()) {
+            if (counter.getKey().startsWith(REMOVED_METHODS)) {
+                removed += counter.getValue();
+            }
+        }
+        summary.append(", ");
+        if (getCount("classesExcluded") > 0) {
+            summary.append(getCount("classesExcluded")).append(" classes and ");
+        }
+        summary.append(removed).append(" methods removed by filters, peak JVM heap ")
+                .append(getPeakHeap() / (1024 * 1024)).append(" MiB");
+        return summary.toString();
+    }
+
+    private static AtomicLong get(final Map<String, AtomicLong> values, final String name) {
+        synchronized (values) {
+            AtomicLong value = values.get(name);
+            if (value == null) {
+                value = new AtomicLong();
+                values.put(name, value);
+            }
+            return value;
+        }
+    }
+
+    private static Map<String, Long> snapshot(final Map<String, AtomicLong> values) {
+        final Map<String, Long> snapshot = new TreeMap<String, Long>();
+        synchronized (values) {
+            for (final Map.Entry<String, AtomicLong> value : values.entrySet()) {
+                snapshot.put(value.getKey(), Long.valueOf(value.getValue().get()));
+            }
+        }
+        return snapshot;
+    }
+}
@@ -13,51 +13,14 @@
 package timezra.maven.jacoco.scala;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.Reader;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.HashSet;
+import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
 
-import org.apache.maven.doxia.siterenderer.Renderer;
-import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.project.MavenProject;
-import org.apache.maven.reporting.AbstractMavenReport;
-import org.apache.maven.reporting.MavenReportException;
-import org.jacoco.core.analysis.Analyzer;
 import org.jacoco.core.analysis.IBundleCoverage;
-import org.jacoco.core.analysis.ICoverageNode;
-import org.jacoco.core.analysis.ICoverageVisitor;
-import org.jacoco.core.analysis.IMethodCoverage;
-import org.jacoco.core.data.ExecFileLoader;
-import org.jacoco.core.data.ExecutionData;
-import org.jacoco.core.data.ExecutionDataStore;
-import org.jacoco.core.data.SessionInfoStore;
-import org.jacoco.core.internal.analysis.ClassAnalyzer;
-import org.jacoco.core.internal.analysis.MethodAnalyzer;
-import org.jacoco.core.internal.analysis.StringPool;
-import org.jacoco.core.internal.data.CRC64;
-import org.jacoco.core.internal.flow.ClassProbesAdapter;
-import org.jacoco.core.internal.flow.ClassProbesVisitor;
-import org.jacoco.core.internal.flow.MethodProbesVisitor;
-import org.jacoco.core.internal.instr.InstrSupport;
-import org.jacoco.maven.FileFilter;
-import org.jacoco.report.FileMultiReportOutput;
 import org.jacoco.report.IReportGroupVisitor;
-import org.jacoco.report.IReportVisitor;
-import org.jacoco.report.ISourceFileLocator;
-import org.jacoco.report.MultiReportVisitor;
-import org.jacoco.report.csv.CSVFormatter;
-import org.jacoco.report.html.HTMLFormatter;
-import org.jacoco.report.xml.XMLFormatter;
-import org.objectweb.asm.ClassReader;
-import org.objectweb.asm.ClassVisitor;
-import org.objectweb.asm.Opcodes;
 
 /**
  * Creates a code coverage report for a single project in multiple formats (HTML, XML, and CSV).
@@ -67,10 +30,7 @@ import org.objectweb.asm.Opcodes;
  * @requiresProject true
  * @threadSafe
  */
-public class ReportMojo extends AbstractMavenReport {
-
-    private static final String FILTER_SCALAC_MIXIN = "SCALAC.MIXIN";
-    private static final String FILTER_SCALAC_CASE = "SCALAC.CASE";
+public class ReportMojo extends AbstractReportMojo {
 
     /**
      * Output directory for the reports. Note that this parameter is only relevant if the goal is run from the command line
@@ -81,20 +41,6 @@ public class ReportMojo extends AbstractMavenReport {
      */
     private File outputDirectory;
 
-    /**
-     * Encoding of the generated reports.
-     * 
-     * @parameter expression="${project.reporting.outputEncoding}" default-value="UTF-8"
-     */
-    private String outputEncoding;
-
-    /**
-     * Encoding of the source files.
-     * 
-     * @parameter expression="${project.build.sourceEncoding}" default-value="UTF-8"
-     */
-    private String sourceEncoding;
-
     /**
      * File with execution data.
      * 
@@ -103,54 +49,20 @@ public class ReportMojo extends AbstractMavenReport {
     private File dataFile;
 
     /**
-     * A list of class files to include in the report. May use wildcard characters (* and ?). When not specified everything
-     * will be included.
+     * Directories, jars and zips with the class files to analyze, such as a shaded artifact or the jar of a sibling
+     * module. Archives are read in place; the includes and excludes are matched against the paths of the class files
+     * within each location. Defaults to the output directory of the project.
      * 
      * @parameter
      */
-    private List<String> includes;
+    private List<File> classLocations;
 
     /**
-     * A list of class files to exclude from the report. May use wildcard characters (* and ?). When not specified nothing
-     * will be excluded.
+     * Directory that holds the cached structure of analyzed class files.
      * 
-     * @parameter
-     */
-    private List<String> excludes;
-
-    /**
-     * Flag used to suppress execution.
-     * 
-     * @parameter expression="${jacoco.skip}" default-value="false"
+     * @parameter default-value="${project.build.directory}/jacoco-scala-cache"
      */
-    private boolean skip;
-
-    /**
-     * A list of filters to exclude from the report. Currently only SCALAC.MIXIN is supported. When not specified nothing
-     * will be excluded.
-     * 
-     * @parameter
-     */
-    private List<String> filters;
-
-    /**
-     * Maven project.
-     * 
-     * @parameter expression="${project}"
-     * @readonly
-     */
-    private MavenProject project;
-
-    /**
-     * Doxia Site Renderer.
-     * 
-     * @component
-     */
-    private Renderer siteRenderer;
-
-    private SessionInfoStore sessionInfoStore;
-
-    private ExecutionDataStore executionDataStore;
+    private File analysisCacheDirectory;
 
     @Override
     public String getOutputName() {
@@ -167,44 +79,11 @@ public class ReportMojo extends AbstractMavenReport {
         return "JaCoCo Test Coverage Report.";
     }
 
-    @Override
-    public boolean isExternalReport() {
-        return true;
-    }
-
     @Override
     protected String getOutputDirectory() {
         return outputDirectory.getAbsolutePath();
     }
 
-    @Override
-    protected MavenProject getProject() {
-        return project;
-    }
-
-    @Override
-    protected Renderer getSiteRenderer() {
-        return siteRenderer;
-    }
-
-    /**
-     * Returns the list of class files to include in the report.
-     * 
-     * @return class files to include, may contain wildcard characters
-     */
-    protected List<String> getIncludes() {
-        return includes;
-    }
-
-    /**
-     * Returns the list of class files to exclude from the report.
-     * 
-     * @return class files to exclude, may contain wildcard characters
-     */
-    protected List<String> getExcludes() {
-        return excludes;
-    }
-
     @Override
     public void setReportOutputDirectory(final File reportOutputDirectory) {
         if (reportOutputDirectory != null && !reportOutputDirectory.getAbsolutePath().endsWith("jacoco")) {
@@ -216,325 +95,41 @@ public class ReportMojo extends AbstractMavenReport {
 
     @Override
     public boolean canGenerateReport() {
-        if ("pom".equals(project.getPackaging())) {
+        if ("pom".equals(getProject().getPackaging())) {
             getLog().info("Skipping JaCoCo for project with packaging type 'pom'");
             return false;
         }
-        if (skip) {
-            getLog().info("Skipping JaCoCo execution");
-            return false;
-        }
-        if (!dataFile.exists()) {
-            getLog().info("Skipping JaCoCo execution due to missing execution data file");
-            return false;
-        }
-        return true;
+        return super.canGenerateReport();
     }
 
-    /**
-     * This method is called when the report generation is invoked directly as a standalone Mojo.
-     */
     @Override
-    public void execute() throws MojoExecutionException {
-        if (!canGenerateReport()) {
-            return;
-        }
-        try {
-            executeReport(Locale.getDefault());
-        } catch (final MavenReportException e) {
-            throw new MojoExecutionException("An error has occurred in " + getName(Locale.ENGLISH) + " report generation.",
-                    e);
-        }
+    protected List<MavenProject> getReportProjects() {
+        return Collections.singletonList(getProject());
     }
 
     @Override
-    protected void executeReport(final Locale locale) throws MavenReportException {
-        loadExecutionData();
-        try {
-            final IReportVisitor visitor = createVisitor(locale);
-            visitor.visitInfo(sessionInfoStore.getInfos(), executionDataStore.getContents());
-            createReport(visitor);
-            visitor.visitEnd();
-        } catch (final IOException e) {
-            throw new MavenReportException("Error while creating report: " + e.getMessage(), e);
-        }
+    protected List<File> getDataFiles() {
+        return getDataFiles(dataFile, resolvePath(getProject(), getProject().getBuild().getDirectory()));
     }
 
-    private void loadExecutionData() throws MavenReportException {
-        final ExecFileLoader loader = new ExecFileLoader();
-        try {
-            loader.load(dataFile);
-        } catch (final IOException e) {
-            throw new MavenReportException("Unable to read execution data file " + dataFile + ": " + e.getMessage(), e);
-        }
-        sessionInfoStore = loader.getSessionInfoStore();
-        executionDataStore = loader.getExecutionDataStore();
+    @Override
+    protected File getAnalysisCacheDirectory(final MavenProject reportProject) {
+        return analysisCacheDirectory;
     }
 
-    private BundleCreator createBundleCreator() {
-        final FileFilter fileFilter = new FileFilter(getIncludes(), getExcludes());
-        if (filters != null) {
-            final Collection<MethodCoverageFilter> methodCoverageFilters = new ArrayList<>();
-            if (filters.contains(FILTER_SCALAC_MIXIN)) {
-                methodCoverageFilters.add(new MixinFilter());
-            }
-            if (filters.contains(FILTER_SCALAC_CASE)) {
-                methodCoverageFilters.add(new CaseFilter());
-            }
-            if (!filters.isEmpty()) {
-                return new SanitizingBundleCreator(getProject(), fileFilter, new Filters(methodCoverageFilters));
-            }
+    @Override
+    protected List<File> getClassLocations(final MavenProject reportProject) {
+        if (classLocations == null || classLocations.isEmpty()) {
+            return super.getClassLocations(reportProject);
         }
-        return new BundleCreator(getProject(), fileFilter);
+        return classLocations;
     }
 
-    private void createReport(final IReportGroupVisitor visitor) throws IOException {
-        final BundleCreator creator = createBundleCreator();
-        final IBundleCoverage bundle = creator.createBundle(executionDataStore);
-
-        final SourceFileCollection locator = new SourceFileCollection(getCompileSourceRoots(), sourceEncoding);
+    @Override
+    protected void createReport(final IReportGroupVisitor visitor, final List<MavenProject> reportProjects,
+            final List<IBundleCoverage> bundles) throws IOException {
+        final IBundleCoverage bundle = bundles.get(0);
         checkForMissingDebugInformation(bundle);
-        visitor.visitBundle(bundle, locator);
-    }
-
-    private void checkForMissingDebugInformation(final ICoverageNode node) {
-        if (node.getClassCounter().getTotalCount() > 0 && node.getLineCounter().getTotalCount() == 0) {
-            getLog().warn("To enable source code annotation class files have to be compiled with debug information.");
-        }
-    }
-
-    private IReportVisitor createVisitor(final Locale locale) throws IOException {
-        final List<IReportVisitor> visitors = new ArrayList<IReportVisitor>();
-
-        outputDirectory.mkdirs();
-
-        final XMLFormatter xmlFormatter = new XMLFormatter();
-        xmlFormatter.setOutputEncoding(outputEncoding);
-        visitors.add(xmlFormatter.createVisitor(new FileOutputStream(new File(outputDirectory, "jacoco.xml"))));
-
-        final CSVFormatter csvFormatter = new CSVFormatter();
-        csvFormatter.setOutputEncoding(outputEncoding);
-        visitors.add(csvFormatter.createVisitor(new FileOutputStream(new File(outputDirectory, "jacoco.csv"))));
-
-        final HTMLFormatter htmlFormatter = new HTMLFormatter();
-        htmlFormatter.setOutputEncoding(outputEncoding);
-        htmlFormatter.setLocale(locale);
-        visitors.add(htmlFormatter.createVisitor(new FileMultiReportOutput(outputDirectory)));
-
-        return new MultiReportVisitor(visitors);
-    }
-
-    private static class SourceFileCollection implements ISourceFileLocator {
-
-        private final List<File> sourceRoots;
-        private final String encoding;
-
-        public SourceFileCollection(final List<File> sourceRoots, final String encoding) {
-            this.sourceRoots = sourceRoots;
-            this.encoding = encoding;
-        }
-
-        @Override
-        public Reader getSourceFile(final String packageName, final String fileName) throws IOException {
-            final String r;
-            if (packageName.length() > 0) {
-                r = packageName + '/' + fileName;
-            } else {
-                r = fileName;
-            }
-            for (final File sourceRoot : sourceRoots) {
-                final File file = new File(sourceRoot, r);
-                if (file.exists() && file.isFile()) {
-                    return new InputStreamReader(new FileInputStream(file), encoding);
-                }
-            }
-            return null;
-        }
-
-        @Override
-        public int getTabWidth() {
-            return 4;
-        }
-    }
-
-    private File resolvePath(final String path) {
-        File file = new File(path);
-        if (!file.isAbsolute()) {
-            file = new File(getProject().getBasedir(), path);
-        }
-        return file;
-    }
-
-    private List<File> getCompileSourceRoots() {
-        final List<File> result = new ArrayList<File>();
-        for (final Object path : getProject().getCompileSourceRoots()) {
-            result.add(resolvePath((String) path));
-        }
-        return result;
-    }
-
-    private static final class SanitizingBundleCreator extends BundleCreator {
-        private final MethodCoverageFilter filter;
-
-        public SanitizingBundleCreator(final MavenProject project, final FileFilter fileFilter,
-                final MethodCoverageFilter filter) {
-            super(project, fileFilter);
-            this.filter = filter;
-        }
-
-        @Override
-        protected Analyzer createAnalyzer(final ExecutionDataStore executionDataStore, final ICoverageVisitor coverageVisitor) {
-            return new SanitizingAnalyzer(executionDataStore, coverageVisitor, filter);
-        }
-    }
-
-    private static final class SanitizingAnalyzer extends Analyzer {
-
-        private final ExecutionDataStore executionData;
-        private final ICoverageVisitor coverageVisitor;
-        private final MethodCoverageFilter filter;
-
-        public SanitizingAnalyzer(final ExecutionDataStore executionData, final ICoverageVisitor coverageVisitor,
-                final MethodCoverageFilter filter) {
-            super(executionData, coverageVisitor);
-            this.executionData = executionData;
-            this.coverageVisitor = coverageVisitor;
-            this.filter = filter;
-        }
-
-        @Override
-        public void analyzeClass(final ClassReader reader) {
-            final ClassVisitor visitor = createSanitizingVisitor(CRC64.checksum(reader.b));
-            reader.accept(visitor, 0);
-        }
-
-        private ClassVisitor createSanitizingVisitor(final long classid) {
-            final ExecutionData data = executionData.get(classid);
-            final boolean[] probes = data == null ? null : data.getProbes();
-            final StringPool stringPool = new StringPool();
-            final ClassProbesVisitor analyzer = new SanitizingClassAnalyzer(classid, probes, stringPool, coverageVisitor,
-                    filter);
-            return new ClassProbesAdapter(analyzer);
-        }
-    }
-
-    private static interface MethodCoverageFilter {
-        Collection<IMethodCoverage> filter(final Collection<IMethodCoverage> methodCoverages);
-    }
-
-    private static final class Filters implements MethodCoverageFilter {
-
-        private final Iterable<MethodCoverageFilter> filters;
-
-        Filters(final Iterable<MethodCoverageFilter> filters) {
-            this.filters = filters;
-        }
-
-        @Override
-        public Collection<IMethodCoverage> filter(final Collection<IMethodCoverage> methodCoverages) {
-            Collection<IMethodCoverage> filtered = methodCoverages;
-            for (final MethodCoverageFilter filter : filters) {
-                filtered = filter.filter(filtered);
-            }
-            return filtered;
-        }
-    }
-
-    private static final class MixinFilter implements MethodCoverageFilter {
-        @Override
-        public Collection<IMethodCoverage> filter(final Collection<IMethodCoverage> methodCoverages) {
-            final Collection<IMethodCoverage> filtered = new ArrayList<>();
-            final Collection<Integer> constructorLines = new HashSet<Integer>();
-            for (final IMethodCoverage methodCoverage : methodCoverages) {
-                if (isConstructor(methodCoverage)) {
-                    constructorLines.add(Integer.valueOf(methodCoverage.getFirstLine()));
-                }
-            }
-            for (final IMethodCoverage methodCoverage : methodCoverages) {
-                if (isConstructor(methodCoverage)
-                        || !constructorLines.contains(Integer.valueOf(methodCoverage.getFirstLine()))) {
-                    filtered.add(methodCoverage);
-                }
-            }
-            return filtered;
-        }
-
-        private boolean isConstructor(final IMethodCoverage methodCoverage) {
-            return "<init>".equals(methodCoverage.getName());
-        }
-    }
-
-    private static final class CaseFilter implements MethodCoverageFilter {
-        @Override
-        public Collection<IMethodCoverage> filter(final Collection<IMethodCoverage> methodCoverages) {
-            final Collection<IMethodCoverage> filtered = new ArrayList<>();
-            for (final IMethodCoverage methodCoverage : methodCoverages) {
-                final String methodSignature = methodCoverage.getName() + methodCoverage.getDesc();
-                if (!(methodSignature.startsWith("curried()") || methodSignature.startsWith("tupled()") || methodSignature
-                        .matches("(?:\\w|\\$)+\\$default\\$\\d+\\(\\).*"))) {
-                    filtered.add(methodCoverage);
-                }
-            }
-            return filtered;
-        }
-    }
-
-    private static final class SanitizingClassAnalyzer extends ClassAnalyzer {
-        private final StringPool stringPool;
-        private final boolean[] probes;
-        private final Collection<IMethodCoverage> methodCoveragesToAdd = new ArrayList<IMethodCoverage>();
-        private final ICoverageVisitor coverageVisitor;
-        private final MethodCoverageFilter filter;
-
-        private SanitizingClassAnalyzer(final long classid, final boolean[] probes, final StringPool stringPool,
-                final ICoverageVisitor coverageVisitor, final MethodCoverageFilter filter) {
-            super(classid, probes, stringPool);
-            this.stringPool = stringPool;
-            this.probes = probes;
-            this.coverageVisitor = coverageVisitor;
-            this.filter = filter;
-        }
-
-        @Override
-        public MethodProbesVisitor visitMethod(final int access, final String name, final String desc,
-                final String signature, final String[] exceptions) {
-
-            InstrSupport.assertNotInstrumented(name, getCoverage().getName());
-
-            // TODO: Use filter hook
-            if ((access & Opcodes.ACC_SYNTHETIC) != 0) {
-                return null;
-            }
-
-            return new MethodAnalyzer(stringPool.get(name), stringPool.get(desc), stringPool.get(signature), probes) {
-                @Override
-                public void visitEnd() {
-                    super.visitEnd();
-                    final IMethodCoverage methodCoverage = getCoverage();
-                    if (methodCoverage.getInstructionCounter().getTotalCount() > 0) {
-                        // Only consider methods that actually contain
-                        // code
-                        methodCoveragesToAdd.add(methodCoverage);
-                    }
-                }
-            };
-        }
-
-        @Override
-        public void visitEnd() {
-            try {
-                visitSanitizedMethods();
-            } finally {
-                super.visitEnd();
-                coverageVisitor.visitCoverage(getCoverage());
-            }
-        }
-
-        private void visitSanitizedMethods() {
-            final Collection<IMethodCoverage> filtered = filter.filter(methodCoveragesToAdd);
-            for (final IMethodCoverage methodCoverage : filtered) {
-                getCoverage().addMethod(methodCoverage);
-            }
-        }
+        visitor.visitBundle(bundle, createSourceFileLocator(reportProjects.get(0)));
     }
 }
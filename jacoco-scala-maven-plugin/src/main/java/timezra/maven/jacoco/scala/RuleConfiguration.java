@@ -0,0 +1,63 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2013 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Evgeny Mandrikov - initial API and implementation
+ *    Kyle Lieber - implementation of CheckMojo
+ * 
+ *******************************************************************************/
+package timezra.maven.jacoco.scala;
+
+import java.util.List;
+
+import org.codehaus.plexus.util.StringUtils;
+import org.jacoco.core.analysis.ICoverageNode.ElementType;
+import org.jacoco.report.check.Limit;
+import org.jacoco.report.check.Rule;
+
+/**
+ * A rule of the check goal: the limits that every element of a type, e.g. every class, has to meet. It is configured
+ * the same way as a rule of the check goal of the jacoco-maven-plugin.
+ */
+public class RuleConfiguration {
+
+    final Rule rule = new Rule();
+
+    /**
+     * @param element
+     *            the type of the elements to check: BUNDLE, PACKAGE, SOURCEFILE, CLASS or METHOD
+     */
+    public void setElement(final ElementType element) {
+        rule.setElement(element);
+    }
+
+    /**
+     * @param includes
+     *            the names of the elements to check, may use wildcard characters (* and ?)
+     */
+    public void setIncludes(final List<String> includes) {
+        rule.setIncludes(StringUtils.join(includes.iterator(), ":"));
+    }
+
+    /**
+     * @param excludes
+     *            the names of the elements not to check, may use wildcard characters (* and ?)
+     */
+    public void setExcludes(final List<String> excludes) {
+        rule.setExcludes(StringUtils.join(excludes.iterator(), ":"));
+    }
+
+    /**
+     * @param limits
+     *            the limits that each element has to meet: a counter (INSTRUCTION, LINE, BRANCH, COMPLEXITY, METHOD or
+     *            CLASS), a value (TOTALCOUNT, MISSEDCOUNT, COVEREDCOUNT, MISSEDRATIO or COVEREDRATIO) and a minimum or
+     *            maximum
+     */
+    public void setLimits(final List<Limit> limits) {
+        rule.setLimits(limits);
+    }
+}
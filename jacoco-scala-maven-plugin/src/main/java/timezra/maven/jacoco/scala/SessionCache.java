@@ -0,0 +1,199 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2013 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Evgeny Mandrikov - initial API and implementation
+ *    Kyle Lieber - implementation of CheckMojo
+ * 
+ *******************************************************************************/
+package timezra.maven.jacoco.scala;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+
+/**
+ * An in-memory cache that lives for one Maven session and is shared by all executions of the plugin in it, e.g. the
+ * reports of the unit and integration tests, the aggregate report and the site of a reactor build. Entries are evicted
+ * in least recently used order once their estimated size exceeds the bound. The cache is safe for the concurrent
+ * executions of a parallel build: a value that is being loaded by one execution is awaited by the others instead of
+ * being loaded again.
+ */
+final class SessionCache {
+
+    private static SessionCache current;
+
+    private final Object sessionKey;
+    private final long maxSize;
+    private final Map<Object, Entry> entries = new LinkedHashMap<Object, Entry>(16, 0.75f, true);
+    private long size;
+
+    private SessionCache(final Object sessionKey, final long maxSize) {
+        this.sessionKey = sessionKey;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns the cache of the given session. The cache of an earlier session, e.g. of the previous build in a
+     * long-running Maven process, is dropped.
+     * 
+     * @param sessionKey
+     *            identifies the Maven session
+     * @param maxSize
+     *            the maximum estimated size of the cached values in bytes, used when the cache of the session is
+     *            created
+     * @return the cache of the session
+     */
+    static synchronized SessionCache forSession(final Object sessionKey, final long maxSize) {
+        if (current == null || !current.sessionKey.equals(sessionKey)) {
+            current = new SessionCache(sessionKey, maxSize);
+        }
+        return current;
+    }
+
+    /**
+     * Returns the cached value of the key, or loads and caches it. Concurrent calls for the same key load it once.
+     * 
+     * @param key
+     *            the key of the value, which has to describe every input of the loader
+     * @param loader
+     *            the loader of the value
+     * @return the value
+     * @throws IOException
+     *             if the value can't be loaded
+     */
+    <T> T get(final Object key, final Loader<T> loader) throws IOException {
+        final Entry entry;
+        final FutureTask<T> task;
+        synchronized (this) {
+            final Entry existing = entries.get(key);
+            if (existing == null) {
+                task = new FutureTask<T>(loader);
+                entry = new Entry(task);
+                entries.put(key, entry);
+            } else {
+                task = null;
+                entry = existing;
+            }
+        }
+        if (task == null) {
+            @SuppressWarnings("unchecked")
+            final T value = (T) await(key, entry);
+            return value;
+        }
+        task.run();
+        final T value = await(key, entry, task);
+        add(key, entry, loader.estimateSize(value));
+        return value;
+    }
+
+    /**
+     * @param key
+     *            the key of the value
+     * @return the cached value of the key, or <code>null</code> if it is not cached
+     * @throws IOException
+     *             if the value failed to load
+     */
+    Object getIfPresent(final Object key) throws IOException {
+        final Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+        }
+        return entry == null ? null : await(key, entry);
+    }
+
+    /**
+     * @param key
+     *            the key of the value
+     * @param value
+     *            the value to cache, replacing the value of the key
+     * @param estimatedSize
+     *            the estimated size of the value in bytes
+     */
+    void put(final Object key, final Object value, final long estimatedSize) {
+        final FutureTask<Object> task = new FutureTask<Object>(new Callable<Object>() {
+            @Override
+            public Object call() {
+                return value;
+            }
+        });
+        task.run();
+        final Entry entry = new Entry(task);
+        synchronized (this) {
+            final Entry replaced = entries.put(key, entry);
+            if (replaced != null) {
+                size -= replaced.size;
+            }
+        }
+        add(key, entry, estimatedSize);
+    }
+
+    private Object await(final Object key, final Entry entry) throws IOException {
+        return await(key, entry, entry.task);
+    }
+
+    private <T> T await(final Object key, final Entry entry, final FutureTask<T> task) throws IOException {
+        try {
+            return ConcurrentTasks.await(task);
+        } catch (final IOException | RuntimeException | Error e) {
+            synchronized (this) {
+                if (entries.get(key) == entry) {
+                    entries.remove(key);
+                }
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Accounts for a loaded entry and evicts the least recently used entries that have been loaded until the cache
+     * fits its bound. An entry larger than the bound is used once and then evicted.
+     */
+    private synchronized void add(final Object key, final Entry entry, final long estimatedSize) {
+        if (entries.get(key) != entry) {
+            return;
+        }
+        entry.size = estimatedSize;
+        size += estimatedSize;
+        final Iterator<Entry> lru = entries.values().iterator();
+        while (size > maxSize && lru.hasNext()) {
+            final Entry evicted = lru.next();
+            if (evicted.task.isDone()) {
+                size -= evicted.size;
+                lru.remove();
+            }
+        }
+    }
+
+    /**
+     * Loads a value of the cache and estimates its size.
+     */
+    abstract static class Loader<T> implements Callable<T> {
+
+        @Override
+        public abstract T call() throws IOException;
+
+        /**
+         * @param value
+         *            the loaded value
+         * @return the estimated size of the value in bytes
+         */
+        abstract long estimateSize(T value);
+    }
+
+    private static final class Entry {
+        private final FutureTask<?> task;
+        private long size;
+
+        Entry(final FutureTask<?> task) {
+            this.task = task;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2013 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Evgeny Mandrikov - initial API and implementation
+ *    Kyle Lieber - implementation of CheckMojo
+ * 
+ *******************************************************************************/
+package timezra.maven.jacoco.scala;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A thread-safe replacement for the JaCoCo StringPool. One pool is shared by all analyzers of a bundle and by the
+ * analysis cache, so every class, method and descriptor name is held once, however many classes or workers refer to it.
+ */
+final class SharedStringPool {
+
+    private final ConcurrentMap<String, String> pool = new ConcurrentHashMap<String, String>(1024);
+
+    /**
+     * @param s
+     *            the string to intern, may be <code>null</code>
+     * @return the pooled instance equal to s
+     */
+    String get(final String s) {
+        if (s == null) {
+            return null;
+        }
+        final String pooled = pool.putIfAbsent(s, s);
+        return pooled == null ? s : pooled;
+    }
+
+    /**
+     * @param array
+     *            the strings to intern in place, may be <code>null</code>
+     * @return the given array
+     */
+    String[] get(final String[] array) {
+        if (array != null) {
+            for (int i = 0; i < array.length; i++) {
+                array[i] = get(array[i]);
+            }
+        }
+        return array;
+    }
+}
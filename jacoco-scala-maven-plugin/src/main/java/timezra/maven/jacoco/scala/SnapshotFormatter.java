@@ -0,0 +1,273 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2013 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Evgeny Mandrikov - initial API and implementation
+ *    Kyle Lieber - implementation of CheckMojo
+ * 
+ *******************************************************************************/
+package timezra.maven.jacoco.scala;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jacoco.core.analysis.IBundleCoverage;
+import org.jacoco.core.analysis.IClassCoverage;
+import org.jacoco.core.analysis.ICounter;
+import org.jacoco.core.analysis.ICoverageNode;
+import org.jacoco.core.analysis.ICoverageNode.CounterEntity;
+import org.jacoco.core.analysis.IMethodCoverage;
+import org.jacoco.core.analysis.IPackageCoverage;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.SessionInfo;
+import org.jacoco.report.IReportGroupVisitor;
+import org.jacoco.report.IReportVisitor;
+import org.jacoco.report.ISourceFileLocator;
+
+/**
+ * Writes the bundles of a report as a compact binary snapshot that a CoverageSnapshot reads without a full parse. Every
+ * name is stored once in a string table; bundles, packages, classes and methods are fixed-size records of string ids,
+ * child ranges and counters, so that a reader can address each record by its index.
+ */
+public class SnapshotFormatter {
+
+    static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * Creates a new visitor that writes the snapshot to the given stream once all bundles are visited.
+     * 
+     * @param output
+     *            the stream to write the snapshot to, closed by visitEnd
+     * @return the visitor to emit the report data to
+     */
+    public IReportVisitor createVisitor(final OutputStream output) {
+        final List<IBundleCoverage> bundles = new ArrayList<IBundleCoverage>();
+        return new IReportVisitor() {
+            @Override
+            public void visitInfo(final List<SessionInfo> sessionInfos, final Collection<ExecutionData> executionData) {
+                // sessions and execution data are not part of the snapshot
+            }
+
+            @Override
+            public void visitBundle(final IBundleCoverage bundle, final ISourceFileLocator locator) {
+                bundles.add(bundle);
+            }
+
+            @Override
+            public IReportGroupVisitor visitGroup(final String name) {
+                return this;
+            }
+
+            @Override
+            public void visitEnd() throws IOException {
+                final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(output));
+                try {
+                    new SnapshotWriter(bundles).write(out);
+                } finally {
+                    out.close();
+                }
+            }
+        };
+    }
+
+    private static final class SnapshotWriter {
+        private final List<IBundleCoverage> bundles;
+        private final List<List<IPackageCoverage>> packages = new ArrayList<List<IPackageCoverage>>();
+        private final List<List<IClassCoverage>> classes = new ArrayList<List<IClassCoverage>>();
+        private final Map<String, Integer> stringIds = new HashMap<String, Integer>();
+        private final List<byte[]> strings = new ArrayList<byte[]>();
+        private final List<String> classNames = new ArrayList<String>();
+        private int packageCount;
+        private int classCount;
+        private int methodCount;
+
+        SnapshotWriter(final List<IBundleCoverage> bundles) {
+            this.bundles = bundles;
+            for (final IBundleCoverage bundle : bundles) {
+                intern(bundle.getName());
+                final List<IPackageCoverage> bundlePackages = sortByName(bundle.getPackages());
+                packages.add(bundlePackages);
+                for (final IPackageCoverage p : bundlePackages) {
+                    intern(p.getName());
+                    final List<IClassCoverage> packageClasses = sortByName(p.getClasses());
+                    classes.add(packageClasses);
+                    for (final IClassCoverage c : packageClasses) {
+                        intern(c.getName());
+                        intern(c.getSourceFileName());
+                        classNames.add(c.getName());
+                        for (final IMethodCoverage m : c.getMethods()) {
+                            intern(m.getName());
+                            intern(m.getDesc());
+                            methodCount++;
+                        }
+                    }
+                    classCount += packageClasses.size();
+                }
+                packageCount += bundlePackages.size();
+            }
+        }
+
+        void write(final DataOutputStream out) throws IOException {
+            long stringsSize = 4L * strings.size();
+            for (final byte[] s : strings) {
+                stringsSize += 4 + s.length;
+            }
+            final long stringsOffset = CoverageSnapshot.HEADER_SIZE;
+            final long bundlesOffset = stringsOffset + stringsSize;
+            final long packagesOffset = bundlesOffset + (long) CoverageSnapshot.BUNDLE_SIZE * bundles.size();
+            final long classesOffset = packagesOffset + (long) CoverageSnapshot.PACKAGE_SIZE * packageCount;
+            final long methodsOffset = classesOffset + (long) CoverageSnapshot.CLASS_SIZE * classCount;
+            final long classIndexOffset = methodsOffset + (long) CoverageSnapshot.METHOD_SIZE * methodCount;
+
+            out.writeInt(CoverageSnapshot.MAGIC);
+            out.writeInt(CoverageSnapshot.VERSION);
+            out.writeInt(strings.size());
+            out.writeInt(bundles.size());
+            out.writeInt(packageCount);
+            out.writeInt(classCount);
+            out.writeInt(methodCount);
+            out.writeLong(stringsOffset);
+            out.writeLong(bundlesOffset);
+            out.writeLong(packagesOffset);
+            out.writeLong(classesOffset);
+            out.writeLong(methodsOffset);
+            out.writeLong(classIndexOffset);
+
+            writeStrings(out);
+            writeRecords(out);
+            writeClassIndex(out);
+        }
+
+        private void writeStrings(final DataOutputStream out) throws IOException {
+            int offset = 4 * strings.size();
+            for (final byte[] s : strings) {
+                out.writeInt(offset);
+                offset += 4 + s.length;
+            }
+            for (final byte[] s : strings) {
+                out.writeInt(s.length);
+                out.write(s);
+            }
+        }
+
+        /**
+         * Writes the bundle, package, class and method tables. The children of each node are consecutive records of the
+         * next table, so a node refers to them by the index of the first one and their number.
+         */
+        private void writeRecords(final DataOutputStream out) throws IOException {
+            int firstPackage = 0;
+            for (int b = 0; b < bundles.size(); b++) {
+                final IBundleCoverage bundle = bundles.get(b);
+                out.writeInt(id(bundle.getName()));
+                out.writeInt(firstPackage);
+                out.writeInt(packages.get(b).size());
+                writeCounters(out, bundle);
+                firstPackage += packages.get(b).size();
+            }
+            int packageIndex = 0;
+            int firstClass = 0;
+            for (int b = 0; b < bundles.size(); b++) {
+                for (final IPackageCoverage p : packages.get(b)) {
+                    out.writeInt(id(p.getName()));
+                    out.writeInt(b);
+                    out.writeInt(firstClass);
+                    out.writeInt(classes.get(packageIndex).size());
+                    writeCounters(out, p);
+                    firstClass += classes.get(packageIndex++).size();
+                }
+            }
+            packageIndex = 0;
+            int firstMethod = 0;
+            for (final List<IClassCoverage> packageClasses : classes) {
+                for (final IClassCoverage c : packageClasses) {
+                    out.writeLong(c.getId());
+                    out.writeInt(id(c.getName()));
+                    out.writeInt(id(c.getSourceFileName()));
+                    out.writeInt(packageIndex);
+                    out.writeInt(firstMethod);
+                    out.writeInt(c.getMethods().size());
+                    writeCounters(out, c);
+                    firstMethod += c.getMethods().size();
+                }
+                packageIndex++;
+            }
+            int classIndex = 0;
+            for (final List<IClassCoverage> packageClasses : classes) {
+                for (final IClassCoverage c : packageClasses) {
+                    for (final IMethodCoverage m : c.getMethods()) {
+                        out.writeInt(id(m.getName()));
+                        out.writeInt(id(m.getDesc()));
+                        out.writeInt(m.getFirstLine());
+                        out.writeInt(classIndex);
+                        writeCounters(out, m);
+                    }
+                    classIndex++;
+                }
+            }
+        }
+
+        /**
+         * Writes the indices of the classes sorted by name, so that a class can be looked up by a binary search.
+         */
+        private void writeClassIndex(final DataOutputStream out) throws IOException {
+            final Integer[] index = new Integer[classNames.size()];
+            for (int i = 0; i < index.length; i++) {
+                index[i] = Integer.valueOf(i);
+            }
+            Arrays.sort(index, new Comparator<Integer>() {
+                @Override
+                public int compare(final Integer a, final Integer b) {
+                    return classNames.get(a.intValue()).compareTo(classNames.get(b.intValue()));
+                }
+            });
+            for (final Integer i : index) {
+                out.writeInt(i.intValue());
+            }
+        }
+
+        private static void writeCounters(final DataOutputStream out, final ICoverageNode node) throws IOException {
+            for (final CounterEntity entity : CounterEntity.values()) {
+                final ICounter counter = node.getCounter(entity);
+                out.writeInt(counter.getMissedCount());
+                out.writeInt(counter.getCoveredCount());
+            }
+        }
+
+        private void intern(final String s) {
+            if (s != null && !stringIds.containsKey(s)) {
+                stringIds.put(s, Integer.valueOf(strings.size()));
+                strings.add(s.getBytes(UTF8));
+            }
+        }
+
+        private int id(final String s) {
+            return s == null ? -1 : stringIds.get(s).intValue();
+        }
+
+        private static <T extends ICoverageNode> List<T> sortByName(final Collection<T> nodes) {
+            final List<T> sorted = new ArrayList<T>(nodes);
+            Collections.sort(sorted, new Comparator<T>() {
+                @Override
+                public int compare(final T a, final T b) {
+                    return a.getName().compareTo(b.getName());
+                }
+            });
+            return sorted;
+        }
+    }
+}
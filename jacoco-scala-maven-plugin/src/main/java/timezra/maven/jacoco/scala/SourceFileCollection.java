@@ -0,0 +1,125 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2013 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Evgeny Mandrikov - initial API and implementation
+ *    Kyle Lieber - implementation of CheckMojo
+ * 
+ *******************************************************************************/
+package timezra.maven.jacoco.scala;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jacoco.report.ISourceFileLocator;
+
+/**
+ * Locates source files in the compile source roots. Each root is walked once, on the first lookup, to index the
+ * relative path of every file; a file that exists in several roots is taken from the first one. Lookups only consult
+ * the index. The content of a file is read when it is looked up and is not kept, since the HTML report looks up each
+ * file once.
+ */
+final class SourceFileCollection implements ISourceFileLocator {
+
+    private final List<File> sourceRoots;
+    private final String encoding;
+    private Map<String, Path> index;
+
+    /**
+     * @param sourceRoots
+     *            the source roots, in the order they are searched
+     * @param encoding
+     *            the encoding of the source files
+     */
+    SourceFileCollection(final List<File> sourceRoots, final String encoding) {
+        this.sourceRoots = sourceRoots;
+        this.encoding = encoding;
+    }
+
+    @Override
+    public Reader getSourceFile(final String packageName, final String fileName) throws IOException {
+        final String r;
+        if (packageName.length() > 0) {
+            r = packageName + '/' + fileName;
+        } else {
+            r = fileName;
+        }
+        final Path file = getIndex().get(r);
+        if (file == null) {
+            return null;
+        }
+        return new InputStreamReader(Files.newInputStream(file), encoding);
+    }
+
+    @Override
+    public int getTabWidth() {
+        return 4;
+    }
+
+    private synchronized Map<String, Path> getIndex() throws IOException {
+        if (index == null) {
+            final Map<String, Path> files = new HashMap<String, Path>();
+            for (final File sourceRoot : sourceRoots) {
+                if (sourceRoot.isDirectory()) {
+                    indexSourceRoot(sourceRoot.toPath(), files);
+                }
+            }
+            index = files;
+        }
+        return index;
+    }
+
+    private static void indexSourceRoot(final Path sourceRoot, final Map<String, Path> files) throws IOException {
+        final StringBuilder key = new StringBuilder();
+        Files.walkFileTree(sourceRoot, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE,
+                new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) {
+                        if (attrs.isRegularFile()) {
+                            final String relativePath = toKey(sourceRoot.relativize(file), key);
+                            if (!files.containsKey(relativePath)) {
+                                files.put(relativePath, file);
+                            }
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFileFailed(final Path file, final IOException e) {
+                        // unreadable entries and symbolic link cycles can't
+                        // hold a source file that the report could show
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+    }
+
+    /**
+     * Joins the names of a relative path with '/', the separator JaCoCo uses for package names.
+     */
+    private static String toKey(final Path relativePath, final StringBuilder key) {
+        key.setLength(0);
+        for (final Path name : relativePath) {
+            if (key.length() > 0) {
+                key.append('/');
+            }
+            key.append(name.toString());
+        }
+        return key.toString();
+    }
+}
@@ -0,0 +1,46 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2013 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Evgeny Mandrikov - initial API and implementation
+ *    Kyle Lieber - implementation of CheckMojo
+ * 
+ *******************************************************************************/
+package timezra.maven.jacoco.scala;
+
+/**
+ * SCALAC.SPECIALIZED: excludes the variants of @specialized classes that scalac generates for primitive types, e.g.
+ * <code>Foo$mcI$sp</code> or <code>Tuple2$mcJD$sp</code>. Their code duplicates the code of the generic class.
+ */
+final class SpecializedFilter implements ClassFilter {
+
+    private static final String PREFIX = "$mc";
+    private static final String SUFFIX = "$sp";
+
+    /**
+     * Matches <code>\$mc[ZBCDFIJSV]+\$sp</code> within the simple name without creating a Matcher for every class.
+     */
+    @Override
+    public boolean excludes(final String name) {
+        int marker = name.indexOf(PREFIX, name.lastIndexOf('/') + 1);
+        while (marker >= 0) {
+            int index = marker + PREFIX.length();
+            while (index < name.length() && isPrimitiveType(name.charAt(index))) {
+                index++;
+            }
+            if (index > marker + PREFIX.length() && name.startsWith(SUFFIX, index)) {
+                return true;
+            }
+            marker = name.indexOf(PREFIX, marker + 1);
+        }
+        return false;
+    }
+
+    private static boolean isPrimitiveType(final char c) {
+        return "ZBCDFIJSV".indexOf(c) >= 0;
+    }
+}
@@ -0,0 +1,110 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2013 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Evgeny Mandrikov - initial API and implementation
+ *    Kyle Lieber - implementation of CheckMojo
+ * 
+ *******************************************************************************/
+package timezra.maven.jacoco.scala;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+
+import org.jacoco.core.analysis.IBundleCoverage;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.SessionInfo;
+import org.jacoco.report.IReportGroupVisitor;
+import org.jacoco.report.IReportVisitor;
+import org.jacoco.report.ISourceFileLocator;
+
+/**
+ * Records the time spent in the calls to a report visitor and to its group visitors as one phase of the ReportMetrics.
+ */
+final class TimedReportVisitor implements IReportVisitor {
+
+    private final IReportVisitor visitor;
+    private final ReportMetrics metrics;
+    private final String phase;
+
+    /**
+     * @param visitor
+     *            the visitor to pass the calls on to
+     * @param metrics
+     *            the metrics to record the time in
+     * @param phase
+     *            the name of the phase
+     */
+    TimedReportVisitor(final IReportVisitor visitor, final ReportMetrics metrics, final String phase) {
+        this.visitor = visitor;
+        this.metrics = metrics;
+        this.phase = phase;
+    }
+
+    @Override
+    public void visitInfo(final List<SessionInfo> sessionInfos, final Collection<ExecutionData> executionData)
+            throws IOException {
+        final long start = System.nanoTime();
+        try {
+            visitor.visitInfo(sessionInfos, executionData);
+        } finally {
+            metrics.addTime(phase, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void visitBundle(final IBundleCoverage bundle, final ISourceFileLocator locator) throws IOException {
+        visitBundle(visitor, bundle, locator);
+    }
+
+    @Override
+    public IReportGroupVisitor visitGroup(final String name) throws IOException {
+        return visitGroup(visitor, name);
+    }
+
+    @Override
+    public void visitEnd() throws IOException {
+        final long start = System.nanoTime();
+        try {
+            visitor.visitEnd();
+        } finally {
+            metrics.addTime(phase, System.nanoTime() - start);
+        }
+    }
+
+    private void visitBundle(final IReportGroupVisitor group, final IBundleCoverage bundle,
+            final ISourceFileLocator locator) throws IOException {
+        final long start = System.nanoTime();
+        try {
+            group.visitBundle(bundle, locator);
+        } finally {
+            metrics.addTime(phase, System.nanoTime() - start);
+        }
+    }
+
+    private IReportGroupVisitor visitGroup(final IReportGroupVisitor group, final String name) throws IOException {
+        final long start = System.nanoTime();
+        final IReportGroupVisitor child;
+        try {
+            child = group.visitGroup(name);
+        } finally {
+            metrics.addTime(phase, System.nanoTime() - start);
+        }
+        return new IReportGroupVisitor() {
+            @Override
+            public void visitBundle(final IBundleCoverage bundle, final ISourceFileLocator locator) throws IOException {
+                TimedReportVisitor.this.visitBundle(child, bundle, locator);
+            }
+
+            @Override
+            public IReportGroupVisitor visitGroup(final String name) throws IOException {
+                return TimedReportVisitor.this.visitGroup(child, name);
+            }
+        };
+    }
+}
@@ -0,0 +1,244 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2013 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Evgeny Mandrikov - initial API and implementation
+ *    Kyle Lieber - implementation of CheckMojo
+ * 
+ *******************************************************************************/
+package timezra.maven.jacoco.scala;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.reporting.MavenReportException;
+
+/**
+ * Writes the code coverage report of a single project and writes it again whenever its class files, sources or
+ * execution data change, until the build is stopped. The analyzed structure of the classes is kept in memory, so only
+ * the class files that changed are analyzed again and the report of a test run is written without a cold start.
+ * 
+ * @goal watch
+ * @requiresProject true
+ */
+public class WatchMojo extends ReportMojo {
+
+    private static final long RETRY_MILLIS = 1000;
+
+    /**
+     * The time in milliseconds without further changes after which the report is written, so that a compilation or a
+     * test run that writes many files is reported once.
+     * 
+     * @parameter expression="${jacoco.quietPeriod}" default-value="300"
+     */
+    private long quietPeriod;
+
+    private WatchService watchService;
+
+    /** Directories that are watched together with their subdirectories. */
+    private final Set<Path> trees = new LinkedHashSet<Path>();
+
+    /** Directories of single files that are watched, with the names of those files. */
+    private final Map<Path, Set<String>> files = new LinkedHashMap<Path, Set<String>>();
+
+    private final Set<Path> registeredRoots = new HashSet<Path>();
+
+    private final Map<WatchKey, Path> keys = new HashMap<WatchKey, Path>();
+
+    @Override
+    protected boolean isAnalysisRetained() {
+        return true;
+    }
+
+    @Override
+    public void execute() throws MojoExecutionException {
+        if (isSkip()) {
+            getLog().info("Skipping JaCoCo execution");
+            return;
+        }
+        if ("pom".equals(getProject().getPackaging())) {
+            getLog().info("Skipping JaCoCo for project with packaging type 'pom'");
+            return;
+        }
+        try (WatchService service = FileSystems.getDefault().newWatchService()) {
+            watchService = service;
+            collectRoots();
+            registerRoots();
+            report();
+            getLog().info("Watching " + trees + " and the execution data in " + files.keySet()
+                    + " for changes, press Ctrl+C to stop");
+            watch();
+        } catch (final IOException e) {
+            throw new MojoExecutionException("Unable to watch for changes: " + e.getMessage(), e);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            watchService = null;
+            keys.clear();
+            registeredRoots.clear();
+        }
+    }
+
+    /**
+     * Waits for changes and writes the report once no further change has been seen for the quiet period. Roots that
+     * don't exist yet or have been deleted, e.g. by a clean build, are registered as soon as they are created again.
+     */
+    private void watch() throws IOException, InterruptedException {
+        while (!Thread.currentThread().isInterrupted()) {
+            boolean changed = registerRoots();
+            WatchKey key = watchService.poll(RETRY_MILLIS, TimeUnit.MILLISECONDS);
+            while (key != null) {
+                changed |= handleEvents(key);
+                key = watchService.poll(quietPeriod, TimeUnit.MILLISECONDS);
+            }
+            if (changed) {
+                report();
+            }
+        }
+    }
+
+    private void report() {
+        if (!canGenerateReport()) {
+            return;
+        }
+        try {
+            executeReport(Locale.getDefault());
+        } catch (final MavenReportException e) {
+            getLog().error("An error has occurred in " + getName(Locale.ENGLISH) + " report generation.", e);
+        }
+    }
+
+    /**
+     * Collects the class directories and source roots, which are watched with their subdirectories, and the archives
+     * and execution data files, which are watched through their directories.
+     */
+    private void collectRoots() {
+        for (final File location : getClassLocations(getProject())) {
+            if (location.isFile()) {
+                addFile(location);
+            } else {
+                trees.add(location.getAbsoluteFile().toPath());
+            }
+        }
+        for (final File sourceRoot : getCompileSourceRoots(getProject())) {
+            trees.add(sourceRoot.toPath());
+        }
+        files.put(resolvePath(getProject(), getProject().getBuild().getDirectory()).toPath(), new HashSet<String>());
+        for (final File dataFile : getDataFiles()) {
+            addFile(dataFile);
+        }
+    }
+
+    private void addFile(final File file) {
+        final Path directory = file.getAbsoluteFile().getParentFile().toPath();
+        Set<String> names = files.get(directory);
+        if (names == null) {
+            names = new HashSet<String>();
+            files.put(directory, names);
+        }
+        names.add(file.getName());
+    }
+
+    /**
+     * @return <code>true</code> if a root that was missing before has been registered
+     */
+    private boolean registerRoots() throws IOException {
+        final boolean initial = registeredRoots.isEmpty();
+        boolean registered = false;
+        for (final Path tree : trees) {
+            if (!registeredRoots.contains(tree) && Files.isDirectory(tree)) {
+                registerTree(tree);
+                registeredRoots.add(tree);
+                registered = true;
+            }
+        }
+        for (final Path directory : files.keySet()) {
+            if (!registeredRoots.contains(directory) && Files.isDirectory(directory)) {
+                keys.put(directory.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE), directory);
+                registeredRoots.add(directory);
+                registered = true;
+            }
+        }
+        return registered && !initial;
+    }
+
+    private void registerTree(final Path tree) throws IOException {
+        Files.walkFileTree(tree, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(final Path directory, final BasicFileAttributes attributes)
+                    throws IOException {
+                keys.put(directory.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE), directory);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * @return <code>true</code> if a class file, source file, archive or execution data file changed
+     */
+    private boolean handleEvents(final WatchKey key) throws IOException {
+        final Path directory = keys.get(key);
+        boolean changed = false;
+        for (final WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == OVERFLOW) {
+                changed = true;
+                continue;
+            }
+            final Path child = directory.resolve((Path) event.context());
+            if (isInTree(directory)) {
+                changed = true;
+                if (event.kind() == ENTRY_CREATE && Files.isDirectory(child)) {
+                    registerTree(child);
+                }
+            } else if (isWatchedFile(directory, child.getFileName().toString())) {
+                changed = true;
+            }
+        }
+        if (!key.reset()) {
+            keys.remove(key);
+            registeredRoots.remove(directory);
+        }
+        return changed;
+    }
+
+    private boolean isInTree(final Path directory) {
+        for (final Path tree : trees) {
+            if (directory.startsWith(tree)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isWatchedFile(final Path directory, final String name) {
+        final Set<String> names = files.get(directory);
+        return name.endsWith(".exec") || names != null && names.contains(name);
+    }
+}
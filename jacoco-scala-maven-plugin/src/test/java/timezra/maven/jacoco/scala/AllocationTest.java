@@ -0,0 +1,130 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2013 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Evgeny Mandrikov - initial API and implementation
+ *    Kyle Lieber - implementation of CheckMojo
+ *
+ *******************************************************************************/
+package timezra.maven.jacoco.scala;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+
+import org.apache.maven.project.MavenProject;
+import org.jacoco.core.analysis.Analyzer;
+import org.jacoco.core.analysis.IClassCoverage;
+import org.jacoco.core.analysis.ICoverageVisitor;
+import org.jacoco.core.analysis.IMethodCoverage;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.internal.analysis.ClassCoverageImpl;
+import org.jacoco.maven.FileFilter;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import timezra.maven.jacoco.scala.AbstractAnalysisMojo.SanitizingBundleCreator;
+
+/**
+ * Compares the bytes that the calling thread allocates while it creates a filtered bundle on a single thread with the
+ * bytes allocated by the analysis that the SanitizingBundleCreator replaced, measured in the same JVM.
+ */
+public class AllocationTest {
+
+    /**
+     * The share of the allocations of the PostFilteringBundleCreator that the SanitizingBundleCreator has to stay
+     * below. It allocates about 0.89 of them with the SCALAC.CASE and SCALAC.MIXIN filters, whatever the JIT, collector
+     * or pointer size.
+     */
+    private static final double MAXIMUM_RATIO = 0.95;
+
+    private static final int WARM_UP_RUNS = 5;
+    private static final int MEASURED_RUNS = 5;
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void allocatesLessThanAnalyzingAndFilteringAfterwards() throws IOException {
+        final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+        final com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+        assumeTrue(allocations.isThreadAllocatedMemorySupported());
+        allocations.setThreadAllocatedMemoryEnabled(true);
+
+        final ScalacClassFiles classFiles = ScalacClassFiles.write(temporaryFolder.getRoot(), 30);
+        final Filters filters = new Filters(Collections.<MethodSignatureFilter> singletonList(new CaseFilter()),
+                Collections.<MethodCoverageFilter> singletonList(new MixinFilter()));
+        final FileFilter fileFilter = new FileFilter(Collections.<String> emptyList(), Collections.<String> emptyList());
+        final long thread = Thread.currentThread().getId();
+
+        long sanitizing = Long.MAX_VALUE;
+        long postFiltering = Long.MAX_VALUE;
+        for (int run = 0; run < WARM_UP_RUNS + MEASURED_RUNS; run++) {
+            final BundleCreator sanitizingCreator = new SanitizingBundleCreator(classFiles.createProject(), fileFilter,
+                    1, filters, null);
+            final BundleCreator postFilteringCreator = new PostFilteringBundleCreator(classFiles.createProject(),
+                    fileFilter, filters);
+            long before = allocations.getThreadAllocatedBytes(thread);
+            sanitizingCreator.createBundle(classFiles.getExecutionData());
+            final long sanitizingRun = allocations.getThreadAllocatedBytes(thread) - before;
+            before = allocations.getThreadAllocatedBytes(thread);
+            postFilteringCreator.createBundle(classFiles.getExecutionData());
+            final long postFilteringRun = allocations.getThreadAllocatedBytes(thread) - before;
+            if (run >= WARM_UP_RUNS) {
+                sanitizing = Math.min(sanitizing, sanitizingRun);
+                postFiltering = Math.min(postFiltering, postFilteringRun);
+            }
+        }
+
+        assertTrue(sanitizing + " bytes instead of " + postFiltering, sanitizing < postFiltering * MAXIMUM_RATIO);
+    }
+
+    /**
+     * The analysis before the allocations were cut: the plain JaCoCo Analyzer, with a StringPool and analyzers per
+     * class, and the filters applied to the coverage of each class once it is complete.
+     */
+    private static final class PostFilteringBundleCreator extends BundleCreator {
+        private final Filters filters;
+
+        PostFilteringBundleCreator(final MavenProject project, final FileFilter fileFilter,
+                final Filters filters) {
+            super(project, fileFilter, 1);
+            this.filters = filters;
+        }
+
+        @Override
+        protected Analyzer createAnalyzer(final ExecutionDataStore executionDataStore,
+                final ICoverageVisitor coverageVisitor) {
+            return new Analyzer(executionDataStore, new ICoverageVisitor() {
+                @Override
+                public void visitCoverage(final IClassCoverage coverage) {
+                    final Collection<IMethodCoverage> methods = new ArrayList<IMethodCoverage>();
+                    for (final IMethodCoverage method : coverage.getMethods()) {
+                        if (!filters.excludes(0, method.getName(), method.getDesc(), method.getSignature())) {
+                            methods.add(method);
+                        }
+                    }
+                    final ClassCoverageImpl filtered = new ClassCoverageImpl(coverage.getName(), coverage.getId(),
+                            coverage.getSignature(), coverage.getSuperName(), coverage.getInterfaceNames());
+                    filtered.setSourceFileName(coverage.getSourceFileName());
+                    for (final IMethodCoverage method : filters.filter(methods)) {
+                        filtered.addMethod(method);
+                    }
+                    coverageVisitor.visitCoverage(filtered);
+                }
+            });
+        }
+    }
+}
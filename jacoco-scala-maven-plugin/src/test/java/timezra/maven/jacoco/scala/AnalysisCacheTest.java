@@ -0,0 +1,103 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2013 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Evgeny Mandrikov - initial API and implementation
+ *    Kyle Lieber - implementation of CheckMojo
+ *
+ *******************************************************************************/
+package timezra.maven.jacoco.scala;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.internal.data.CRC64;
+import org.jacoco.maven.FileFilter;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import timezra.maven.jacoco.scala.AbstractAnalysisMojo.SanitizingBundleCreator;
+
+public class AnalysisCacheTest {
+
+    private static final String FILTER_KEY = "SCALAC.CASE";
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private ScalacClassFiles classFiles;
+    private File cacheDirectory;
+    private long classid;
+
+    @Before
+    public void analyzeClassFiles() throws IOException {
+        classFiles = ScalacClassFiles.write(temporaryFolder.newFolder("project"), 2);
+        cacheDirectory = temporaryFolder.newFolder("cache");
+        classid = CRC64.checksum(Files.readAllBytes(new File(classFiles.getClassesDirectory(), "scala/p0/Point0.class")
+                .toPath()));
+        final Filters filters = new Filters(Collections.<MethodSignatureFilter> singletonList(new CaseFilter()),
+                Collections.<MethodCoverageFilter> emptyList());
+        new SanitizingBundleCreator(classFiles.createProject(), new FileFilter(Collections.<String> emptyList(),
+                Collections.<String> emptyList()), 1, filters, new AnalysisCache(cacheDirectory, FILTER_KEY, "1.0"))
+                .createBundle(new ExecutionDataStore());
+    }
+
+    @Test
+    public void reusesTheStructuresOfTheSameImplementation() {
+        assertNotNull(load(FILTER_KEY, "1.0").get(classid));
+    }
+
+    @Test
+    public void discardsTheStructuresOfAnotherImplementation() {
+        assertNull(load(FILTER_KEY, "1.1").get(classid));
+    }
+
+    @Test
+    public void discardsTheStructuresOfOtherFilters() {
+        assertNull(load("SCALAC.MIXIN", "1.0").get(classid));
+    }
+
+    @Test
+    public void dropsTheStructuresThatWereNotUsed() throws IOException {
+        final AnalysisCache cache = load(FILTER_KEY, "1.0");
+        cache.save();
+
+        assertNull(load(FILTER_KEY, "1.0").get(classid));
+    }
+
+    @Test
+    public void keepsTheStructuresThatWereNotUsedIfNotPruned() throws IOException {
+        final AnalysisCache cache = load(FILTER_KEY, "1.0");
+        cache.setPruned(false);
+        cache.save();
+
+        assertNotNull(load(FILTER_KEY, "1.0").get(classid));
+    }
+
+    @Test
+    public void describesTheJarOfAClass() {
+        final String origin = AnalysisCache.getOrigin(Test.class);
+
+        assertTrue(origin, origin.startsWith(Test.class.getName() + " "));
+        assertTrue(origin, origin.contains("junit-4.11.jar"));
+    }
+
+    private AnalysisCache load(final String filterKey, final String implementationKey) {
+        final AnalysisCache cache = new AnalysisCache(cacheDirectory, filterKey, implementationKey);
+        cache.load(new SharedStringPool());
+        return cache;
+    }
+}
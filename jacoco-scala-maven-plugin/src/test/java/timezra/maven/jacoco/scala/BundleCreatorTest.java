@@ -0,0 +1,86 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2013 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Evgeny Mandrikov - initial API and implementation
+ *    Kyle Lieber - implementation of CheckMojo
+ *
+ *******************************************************************************/
+package timezra.maven.jacoco.scala;
+
+import static org.junit.Assert.assertEquals;
+import static timezra.maven.jacoco.scala.CoverageAssert.assertSameCoverage;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.jacoco.core.analysis.IBundleCoverage;
+import org.jacoco.core.analysis.ICoverageNode.CounterEntity;
+import org.jacoco.maven.FileFilter;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import timezra.maven.jacoco.scala.AbstractAnalysisMojo.SanitizingBundleCreator;
+
+public class BundleCreatorTest {
+
+    private static final int UNITS = 30;
+    private static final int THREADS = 4;
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private ScalacClassFiles classFiles;
+
+    @Before
+    public void writeClassFiles() throws IOException {
+        classFiles = ScalacClassFiles.write(temporaryFolder.getRoot(), UNITS);
+    }
+
+    /**
+     * The traits have no code, so they are not part of the bundle.
+     */
+    @Test
+    public void analyzesAllClassFilesWithCode() throws IOException {
+        final IBundleCoverage bundle = new BundleCreator(classFiles.createProject(), createFileFilter(), 1)
+                .createBundle(classFiles.getExecutionData());
+
+        assertEquals(classFiles.getClassCount() - UNITS, bundle.getCounter(CounterEntity.CLASS).getTotalCount());
+    }
+
+    @Test
+    public void createsTheSameBundleOnSeveralThreadsAsOnOne() throws IOException {
+        final IBundleCoverage sequential = new BundleCreator(classFiles.createProject(), createFileFilter(), 1)
+                .createBundle(classFiles.getExecutionData());
+        final IBundleCoverage parallel = new BundleCreator(classFiles.createProject(), createFileFilter(), THREADS)
+                .createBundle(classFiles.getExecutionData());
+
+        assertSameCoverage(sequential, parallel);
+    }
+
+    @Test
+    public void createsTheSameFilteredBundleOnSeveralThreadsAsOnOne() throws IOException {
+        final IBundleCoverage sequential = createSanitizingBundleCreator(1).createBundle(classFiles.getExecutionData());
+        final IBundleCoverage parallel = createSanitizingBundleCreator(THREADS).createBundle(
+                classFiles.getExecutionData());
+
+        assertSameCoverage(sequential, parallel);
+    }
+
+    private SanitizingBundleCreator createSanitizingBundleCreator(final int threadCount) {
+        final Filters filters = new Filters(Collections.<MethodSignatureFilter> singletonList(new CaseFilter()),
+                Arrays.<MethodCoverageFilter> asList(new MixinFilter()));
+        return new SanitizingBundleCreator(classFiles.createProject(), createFileFilter(), threadCount, filters, null);
+    }
+
+    private static FileFilter createFileFilter() {
+        return new FileFilter(Collections.<String> emptyList(), Collections.<String> emptyList());
+    }
+}
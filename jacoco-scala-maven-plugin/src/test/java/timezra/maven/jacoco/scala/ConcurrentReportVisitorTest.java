@@ -0,0 +1,114 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2013 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Evgeny Mandrikov - initial API and implementation
+ *    Kyle Lieber - implementation of CheckMojo
+ *
+ *******************************************************************************/
+package timezra.maven.jacoco.scala;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.jacoco.core.analysis.IBundleCoverage;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.SessionInfo;
+import org.jacoco.report.FileMultiReportOutput;
+import org.jacoco.report.IReportGroupVisitor;
+import org.jacoco.report.IReportVisitor;
+import org.jacoco.report.ISourceFileLocator;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ConcurrentReportVisitorTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void abortWaitsForTheRunningCallsAndDropsTheOthers() throws Exception {
+        final BlockingVisitor first = new BlockingVisitor();
+        final BlockingVisitor second = new BlockingVisitor();
+        final ConcurrentReportVisitor visitor = new ConcurrentReportVisitor(Arrays.<IReportVisitor> asList(first,
+                second));
+        visitor.visitInfo(null, null);
+        visitor.visitInfo(null, null);
+        first.started.await();
+        second.started.await();
+
+        visitor.abort();
+
+        assertEquals(1, first.calls);
+        assertTrue(first.finished);
+        assertEquals(1, second.calls);
+        assertTrue(second.finished);
+    }
+
+    @Test
+    public void closesTheFilesThatAFailedReportLeftOpen() throws IOException {
+        final BufferedMultiReportOutput output = new BufferedMultiReportOutput(new FileMultiReportOutput(
+                temporaryFolder.getRoot()));
+        final OutputStream file = output.createFile("index.html");
+        file.write('x');
+
+        output.close();
+
+        assertEquals(1, new File(temporaryFolder.getRoot(), "index.html").length());
+        try {
+            file.write('y');
+            file.flush();
+            fail("The file is still open");
+        } catch (final IOException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Blocks in visitInfo until its worker is interrupted, so that the worker is busy when the report is aborted.
+     */
+    private static final class BlockingVisitor implements IReportVisitor {
+
+        final CountDownLatch started = new CountDownLatch(1);
+        volatile int calls;
+        volatile boolean finished;
+
+        @Override
+        public void visitInfo(final List<SessionInfo> sessionInfos, final Collection<ExecutionData> executionData) {
+            calls++;
+            started.countDown();
+            try {
+                new CountDownLatch(1).await();
+            } catch (final InterruptedException e) {
+                finished = true;
+            }
+        }
+
+        @Override
+        public void visitBundle(final IBundleCoverage bundle, final ISourceFileLocator locator) {
+        }
+
+        @Override
+        public IReportGroupVisitor visitGroup(final String name) {
+            return this;
+        }
+
+        @Override
+        public void visitEnd() {
+        }
+    }
+}
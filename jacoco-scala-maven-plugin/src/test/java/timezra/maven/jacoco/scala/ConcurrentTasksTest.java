@@ -0,0 +1,62 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2013 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Evgeny Mandrikov - initial API and implementation
+ *    Kyle Lieber - implementation of CheckMojo
+ *
+ *******************************************************************************/
+package timezra.maven.jacoco.scala;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+public class ConcurrentTasksTest {
+
+    @Test
+    public void rethrowsTheFirstFailureOnceTheOtherTasksStopped() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final boolean[] finished = new boolean[1];
+        final Callable<Void> blocking = new Callable<Void>() {
+            @Override
+            public Void call() throws InterruptedException {
+                started.countDown();
+                try {
+                    new CountDownLatch(1).await();
+                } finally {
+                    // a task that still writes shared state after it has been interrupted
+                    Thread.sleep(100);
+                    finished[0] = true;
+                }
+                return null;
+            }
+        };
+        final Callable<Void> failing = new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                started.await();
+                throw new IOException("failed");
+            }
+        };
+
+        try {
+            ConcurrentTasks.invokeAll(2, Arrays.asList(failing, blocking));
+            fail("The failure was not rethrown");
+        } catch (final IOException e) {
+            assertEquals("failed", e.getMessage());
+        }
+        assertTrue(finished[0]);
+    }
+}
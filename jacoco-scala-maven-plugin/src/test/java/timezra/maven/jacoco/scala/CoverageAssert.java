@@ -0,0 +1,128 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2013 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Evgeny Mandrikov - initial API and implementation
+ *    Kyle Lieber - implementation of CheckMojo
+ *
+ *******************************************************************************/
+package timezra.maven.jacoco.scala;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.jacoco.core.analysis.IBundleCoverage;
+import org.jacoco.core.analysis.IClassCoverage;
+import org.jacoco.core.analysis.ICounter;
+import org.jacoco.core.analysis.ICoverageNode;
+import org.jacoco.core.analysis.ICoverageNode.CounterEntity;
+import org.jacoco.core.analysis.ILine;
+import org.jacoco.core.analysis.IMethodCoverage;
+import org.jacoco.core.analysis.IPackageCoverage;
+import org.jacoco.core.analysis.ISourceNode;
+
+/**
+ * Compares coverage trees class by class: the counters of every package, class and method and the status and counters
+ * of every line.
+ */
+final class CoverageAssert {
+
+    private static final Comparator<ICoverageNode> BY_NAME = new Comparator<ICoverageNode>() {
+        @Override
+        public int compare(final ICoverageNode node1, final ICoverageNode node2) {
+            return node1.getName().compareTo(node2.getName());
+        }
+    };
+
+    private static final Comparator<IMethodCoverage> BY_SIGNATURE = new Comparator<IMethodCoverage>() {
+        @Override
+        public int compare(final IMethodCoverage method1, final IMethodCoverage method2) {
+            return (method1.getName() + method1.getDesc()).compareTo(method2.getName() + method2.getDesc());
+        }
+    };
+
+    private CoverageAssert() {
+    }
+
+    static void assertSameCoverage(final IBundleCoverage expected, final IBundleCoverage actual) {
+        assertSameCounters(expected.getName(), expected, actual);
+        final List<IPackageCoverage> expectedPackages = sorted(expected.getPackages(), BY_NAME);
+        final List<IPackageCoverage> actualPackages = sorted(actual.getPackages(), BY_NAME);
+        assertEquals(names(expectedPackages), names(actualPackages));
+        for (int p = 0; p < expectedPackages.size(); p++) {
+            final IPackageCoverage expectedPackage = expectedPackages.get(p);
+            final IPackageCoverage actualPackage = actualPackages.get(p);
+            assertSameCounters(expectedPackage.getName(), expectedPackage, actualPackage);
+            final List<IClassCoverage> expectedClasses = sorted(expectedPackage.getClasses(), BY_NAME);
+            final List<IClassCoverage> actualClasses = sorted(actualPackage.getClasses(), BY_NAME);
+            assertEquals(names(expectedClasses), names(actualClasses));
+            for (int c = 0; c < expectedClasses.size(); c++) {
+                assertSameCoverage(expectedClasses.get(c), actualClasses.get(c));
+            }
+        }
+    }
+
+    static void assertSameCoverage(final IClassCoverage expected, final IClassCoverage actual) {
+        final String name = expected.getName();
+        assertEquals(name, expected.getId(), actual.getId());
+        assertEquals(name, expected.getSourceFileName(), actual.getSourceFileName());
+        assertSameLines(name, expected, actual);
+        final List<IMethodCoverage> expectedMethods = sorted(expected.getMethods(), BY_SIGNATURE);
+        final List<IMethodCoverage> actualMethods = sorted(actual.getMethods(), BY_SIGNATURE);
+        assertEquals(name, expectedMethods.size(), actualMethods.size());
+        for (int m = 0; m < expectedMethods.size(); m++) {
+            final IMethodCoverage expectedMethod = expectedMethods.get(m);
+            final String methodName = name + "." + expectedMethod.getName() + expectedMethod.getDesc();
+            assertEquals(methodName, expectedMethod.getName() + expectedMethod.getDesc(), actualMethods.get(m)
+                    .getName() + actualMethods.get(m).getDesc());
+            assertSameLines(methodName, expectedMethod, actualMethods.get(m));
+        }
+    }
+
+    private static void assertSameLines(final String name, final ISourceNode expected, final ISourceNode actual) {
+        assertSameCounters(name, expected, actual);
+        assertEquals(name, expected.getFirstLine(), actual.getFirstLine());
+        assertEquals(name, expected.getLastLine(), actual.getLastLine());
+        for (int nr = expected.getFirstLine(); nr <= expected.getLastLine() && nr != ISourceNode.UNKNOWN_LINE; nr++) {
+            final ILine expectedLine = expected.getLine(nr);
+            final ILine actualLine = actual.getLine(nr);
+            final String line = name + ":" + nr;
+            assertEquals(line, expectedLine.getStatus(), actualLine.getStatus());
+            assertEquals(line, format(expectedLine.getInstructionCounter()), format(actualLine.getInstructionCounter()));
+            assertEquals(line, format(expectedLine.getBranchCounter()), format(actualLine.getBranchCounter()));
+        }
+    }
+
+    private static void assertSameCounters(final String name, final ICoverageNode expected, final ICoverageNode actual) {
+        for (final CounterEntity entity : CounterEntity.values()) {
+            assertEquals(name + " " + entity, format(expected.getCounter(entity)), format(actual.getCounter(entity)));
+        }
+    }
+
+    private static String format(final ICounter counter) {
+        return counter.getMissedCount() + " missed, " + counter.getCoveredCount() + " covered";
+    }
+
+    private static <T> List<T> sorted(final Collection<? extends T> nodes, final Comparator<? super T> comparator) {
+        final List<T> sorted = new ArrayList<T>(nodes);
+        Collections.sort(sorted, comparator);
+        return sorted;
+    }
+
+    private static List<String> names(final List<? extends ICoverageNode> nodes) {
+        final List<String> names = new ArrayList<String>(nodes.size());
+        for (final ICoverageNode node : nodes) {
+            names.add(node.getName());
+        }
+        return names;
+    }
+}
@@ -0,0 +1,120 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2013 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Evgeny Mandrikov - initial API and implementation
+ *    Kyle Lieber - implementation of CheckMojo
+ *
+ *******************************************************************************/
+package timezra.maven.jacoco.scala;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static timezra.maven.jacoco.scala.CoverageAssert.assertSameCoverage;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.jacoco.core.analysis.IBundleCoverage;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.internal.data.CRC64;
+import org.jacoco.maven.FileFilter;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import timezra.maven.jacoco.scala.AbstractAnalysisMojo.SanitizingBundleCreator;
+
+/**
+ * The SanitizingBundleCreator analyzes classes into ClassStructures with the MethodStructureAnalyzer instead of the
+ * JaCoCo Analyzer. Without filters, both have to produce the same coverage, whether a structure was just analyzed or
+ * read from the analysis cache.
+ */
+public class MethodStructureAnalyzerTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private ScalacClassFiles classFiles;
+    private File cacheDirectory;
+
+    @Before
+    public void writeClassFiles() throws IOException {
+        classFiles = ScalacClassFiles.write(temporaryFolder.newFolder("project"), 20);
+        cacheDirectory = temporaryFolder.newFolder("cache");
+    }
+
+    @Test
+    public void analyzesLikeJaCoCo() throws IOException {
+        assertSameCoverage(createJaCoCoBundle(classFiles.getExecutionData()),
+                createSanitizingBundleCreator(null).createBundle(classFiles.getExecutionData()));
+    }
+
+    @Test
+    public void analyzesLikeJaCoCoWithoutExecutionData() throws IOException {
+        final ExecutionDataStore noExecutionData = new ExecutionDataStore();
+
+        assertSameCoverage(createJaCoCoBundle(noExecutionData),
+                createSanitizingBundleCreator(null).createBundle(noExecutionData));
+    }
+
+    @Test
+    public void analyzesLikeJaCoCoForSeveralDataSets() throws IOException {
+        final List<ExecutionDataStore> dataSets = Arrays.asList(classFiles.getExecutionData(),
+                new ExecutionDataStore());
+
+        final List<IBundleCoverage> bundles = createSanitizingBundleCreator(null).createBundles(dataSets);
+
+        assertSameCoverage(createJaCoCoBundle(dataSets.get(0)), bundles.get(0));
+        assertSameCoverage(createJaCoCoBundle(dataSets.get(1)), bundles.get(1));
+    }
+
+    @Test
+    public void reusesCachedStructuresLikeJaCoCo() throws IOException {
+        createSanitizingBundleCreator(createAnalysisCache()).createBundle(new ExecutionDataStore());
+
+        final AnalysisCache cache = createAnalysisCache();
+        final IBundleCoverage cached = createSanitizingBundleCreator(cache).createBundle(classFiles.getExecutionData());
+
+        assertCached(cache);
+        assertSameCoverage(createJaCoCoBundle(classFiles.getExecutionData()), cached);
+    }
+
+    private void assertCached(final AnalysisCache cache) throws IOException {
+        cache.load(new SharedStringPool());
+        final File reader = new File(classFiles.getClassesDirectory(), "scala/p1/Reader1$.class");
+        assertTrue(reader.isFile());
+        assertNotNull(cache.get(CRC64.checksum(Files.readAllBytes(reader.toPath()))));
+    }
+
+    private IBundleCoverage createJaCoCoBundle(final ExecutionDataStore executionData) throws IOException {
+        final IBundleCoverage bundle = new BundleCreator(classFiles.createProject(), createFileFilter())
+                .createBundle(executionData);
+        assertEquals(classFiles.getClassCount() - 20, bundle.getClassCounter().getTotalCount());
+        return bundle;
+    }
+
+    private SanitizingBundleCreator createSanitizingBundleCreator(final AnalysisCache cache) {
+        final Filters noFilters = new Filters(Collections.<MethodSignatureFilter> emptyList(),
+                Collections.<MethodCoverageFilter> emptyList());
+        return new SanitizingBundleCreator(classFiles.createProject(), createFileFilter(), 1, noFilters, cache);
+    }
+
+    private AnalysisCache createAnalysisCache() {
+        return new AnalysisCache(cacheDirectory, "", "test");
+    }
+
+    private static FileFilter createFileFilter() {
+        return new FileFilter(Collections.<String> emptyList(), Collections.<String> emptyList());
+    }
+}
@@ -0,0 +1,431 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2013 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Evgeny Mandrikov - initial API and implementation
+ *    Kyle Lieber - implementation of CheckMojo
+ *
+ *******************************************************************************/
+package timezra.maven.jacoco.scala;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+
+import org.apache.maven.model.Build;
+import org.apache.maven.project.MavenProject;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.internal.data.CRC64;
+import org.jacoco.core.internal.flow.ClassProbesAdapter;
+import org.jacoco.core.internal.flow.ClassProbesVisitor;
+import org.jacoco.core.internal.flow.MethodProbesVisitor;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+/**
+ * Writes class files shaped like scalac output to a directory, together with random execution data for them. Every
+ * unit is one source file with a case class and its companion object, a trait with its implementation class, a class
+ * that mixes in the trait, an $anonfun closure and an object with try/catch blocks, a loop and a lookupswitch. The
+ * classes of every other unit are written for Java 7 with stack map frames, the others for Java 6 without. Every
+ * fifth class has no execution data.
+ */
+final class ScalacClassFiles {
+
+    static final int CLASSES_PER_UNIT = 7;
+
+    private final File directory;
+    private final File classesDirectory;
+    private final ExecutionDataStore executionData = new ExecutionDataStore();
+    private final Random random = new Random(42L);
+    private int classCount;
+
+    private ScalacClassFiles(final File directory) {
+        this.directory = directory;
+        this.classesDirectory = new File(directory, "classes");
+    }
+
+    /**
+     * @param directory
+     *            the directory to write the class files to
+     * @param units
+     *            the number of source files, each compiled to {@link #CLASSES_PER_UNIT} classes
+     * @return the written class files
+     * @throws IOException
+     *             if a class file can't be written
+     */
+    static ScalacClassFiles write(final File directory, final int units) throws IOException {
+        final ScalacClassFiles classFiles = new ScalacClassFiles(directory);
+        for (int i = 0; i < units; i++) {
+            classFiles.writeUnit("scala/p" + i % 3 + "/", i, i % 2 == 0 ? Opcodes.V1_6 : Opcodes.V1_7);
+        }
+        return classFiles;
+    }
+
+    File getClassesDirectory() {
+        return classesDirectory;
+    }
+
+    ExecutionDataStore getExecutionData() {
+        return executionData;
+    }
+
+    int getClassCount() {
+        return classCount;
+    }
+
+    /**
+     * @return a project whose output directory holds the class files
+     */
+    MavenProject createProject() {
+        final MavenProject project = new MavenProject();
+        final Build build = new Build();
+        build.setDirectory(directory.getAbsolutePath());
+        build.setOutputDirectory(classesDirectory.getAbsolutePath());
+        project.getModel().setBuild(build);
+        project.getModel().setName("scalac");
+        return project;
+    }
+
+    private void writeUnit(final String pkg, final int i, final int version) throws IOException {
+        final String source = "Unit" + i + ".scala";
+        final String point = pkg + "Point" + i;
+        final String shape = pkg + "Shape" + i;
+        final String square = pkg + "Square" + i;
+        final String closure = square + "$$anonfun$scale$1";
+        final String reader = pkg + "Reader" + i + "$";
+
+        ClassWriter cw = newClass(version, Opcodes.ACC_PUBLIC, point, new String[] { "scala/Product",
+                "scala/Serializable" }, source);
+        method(cw, Opcodes.ACC_PUBLIC, "<init>", "(II)V", 3, 0, 6);
+        method(cw, Opcodes.ACC_PUBLIC, "x", "()I", 3, 0, 2);
+        method(cw, Opcodes.ACC_PUBLIC, "y", "()I", 3, 0, 2);
+        method(cw, Opcodes.ACC_PUBLIC, "copy", "(II)L" + point + ";", 3, 0, 4);
+        method(cw, Opcodes.ACC_PUBLIC, "copy$default$1", "()I", 3, 0, 2);
+        method(cw, Opcodes.ACC_PUBLIC, "productPrefix", "()Ljava/lang/String;", 3, 0, 1);
+        method(cw, Opcodes.ACC_PUBLIC, "productArity", "()I", 3, 0, 1);
+        tableSwitch(cw, "productElement", "(I)Ljava/lang/Object;", 3, 3);
+        method(cw, Opcodes.ACC_PUBLIC, "canEqual", "(Ljava/lang/Object;)Z", 3, 1, 2);
+        method(cw, Opcodes.ACC_PUBLIC, "hashCode", "()I", 3, 0, 8);
+        method(cw, Opcodes.ACC_PUBLIC, "toString", "()Ljava/lang/String;", 3, 0, 3);
+        method(cw, Opcodes.ACC_PUBLIC, "equals", "(Ljava/lang/Object;)Z", 3, 4, 4);
+        method(cw, Opcodes.ACC_PUBLIC, "distance", "(L" + point + ";)I", 4, 2, 5);
+        write(point, cw);
+
+        cw = newClass(version, Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL, point + "$",
+                new String[] { "scala/Serializable" }, source);
+        method(cw, Opcodes.ACC_STATIC, "<clinit>", "()V", 3, 0, 2);
+        method(cw, Opcodes.ACC_PRIVATE, "<init>", "()V", 3, 0, 3);
+        method(cw, Opcodes.ACC_PUBLIC, "apply", "(II)L" + point + ";", 3, 0, 4);
+        method(cw, Opcodes.ACC_PUBLIC, "unapply", "(L" + point + ";)Lscala/Option;", 3, 1, 5);
+        method(cw, Opcodes.ACC_PUBLIC, "curried", "()Lscala/Function1;", 3, 0, 2);
+        method(cw, Opcodes.ACC_PUBLIC, "tupled", "()Lscala/Function1;", 3, 0, 2);
+        method(cw, Opcodes.ACC_PUBLIC, "apply$default$1", "()I", 3, 0, 1);
+        method(cw, Opcodes.ACC_PRIVATE, "readResolve", "()Ljava/lang/Object;", 3, 0, 1);
+        write(point + "$", cw);
+
+        cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(version, Opcodes.ACC_PUBLIC | Opcodes.ACC_ABSTRACT | Opcodes.ACC_INTERFACE, shape, null,
+                "java/lang/Object", new String[] { "scala/ScalaObject" });
+        cw.visitSource(source, null);
+        cw.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_ABSTRACT, "area", "()I", null, null).visitEnd();
+        cw.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_ABSTRACT, "describe", "()Ljava/lang/String;", null, null)
+                .visitEnd();
+        write(shape, cw);
+
+        cw = newClass(version, Opcodes.ACC_PUBLIC | Opcodes.ACC_ABSTRACT, shape + "$class", new String[0], source);
+        method(cw, Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "describe", "(L" + shape + ";)Ljava/lang/String;", 10, 1, 6);
+        method(cw, Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "$init$", "(L" + shape + ";)V", 9, 0, 1);
+        write(shape + "$class", cw);
+
+        cw = newClass(version, Opcodes.ACC_PUBLIC, square, new String[] { shape }, source);
+        method(cw, Opcodes.ACC_PUBLIC, "<init>", "(I)V", 14, 0, 5);
+        method(cw, Opcodes.ACC_PUBLIC, "describe", "()Ljava/lang/String;", 14, 0, 2);
+        method(cw, Opcodes.ACC_PUBLIC, "side", "()I", 14, 0, 2);
+        method(cw, Opcodes.ACC_PUBLIC, "area", "()I", 15, 1, 4);
+        method(cw, Opcodes.ACC_PUBLIC, "scale", "(I)L" + square + ";", 17, 2, 6);
+        write(square, cw);
+
+        cw = newClass(version, Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL, closure, new String[] { "scala/Serializable" },
+                source);
+        cw.visitField(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC | Opcodes.ACC_FINAL, "serialVersionUID", "J", null,
+                Long.valueOf(0L)).visitEnd();
+        method(cw, Opcodes.ACC_PUBLIC, "<init>", "(L" + square + ";)V", 17, 0, 3);
+        method(cw, Opcodes.ACC_PUBLIC, "apply", "(I)I", 17, 0, 2);
+        method(cw, Opcodes.ACC_PUBLIC, "apply$mcII$sp", "(I)I", 17, 1, 3);
+        method(cw, Opcodes.ACC_PUBLIC | Opcodes.ACC_BRIDGE | Opcodes.ACC_SYNTHETIC, "apply",
+                "(Ljava/lang/Object;)Ljava/lang/Object;", 17, 0, 3);
+        write(closure, cw);
+
+        cw = newClass(version, Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL, reader, new String[0], source);
+        method(cw, Opcodes.ACC_PRIVATE, "<init>", "()V", 20, 0, 3);
+        tryCatch(cw, 21);
+        tryFinally(cw, 25);
+        loop(cw, 29);
+        lookupSwitch(cw, 34);
+        write(reader, cw);
+    }
+
+    private static ClassWriter newClass(final int version, final int access, final String name,
+            final String[] interfaces, final String source) {
+        final ClassWriter cw;
+        if (version == Opcodes.V1_6) {
+            cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        } else {
+            cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES) {
+                @Override
+                protected String getCommonSuperClass(final String type1, final String type2) {
+                    return "java/lang/Object";
+                }
+            };
+        }
+        cw.visit(version, access | Opcodes.ACC_SUPER, name, null, "java/lang/Object", interfaces);
+        cw.visitSource(source, null);
+        return cw;
+    }
+
+    /**
+     * Writes a method that starts on the given line, followed by one line per branch. Each line holds
+     * instructionsPerLine instructions.
+     */
+    private static void method(final ClassWriter cw, final int access, final String name, final String desc,
+            final int line, final int branches, final int instructionsPerLine) {
+        final MethodVisitor mv = cw.visitMethod(access, name, desc, null, null);
+        mv.visitCode();
+        lineOfCode(mv, line, instructionsPerLine);
+        for (int b = 0; b < branches; b++) {
+            final Label skip = new Label();
+            mv.visitInsn(Opcodes.ICONST_0);
+            mv.visitJumpInsn(Opcodes.IFEQ, skip);
+            lineOfCode(mv, line + b + 1, instructionsPerLine);
+            mv.visitLabel(skip);
+        }
+        returnDefault(mv, desc);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    private static void tableSwitch(final ClassWriter cw, final String name, final String desc, final int line,
+            final int cases) {
+        final MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, name, desc, null, null);
+        mv.visitCode();
+        lineOfCode(mv, line, 1);
+        final Label dflt = new Label();
+        final Label[] labels = new Label[cases];
+        for (int c = 0; c < cases; c++) {
+            labels[c] = new Label();
+        }
+        mv.visitVarInsn(Opcodes.ILOAD, 1);
+        mv.visitTableSwitchInsn(0, cases - 1, dflt, labels);
+        for (int c = 0; c < cases; c++) {
+            mv.visitLabel(labels[c]);
+            lineOfCode(mv, line + c + 1, 2);
+            returnDefault(mv, desc);
+        }
+        mv.visitLabel(dflt);
+        mv.visitInsn(Opcodes.ACONST_NULL);
+        mv.visitInsn(Opcodes.ATHROW);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    /**
+     * <code>try s.toInt catch { case e: NumberFormatException => 0 }</code>
+     */
+    private static void tryCatch(final ClassWriter cw, final int line) {
+        final MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "read", "(Ljava/lang/String;)I", null, null);
+        mv.visitCode();
+        final Label start = new Label();
+        final Label end = new Label();
+        final Label handler = new Label();
+        final Label after = new Label();
+        mv.visitTryCatchBlock(start, end, handler, "java/lang/NumberFormatException");
+        mv.visitLabel(start);
+        mv.visitLineNumber(line, start);
+        mv.visitVarInsn(Opcodes.ALOAD, 1);
+        mv.visitMethodInsn(Opcodes.INVOKESTATIC, "java/lang/Integer", "parseInt", "(Ljava/lang/String;)I");
+        mv.visitVarInsn(Opcodes.ISTORE, 2);
+        mv.visitLabel(end);
+        mv.visitJumpInsn(Opcodes.GOTO, after);
+        mv.visitLabel(handler);
+        mv.visitLineNumber(line + 1, handler);
+        mv.visitVarInsn(Opcodes.ASTORE, 3);
+        mv.visitInsn(Opcodes.ICONST_0);
+        mv.visitVarInsn(Opcodes.ISTORE, 2);
+        mv.visitLabel(after);
+        mv.visitLineNumber(line + 2, after);
+        mv.visitVarInsn(Opcodes.ILOAD, 2);
+        mv.visitInsn(Opcodes.IRETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    /**
+     * <code>try close() finally release()</code>, with the finally block inlined into the normal and the exceptional
+     * path.
+     */
+    private static void tryFinally(final ClassWriter cw, final int line) {
+        final MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "close", "()V", null, null);
+        mv.visitCode();
+        final Label start = new Label();
+        final Label end = new Label();
+        final Label handler = new Label();
+        mv.visitTryCatchBlock(start, end, handler, null);
+        mv.visitLabel(start);
+        mv.visitLineNumber(line, start);
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, "java/lang/Object", "hashCode", "()I");
+        mv.visitInsn(Opcodes.POP);
+        mv.visitLabel(end);
+        lineOfCode(mv, line + 1, 2);
+        mv.visitInsn(Opcodes.RETURN);
+        mv.visitLabel(handler);
+        mv.visitLineNumber(line + 2, handler);
+        mv.visitVarInsn(Opcodes.ASTORE, 1);
+        lineOfCode(mv, line + 1, 2);
+        mv.visitVarInsn(Opcodes.ALOAD, 1);
+        mv.visitInsn(Opcodes.ATHROW);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    /**
+     * <code>var sum = 0; var i = 0; while (i < xs.length) { sum += xs(i); i += 1 }; sum</code>
+     */
+    private static void loop(final ClassWriter cw, final int line) {
+        final MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "sum", "([I)I", null, null);
+        mv.visitCode();
+        final Label start = new Label();
+        mv.visitLabel(start);
+        mv.visitLineNumber(line, start);
+        mv.visitInsn(Opcodes.ICONST_0);
+        mv.visitVarInsn(Opcodes.ISTORE, 2);
+        mv.visitInsn(Opcodes.ICONST_0);
+        mv.visitVarInsn(Opcodes.ISTORE, 3);
+        final Label condition = new Label();
+        final Label done = new Label();
+        mv.visitLabel(condition);
+        mv.visitLineNumber(line + 1, condition);
+        mv.visitVarInsn(Opcodes.ILOAD, 3);
+        mv.visitVarInsn(Opcodes.ALOAD, 1);
+        mv.visitInsn(Opcodes.ARRAYLENGTH);
+        mv.visitJumpInsn(Opcodes.IF_ICMPGE, done);
+        final Label body = new Label();
+        mv.visitLabel(body);
+        mv.visitLineNumber(line + 2, body);
+        mv.visitVarInsn(Opcodes.ILOAD, 2);
+        mv.visitVarInsn(Opcodes.ALOAD, 1);
+        mv.visitVarInsn(Opcodes.ILOAD, 3);
+        mv.visitInsn(Opcodes.IALOAD);
+        mv.visitInsn(Opcodes.IADD);
+        mv.visitVarInsn(Opcodes.ISTORE, 2);
+        mv.visitIincInsn(3, 1);
+        mv.visitJumpInsn(Opcodes.GOTO, condition);
+        mv.visitLabel(done);
+        mv.visitLineNumber(line + 3, done);
+        mv.visitVarInsn(Opcodes.ILOAD, 2);
+        mv.visitInsn(Opcodes.IRETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    /**
+     * <code>n match { case 1 => "one"; case 10 => "ten"; case 100 => "hundred"; case _ => "many" }</code>
+     */
+    private static void lookupSwitch(final ClassWriter cw, final int line) {
+        final MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "kind", "(I)Ljava/lang/String;", null, null);
+        mv.visitCode();
+        final String[] names = { "one", "ten", "hundred" };
+        final Label dflt = new Label();
+        final Label[] labels = { new Label(), new Label(), new Label() };
+        final Label start = new Label();
+        mv.visitLabel(start);
+        mv.visitLineNumber(line, start);
+        mv.visitVarInsn(Opcodes.ILOAD, 1);
+        mv.visitLookupSwitchInsn(dflt, new int[] { 1, 10, 100 }, labels);
+        for (int c = 0; c < labels.length; c++) {
+            mv.visitLabel(labels[c]);
+            mv.visitLineNumber(line + c + 1, labels[c]);
+            mv.visitLdcInsn(names[c]);
+            mv.visitInsn(Opcodes.ARETURN);
+        }
+        mv.visitLabel(dflt);
+        mv.visitLineNumber(line + labels.length + 1, dflt);
+        mv.visitLdcInsn("many");
+        mv.visitInsn(Opcodes.ARETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    private static void lineOfCode(final MethodVisitor mv, final int line, final int instructions) {
+        final Label start = new Label();
+        mv.visitLabel(start);
+        mv.visitLineNumber(line, start);
+        for (int i = 0; i < instructions; i++) {
+            mv.visitInsn(i % 2 == 0 ? Opcodes.ICONST_1 : Opcodes.POP);
+        }
+        if (instructions % 2 == 1) {
+            mv.visitInsn(Opcodes.POP);
+        }
+    }
+
+    private static void returnDefault(final MethodVisitor mv, final String desc) {
+        switch (Type.getReturnType(desc).getSort()) {
+        case Type.VOID:
+            mv.visitInsn(Opcodes.RETURN);
+            break;
+        case Type.OBJECT:
+        case Type.ARRAY:
+            mv.visitInsn(Opcodes.ACONST_NULL);
+            mv.visitInsn(Opcodes.ARETURN);
+            break;
+        default:
+            mv.visitInsn(Opcodes.ICONST_0);
+            mv.visitInsn(Opcodes.IRETURN);
+        }
+    }
+
+    private void write(final String name, final ClassWriter cw) throws IOException {
+        cw.visitEnd();
+        final byte[] bytes = cw.toByteArray();
+        final File file = new File(classesDirectory, name + ".class");
+        file.getParentFile().mkdirs();
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(bytes);
+        }
+        if (classCount++ % 5 != 4) {
+            final boolean[] probes = new boolean[countProbes(bytes)];
+            for (int p = 0; p < probes.length; p++) {
+                probes[p] = random.nextInt(10) < 6;
+            }
+            executionData.put(new ExecutionData(CRC64.checksum(bytes), name, probes));
+        }
+    }
+
+    private static int countProbes(final byte[] bytes) {
+        final int[] count = new int[1];
+        new ClassReader(bytes).accept(new ClassProbesAdapter(new ClassProbesVisitor() {
+            @Override
+            public MethodProbesVisitor visitMethod(final int access, final String name, final String desc,
+                    final String signature, final String[] exceptions) {
+                return null;
+            }
+
+            @Override
+            public void visitTotalProbeCount(final int total) {
+                count[0] = total;
+            }
+        }), 0);
+        return count[0];
+    }
+}
@@ -0,0 +1,71 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2013 Mountainminds GmbH & Co. KG and Contributors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Evgeny Mandrikov - initial API and implementation
+ *    Kyle Lieber - implementation of CheckMojo
+ *
+ *******************************************************************************/
+package timezra.maven.jacoco.scala;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SourceFileCollectionTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void takesAFileFromTheFirstRootThatHasIt() throws IOException {
+        final File first = temporaryFolder.newFolder("first");
+        final File second = temporaryFolder.newFolder("second");
+        write(new File(second, "a/b/Example.scala"), "second");
+        write(new File(second, "a/b/Other.scala"), "other");
+        write(new File(first, "a/b/Example.scala"), "first");
+        final SourceFileCollection sources = new SourceFileCollection(Arrays.asList(first, second), "UTF-8");
+
+        assertEquals("first", read(sources.getSourceFile("a/b", "Example.scala")));
+        assertEquals("other", read(sources.getSourceFile("a/b", "Other.scala")));
+        assertNull(sources.getSourceFile("a/b", "Missing.scala"));
+    }
+
+    @Test
+    public void doesNotKeepTheContentOfAFile() throws IOException {
+        final File root = temporaryFolder.newFolder("root");
+        final File file = new File(root, "Example.scala");
+        write(file, "before");
+        final SourceFileCollection sources = new SourceFileCollection(Arrays.asList(root), "UTF-8");
+        assertEquals("before", read(sources.getSourceFile("", "Example.scala")));
+
+        write(file, "after");
+
+        assertEquals("after", read(sources.getSourceFile("", "Example.scala")));
+    }
+
+    private static void write(final File file, final String content) throws IOException {
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), content.getBytes("UTF-8"));
+    }
+
+    private static String read(final Reader reader) throws IOException {
+        try (BufferedReader lines = new BufferedReader(reader)) {
+            return lines.readLine();
+        }
+    }
+}